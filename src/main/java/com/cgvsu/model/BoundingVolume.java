@@ -0,0 +1,75 @@
+package com.cgvsu.model;
+
+import java.util.List;
+
+/**
+ * Ограничивающие объёмы модели в её локальных координатах: AABB и сфера.
+ * Неизменяемый, Model кэширует его и сбрасывает кэш при редактировании геометрии.
+ */
+public class BoundingVolume {
+
+    // AABB
+    public final float minX, minY, minZ;
+    public final float maxX, maxY, maxZ;
+
+    // Сфера (центр - центр AABB, радиус - расстояние до самой дальней вершины)
+    public final float centerX, centerY, centerZ;
+    public final float radius;
+
+    //Нет ни одной вершины с позицией
+    public final boolean empty;
+
+    private BoundingVolume(float minX, float minY, float minZ, float maxX, float maxY, float maxZ,
+                           float radius, boolean empty) {
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        this.maxZ = maxZ;
+        this.centerX = (minX + maxX) * 0.5f;
+        this.centerY = (minY + maxY) * 0.5f;
+        this.centerZ = (minZ + maxZ) * 0.5f;
+        this.radius = radius;
+        this.empty = empty;
+    }
+
+    public static BoundingVolume fromVertices(List<Vertex> vertices) {
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, minZ = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
+        boolean empty = true;
+
+        //Координаты читаем из массивов, без объектов Vertex
+        VertexList list = vertices == null ? new VertexList() : VertexList.of(vertices);
+        for (int i = 0; i < list.size(); i++) {
+            if (!list.hasPosition(i)) continue;
+            float x = list.getX(i);
+            float y = list.getY(i);
+            float z = list.getZ(i);
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            minZ = Math.min(minZ, z);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+            maxZ = Math.max(maxZ, z);
+            empty = false;
+        }
+        if (empty) {
+            return new BoundingVolume(0, 0, 0, 0, 0, 0, 0, true);
+        }
+
+        float cx = (minX + maxX) * 0.5f;
+        float cy = (minY + maxY) * 0.5f;
+        float cz = (minZ + maxZ) * 0.5f;
+        float radiusSquared = 0;
+        for (int i = 0; i < list.size(); i++) {
+            if (!list.hasPosition(i)) continue;
+            float dx = list.getX(i) - cx;
+            float dy = list.getY(i) - cy;
+            float dz = list.getZ(i) - cz;
+            radiusSquared = Math.max(radiusSquared, dx * dx + dy * dy + dz * dz);
+        }
+
+        return new BoundingVolume(minX, minY, minZ, maxX, maxY, maxZ, (float) Math.sqrt(radiusSquared), false);
+    }
+}
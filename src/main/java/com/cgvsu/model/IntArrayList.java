@@ -0,0 +1,160 @@
+package com.cgvsu.model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Список целых чисел на плоском int[] без упаковки в Integer: топология модели (углы полигонов,
+ * границы полигонов, индексы UV) занимает по 4 байта на элемент.
+ * Реализует List<Integer>, так что старый код со списками работает как раньше, а горячие циклы
+ * читают элементы через getInt без упаковки (список любого другого типа приводится через of).
+ * Снимок (snapshot) делит массив с исходным списком, массив копируется при первом изменении любого из них.
+ */
+public final class IntArrayList extends AbstractList<Integer> implements RandomAccess {
+
+    private static final int[] EMPTY = new int[0];
+
+    private int[] elements;
+    private int size;
+    // Массив общий со снимком, перед изменением его нужно скопировать
+    private boolean shared;
+
+    public IntArrayList() {
+        elements = EMPTY;
+    }
+
+    public IntArrayList(int capacity) {
+        elements = capacity == 0 ? EMPTY : new int[capacity];
+    }
+
+    public IntArrayList(Collection<Integer> source) {
+        this(source.size());
+        for (int value : source) {
+            addInt(value);
+        }
+    }
+
+    private IntArrayList(int[] elements, int size) {
+        this.elements = elements;
+        this.size = size;
+    }
+
+    /**
+     * Числа для чтения: сам список, если это IntArrayList, иначе копия
+     */
+    public static IntArrayList of(List<Integer> values) {
+        return values instanceof IntArrayList ? (IntArrayList) values : new IntArrayList(values);
+    }
+
+    /**
+     * Копия для рендера в другом потоке: массив общий до первого изменения (вызывать в потоке, который меняет список)
+     */
+    static IntArrayList snapshotOf(List<Integer> values) {
+        if (!(values instanceof IntArrayList)) {
+            return new IntArrayList(values);
+        }
+        IntArrayList source = (IntArrayList) values;
+        source.shared = true;
+        IntArrayList copy = new IntArrayList(source.elements, source.size);
+        copy.shared = true;
+        return copy;
+    }
+
+    /**
+     * Независимая копия
+     */
+    public IntArrayList copy() {
+        return new IntArrayList(Arrays.copyOf(elements, size), size);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public int getInt(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        return elements[index];
+    }
+
+    public void setInt(int index, int value) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        ensureOwned(size);
+        elements[index] = value;
+    }
+
+    public void addInt(int value) {
+        ensureOwned(size + 1);
+        elements[size++] = value;
+        modCount++;
+    }
+
+    @Override
+    public Integer get(int index) {
+        return getInt(index);
+    }
+
+    @Override
+    public Integer set(int index, Integer value) {
+        int previous = getInt(index);
+        setInt(index, value);
+        return previous;
+    }
+
+    @Override
+    public void add(int index, Integer value) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        ensureOwned(size + 1);
+        System.arraycopy(elements, index, elements, index + 1, size - index);
+        elements[index] = value;
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public Integer remove(int index) {
+        int previous = getInt(index);
+        removeRange(index, index + 1);
+        return previous;
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > size || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("Range: " + fromIndex + ".." + toIndex + ", size: " + size);
+        }
+        ensureOwned(size);
+        System.arraycopy(elements, toIndex, elements, fromIndex, size - toIndex);
+        size -= toIndex - fromIndex;
+        modCount++;
+    }
+
+    @Override
+    public void clear() {
+        if (shared) {
+            elements = EMPTY;
+            shared = false;
+        }
+        size = 0;
+        modCount++;
+    }
+
+    // Перед изменением: свой массив вместимостью не меньше capacity
+    private void ensureOwned(int capacity) {
+        if (shared || capacity > elements.length) {
+            int length = capacity > elements.length ? Math.max(capacity, elements.length + (elements.length >> 1) + 4)
+                    : elements.length;
+            elements = Arrays.copyOf(elements, length);
+            shared = false;
+        }
+    }
+}
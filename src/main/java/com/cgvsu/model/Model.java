@@ -1,5 +1,6 @@
 package com.cgvsu.model;
 
+import com.cgvsu.modelOperations.Texture;
 import com.cgvsu.modelOperations.TriangulationAlgorithm;
 import javafx.scene.image.Image;
 import com.cgvsu.math.vectors.Vector2f;
@@ -10,21 +11,36 @@ import java.util.*;
 public class Model {
 
     public String modelName;
-    public ArrayList<Vertex> vertices = new ArrayList<>(); //Вершины у модельки
-    public ArrayList<Integer> polygons = new ArrayList<Integer>(); //Индексы на конкретные вершины из списка для полигонов
-    public ArrayList<Integer> polygonsBoundaries = new ArrayList<>(); //Номер индекса с которого идут вершины для данного полигона (старт)
-    public ArrayList<Integer> polygonsTextureCoordinateIndices = new ArrayList<>();
+    //Геометрия по умолчанию хранится в плоских массивах (VertexList, IntArrayList), но полям можно присвоить
+    //и любой другой список. Циклы рендера получают массивы через VertexList.of и IntArrayList.of
+    public List<Vertex> vertices = new VertexList(); //Вершины у модельки
+    public List<Integer> polygons = new IntArrayList(); //Индексы на конкретные вершины из списка для полигонов
+    public List<Integer> polygonsBoundaries = new IntArrayList(); //Номер индекса с которого идут вершины для данного полигона (старт)
+    public List<Integer> polygonsTextureCoordinateIndices = new IntArrayList();
 
     public boolean hasTexture;  //Флаг для текстуры, используется в рендере
     public Image texture;   //Текстура в формате Image
     public String textureName;  //Название текстуры, используется в GuiController
     public static Image defaultTexture; //Дефолтная текстура
 
+    //Раскодированная texture для рендера и картинка, из которой она получена
+    private Texture decodedTexture;
+    private Image decodedTextureSource;
+
+    //Отбрасывать ли задние грани, null - как в SceneManager.backFaceCulling, если сетка замкнутая
+    public Boolean backFaceCulling;
+
+    //Кэш ограничивающих объёмов в локальных координатах, null - нужно пересчитать
+    private BoundingVolume boundingVolume;
+
     //Положение модельки в сцене
     public Transform currentTransform;
     //История трансформаций где последняя должна совпадать с текущей
     public ArrayList<Transform> transformHistory;
 
+    //Модель сцены, с которой снят этот снимок для рендера (null у самих моделей сцены)
+    private Model renderSource;
+
     //Отвечает по смыслу за наличие VT, может ли модель использовать текстуру
     public boolean getHasTextureVertex() {
         if (polygonsTextureCoordinateIndices == null || polygons == null || vertices == null ||
@@ -33,25 +49,54 @@ public class Model {
         }
 
         //Если хотя бы у одного угла localUvIndex < 0, считаем что vt нет и использовать текстуру нельзя
-        for (int i = 0; i < polygonsTextureCoordinateIndices.size(); i++) {
-            if (polygonsTextureCoordinateIndices.get(i) < 0) return false;
+        IntArrayList uvIndices = IntArrayList.of(polygonsTextureCoordinateIndices);
+        for (int i = 0; i < uvIndices.size(); i++) {
+            if (uvIndices.getInt(i) < 0) return false;
         }
         return true;
     }
 
 
-    //Получаем UV по индексу вершины для угла полигона
+    //Получаем UV по индексу вершины для угла полигона.
+    //getHasTextureVertex проходит по всем углам, так что циклы по углам проверяют её один раз
+    //и берут UV прямо из VertexList (см. RenderEngine и ObjWriter)
     public Vector2f getTextureCoordinateForPolygonVertex(int polygonVertexGlobalIndex) {
         if (!getHasTextureVertex()) return null;
         if (polygonVertexGlobalIndex < 0 || polygonVertexGlobalIndex >= polygons.size()) return null;
 
         int vIndex = polygons.get(polygonVertexGlobalIndex);
         int uvLocalIndex = polygonsTextureCoordinateIndices.get(polygonVertexGlobalIndex);
+        if (vertices instanceof VertexList) {
+            return ((VertexList) vertices).getTextureCoordinate(vIndex, uvLocalIndex);
+        }
         return vertices.get(vIndex).getTextureCoordinate(uvLocalIndex);
     }
 
+    //Текстура в виде массива ARGB, раскодируется заново только если поменяли texture
+    public Texture getDecodedTexture() {
+        if (texture != decodedTextureSource) {
+            decodedTexture = Texture.of(texture);
+            decodedTextureSource = texture;
+        }
+        return decodedTexture;
+    }
+
+    //AABB и ограничивающая сфера модели в локальных координатах (считаются лениво и кэшируются)
+    public BoundingVolume getBoundingVolume() {
+        if (boundingVolume == null) {
+            boundingVolume = BoundingVolume.fromVertices(vertices);
+        }
+        return boundingVolume;
+    }
+
+    //Нужно вызывать после любого изменения позиций или списка вершин
+    public void invalidateBoundingVolume() {
+        boundingVolume = null;
+    }
+
     public void bakeCurrentTransformIntoGeometry() {
         if (currentTransform == null || vertices == null) return;
+        invalidateBoundingVolume();
 
         com.cgvsu.math.matrixs.Matrix4f modelMatrix =
                 com.cgvsu.render_engine.GraphicConveyor.rotateScaleTranslate(
@@ -60,9 +105,20 @@ public class Model {
                         currentTransform.positionX, currentTransform.positionY, currentTransform.positionZ
                 );
 
-        for (Vertex v : vertices) {
-            if (v == null || v.position == null) return;
-            v.position = modelMatrix.multiplyOnVector(v.position);
+        if (vertices instanceof VertexList) {
+            //Без создания объектов Vertex
+            VertexList list = (VertexList) vertices;
+            for (int i = 0; i < list.size(); i++) {
+                Vector3f position = list.getPosition(i);
+                if (position == null) return;
+                position = modelMatrix.multiplyOnVector(position);
+                list.setPosition(i, position.getX(), position.getY(), position.getZ());
+            }
+        } else {
+            for (Vertex v : vertices) {
+                if (v == null || v.position == null) return;
+                v.position = modelMatrix.multiplyOnVector(v.position);
+            }
         }
 
         try {
@@ -70,6 +126,35 @@ public class Model {
         } catch (Exception ignored) { }
     }
 
+    //Снимок для рендера в отдельном потоке: свои списки полигонов и вершин и своя трансформация,
+    //так что правки модели в GUI не меняют уже снятый кадр. Массивы общие до первой правки, после неё модель копирует свои
+    public Model renderSnapshot() {
+        Model copy = new Model();
+
+        copy.renderSource = getRenderSource();
+        copy.modelName = this.modelName;
+        copy.hasTexture = this.hasTexture;
+        copy.texture = this.texture;
+        copy.textureName = this.textureName;
+        copy.backFaceCulling = this.backFaceCulling;
+        copy.boundingVolume = getBoundingVolume();
+        copy.decodedTexture = this.decodedTexture;
+        copy.decodedTextureSource = this.decodedTextureSource;
+
+        copy.vertices = VertexList.snapshotOf(this.vertices);
+        copy.polygons = IntArrayList.snapshotOf(this.polygons);
+        copy.polygonsBoundaries = IntArrayList.snapshotOf(this.polygonsBoundaries);
+        copy.polygonsTextureCoordinateIndices = IntArrayList.snapshotOf(this.polygonsTextureCoordinateIndices);
+
+        copy.currentTransform = (this.currentTransform == null) ? null : this.currentTransform.deepCopy();
+        return copy;
+    }
+
+    //Модель сцены, к которой привязываются кэши рендера: у снимка - исходная модель, иначе сама модель
+    public Model getRenderSource() {
+        return renderSource != null ? renderSource : this;
+    }
+
     public Model copyWithTransform() {
         Model copy = this.deepCopy();
         copy.bakeCurrentTransformIntoGeometry();
@@ -96,18 +181,20 @@ public class Model {
                 result.currentTransform = new Transform(0, 0, 0, 0, 0, 0, 1, 1, 1);
                 result.hasTexture = false;
 
-                result.vertices = new ArrayList<>();
+                VertexList vertices = new VertexList(readVertices.size());
                 for (int i = 0; i < readVertices.size(); i++) {
-                    Vertex vertex = new Vertex();
-                    vertex.position = readVertices.get(i);
-                    vertex.normal = null;
-                    result.vertices.add(vertex);
+                    Vector3f position = readVertices.get(i);
+                    vertices.addVertex(position.getX(), position.getY(), position.getZ());
                 }
+                result.vertices = vertices;
 
                 boolean fileHasVt = readTextureVertices != null && !readTextureVertices.isEmpty();
-                result.polygons = new ArrayList<>();
-                result.polygonsBoundaries = new ArrayList<>();
-                result.polygonsTextureCoordinateIndices = new ArrayList<>();
+                IntArrayList polygons = new IntArrayList();
+                IntArrayList polygonsBoundaries = new IntArrayList(readPolygonsIndices.size());
+                IntArrayList polygonsTextureCoordinateIndices = new IntArrayList();
+                result.polygons = polygons;
+                result.polygonsBoundaries = polygonsBoundaries;
+                result.polygonsTextureCoordinateIndices = polygonsTextureCoordinateIndices;
 
 
                 for (ArrayList<Integer>[] polygon : readPolygonsIndices) {
@@ -117,20 +204,20 @@ public class Model {
 
                     ArrayList<Integer> vertexIds = polygon[0];
                     ArrayList<Integer> textureVertexIds = (polygon.length > 1) ? polygon[1] : null;
-                    result.polygonsBoundaries.add(result.polygons.size()); //Формируем массив с границами полигонов
+                    polygonsBoundaries.addInt(polygons.size()); //Формируем массив с границами полигонов
 
 
                     for (int i = 0; i < vertexIds.size(); i++) {
                         int vertexIndex = vertexIds.get(i);
-                        result.polygons.add(vertexIndex);
+                        polygons.addInt(vertexIndex);
 
                         int localUvIndex = -1;
                         if (fileHasVt && textureVertexIds != null && !textureVertexIds.isEmpty()) {
                             int globalVtIndex = textureVertexIds.get(i); //Получаем индекс vt от полигона
                             Vector2f uv = readTextureVertices.get(globalVtIndex); //Получаем конкретную UV по индексу vt из прочитанных данных
-                            localUvIndex = result.vertices.get(vertexIndex).getOrAddTextureCoordinate(uv); //Получаем локальный индекс UV внутри Vertex
+                            localUvIndex = vertices.getOrAddTextureCoordinate(vertexIndex, uv.getX(), uv.getY()); //Получаем локальный индекс UV у вершины
                         }
-                        result.polygonsTextureCoordinateIndices.add(localUvIndex);
+                        polygonsTextureCoordinateIndices.addInt(localUvIndex);
                     }
                 }
 
@@ -155,15 +242,18 @@ public class Model {
             return;
         }
 
-        ArrayList<Integer> newPolygons = new ArrayList<>();
-        ArrayList<Integer> newTextureLocalIndices = new ArrayList<>();
-        ArrayList<Integer> newBoundaries = new ArrayList<>();
+        IntArrayList polygons = IntArrayList.of(this.polygons);
+        IntArrayList polygonsTextureCoordinateIndices = IntArrayList.of(this.polygonsTextureCoordinateIndices);
+        IntArrayList polygonsBoundaries = IntArrayList.of(this.polygonsBoundaries);
+        IntArrayList newPolygons = new IntArrayList(polygons.size() * 3);
+        IntArrayList newTextureLocalIndices = new IntArrayList(polygons.size() * 3);
+        IntArrayList newBoundaries = new IntArrayList(polygons.size());
 
         int polygonCount = polygonsBoundaries.size();
         for (int polygonInd = 0; polygonInd < polygonCount; polygonInd++) {
-            int start = polygonsBoundaries.get(polygonInd);
+            int start = polygonsBoundaries.getInt(polygonInd);
             int end = (polygonInd + 1 < polygonCount)
-                    ? polygonsBoundaries.get(polygonInd + 1)
+                    ? polygonsBoundaries.getInt(polygonInd + 1)
                     : polygons.size();
 
             int vertexCount = end - start;
@@ -171,23 +261,20 @@ public class Model {
                 continue;
             }
 
-            List<Integer> polygonVertices = new ArrayList<>(polygons.subList(start, end));
-            List<Integer> polygonVtLocal = new ArrayList<>(polygonsTextureCoordinateIndices.subList(start, end));
-
             //Триангулируем по позициям 0..N-1 и применяем те же позиции к обоим спискам.
             List<List<Integer>> trianglesPos = TriangulationAlgorithm.triangulatePositions(vertexCount);
             for (List<Integer> triPos : trianglesPos) {
-                newBoundaries.add(newPolygons.size());
+                newBoundaries.addInt(newPolygons.size());
                 for (int pos : triPos) {
-                    newPolygons.add(polygonVertices.get(pos));
-                    newTextureLocalIndices.add(polygonVtLocal.get(pos));
+                    newPolygons.addInt(polygons.getInt(start + pos));
+                    newTextureLocalIndices.addInt(polygonsTextureCoordinateIndices.getInt(start + pos));
                 }
             }
         }
 
-        polygons = newPolygons;
-        polygonsTextureCoordinateIndices = newTextureLocalIndices;
-        polygonsBoundaries = newBoundaries;
+        this.polygons = newPolygons;
+        this.polygonsTextureCoordinateIndices = newTextureLocalIndices;
+        this.polygonsBoundaries = newBoundaries;
     }
 
     public Model deepCopy() {
@@ -197,15 +284,13 @@ public class Model {
         copy.hasTexture = this.hasTexture;
         copy.texture = this.texture;
         copy.textureName = this.textureName;
+        copy.backFaceCulling = this.backFaceCulling;
+        copy.boundingVolume = this.boundingVolume;
 
-        copy.vertices = new ArrayList<>(this.vertices.size());
-        for (Vertex v : this.vertices) {
-            copy.vertices.add(v == null ? null : v.deepCopy());
-        }
-
-        copy.polygons = new ArrayList<>(this.polygons);
-        copy.polygonsBoundaries = new ArrayList<>(this.polygonsBoundaries);
-        copy.polygonsTextureCoordinateIndices = new ArrayList<>(this.polygonsTextureCoordinateIndices);
+        copy.vertices = VertexList.copyOf(this.vertices);
+        copy.polygons = new IntArrayList(this.polygons);
+        copy.polygonsBoundaries = new IntArrayList(this.polygonsBoundaries);
+        copy.polygonsTextureCoordinateIndices = new IntArrayList(this.polygonsTextureCoordinateIndices);
 
         copy.currentTransform = (this.currentTransform == null) ? null : this.currentTransform.deepCopy();
 
@@ -229,17 +314,20 @@ public class Model {
             return false;
         }
 
-        ArrayList<Integer> newPolygons = new ArrayList<>();
-        ArrayList<Integer> newTextureLocalIndices = new ArrayList<>();
-        ArrayList<Integer> newBoundaries = new ArrayList<>();
+        IntArrayList polygons = IntArrayList.of(this.polygons);
+        IntArrayList polygonsTextureCoordinateIndices = IntArrayList.of(this.polygonsTextureCoordinateIndices);
+        IntArrayList polygonsBoundaries = IntArrayList.of(this.polygonsBoundaries);
+        IntArrayList newPolygons = new IntArrayList(polygons.size());
+        IntArrayList newTextureLocalIndices = new IntArrayList(polygons.size());
+        IntArrayList newBoundaries = new IntArrayList(polygonsBoundaries.size());
 
         int polygonCount = polygonsBoundaries.size();
 
         for (int polyIdx = 0; polyIdx < polygonCount; polyIdx++) {
 
-            int start = polygonsBoundaries.get(polyIdx);
+            int start = polygonsBoundaries.getInt(polyIdx);
             int end = (polyIdx + 1 < polygonCount)
-                    ? polygonsBoundaries.get(polyIdx + 1)
+                    ? polygonsBoundaries.getInt(polyIdx + 1)
                     : polygons.size();
 
             if (start < 0 || start > end || end > polygons.size()) {
@@ -249,7 +337,7 @@ public class Model {
             //Использует ли этот полигон вершину vertexIndex
             boolean polygonUsesDeletedVertex = false;
             for (int i = start; i < end; i++) {
-                if (polygons.get(i) == vertexIndex) {
+                if (polygons.getInt(i) == vertexIndex) {
                     polygonUsesDeletedVertex = true;
                     break;
                 }
@@ -260,29 +348,30 @@ public class Model {
                 continue;
             }
 
-            newBoundaries.add(newPolygons.size());
+            newBoundaries.addInt(newPolygons.size());
 
 
             for (int i = start; i < end; i++) { //Копируем все углы полигона
 
-                int v = polygons.get(i);
-                int uvLocal = polygonsTextureCoordinateIndices.get(i);
+                int v = polygons.getInt(i);
+                int uvLocal = polygonsTextureCoordinateIndices.getInt(i);
 
                 //После удаления вершины все индексы > vertexIndex должны сдвинуться на -1
                 if (v > vertexIndex) {
                     v--;
                 }
 
-                newPolygons.add(v);
-                newTextureLocalIndices.add(uvLocal);
+                newPolygons.addInt(v);
+                newTextureLocalIndices.addInt(uvLocal);
             }
         }
 
         vertices.remove(vertexIndex);
+        invalidateBoundingVolume();
 
-        polygons = newPolygons;
-        polygonsTextureCoordinateIndices = newTextureLocalIndices;
-        polygonsBoundaries = newBoundaries;
+        this.polygons = newPolygons;
+        this.polygonsTextureCoordinateIndices = newTextureLocalIndices;
+        this.polygonsBoundaries = newBoundaries;
 
         try {
             new com.cgvsu.modelOperations.MyVertexNormalCalc().calculateVertexNormals(this);
@@ -325,6 +414,7 @@ public class Model {
 
         if (deleteFreeVertices) {
             removeUnusedVerticesAndFixIndices();
+            invalidateBoundingVolume();
         }
 
         try {
@@ -353,11 +443,10 @@ public class Model {
         int[] map = new int[vertices.size()];
         Arrays.fill(map, -1);
 
-        ArrayList<Vertex> newVertices = new ArrayList<>();
+        int newCount = 0;
         for (int oldIndex = 0; oldIndex < vertices.size(); oldIndex++) {
             if (used[oldIndex]) {
-                map[oldIndex] = newVertices.size();
-                newVertices.add(vertices.get(oldIndex));
+                map[oldIndex] = newCount++;
             }
         }
 
@@ -369,7 +458,18 @@ public class Model {
             }
         }
 
-        vertices = newVertices;
+        if (vertices instanceof VertexList) {
+            //Сдвигаем строки массивов на месте, без объектов Vertex
+            ((VertexList) vertices).retain(used);
+        } else {
+            ArrayList<Vertex> newVertices = new ArrayList<>(newCount);
+            for (int oldIndex = 0; oldIndex < vertices.size(); oldIndex++) {
+                if (used[oldIndex]) {
+                    newVertices.add(vertices.get(oldIndex));
+                }
+            }
+            vertices = newVertices;
+        }
     }
 
 }
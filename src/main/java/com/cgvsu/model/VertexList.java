@@ -0,0 +1,502 @@
+package com.cgvsu.model;
+
+import com.cgvsu.math.vectors.Vector2f;
+import com.cgvsu.math.vectors.Vector3f;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * Вершины модели в плоских массивах (structure of arrays): позиции и нормали - по три float на вершину,
+ * текстурные координаты - общий пул по два float, связанный в цепочку UV каждой вершины.
+ * Для кода, который работает со списком вершин, это обычный List<Vertex>. Объект Vertex создаётся только
+ * для вершины, которую запросили через get (или добавили готовым объектом), и до следующего снимка хранит её данные
+ * сам: правки его полей видны через этот список, как в ArrayList. Остальные вершины живут только в массивах.
+ * Рендер читает вершины через getX/getNormalX и т.п., не создавая объектов.
+ * Снимок (snapshot) делит массивы с исходным списком, они копируются при первом изменении любого из них.
+ * Перед снимком данные объектов Vertex записываются в массивы, а сами объекты отвязываются от списка,
+ * так что у снимка объектов нет и все вершины снова читаются из массивов.
+ */
+public final class VertexList extends AbstractList<Vertex> implements RandomAccess {
+
+    // Нет ни UV, ни следующей UV в цепочке
+    private static final int NONE = -1;
+
+    private int size;
+    // x, y, z вершины i - элементы 3i, 3i + 1, 3i + 2, NaN в x - позиция не задана
+    private float[] positions;
+    // Нормали в том же порядке, NaN в x - нормаль не задана
+    private float[] normals;
+    // Первая UV вершины в пуле или NONE
+    private int[] firstTextureCoordinate;
+
+    // Пул UV: u, v - элементы 2k, 2k + 1, следующая UV той же вершины - nextTextureCoordinate[k]
+    private float[] textureCoordinates;
+    private int[] nextTextureCoordinate;
+    private int textureCoordinateCount;
+
+    // Массивы общие со снимком, перед изменением их нужно скопировать
+    private boolean shared;
+
+    // Объекты Vertex вершин, у которых они есть (null - ни одного). Данные такой вершины берутся из объекта
+    private Vertex[] views;
+
+    public VertexList() {
+        this(0);
+    }
+
+    public VertexList(int capacity) {
+        positions = new float[capacity * 3];
+        normals = new float[capacity * 3];
+        firstTextureCoordinate = new int[capacity];
+        textureCoordinates = new float[0];
+        nextTextureCoordinate = new int[0];
+    }
+
+    private VertexList(VertexList source, boolean share) {
+        size = source.size;
+        textureCoordinateCount = source.textureCoordinateCount;
+        if (share) {
+            positions = source.positions;
+            normals = source.normals;
+            firstTextureCoordinate = source.firstTextureCoordinate;
+            textureCoordinates = source.textureCoordinates;
+            nextTextureCoordinate = source.nextTextureCoordinate;
+            shared = true;
+        } else {
+            positions = Arrays.copyOf(source.positions, size * 3);
+            normals = Arrays.copyOf(source.normals, size * 3);
+            firstTextureCoordinate = Arrays.copyOf(source.firstTextureCoordinate, size);
+            textureCoordinates = Arrays.copyOf(source.textureCoordinates, textureCoordinateCount * 2);
+            nextTextureCoordinate = Arrays.copyOf(source.nextTextureCoordinate, textureCoordinateCount);
+            // Объекты вершин остаются у исходного списка, копия получает их текущие данные в массивах
+            if (source.views != null) {
+                for (int i = 0; i < size; i++) {
+                    if (source.views[i] != null) {
+                        writeVertex(i, source.views[i]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Вершины для чтения: сам список, если это VertexList, иначе упакованная копия
+     */
+    public static VertexList of(List<Vertex> vertices) {
+        return vertices instanceof VertexList ? (VertexList) vertices : copyOf(vertices);
+    }
+
+    /**
+     * Независимая копия любого списка вершин
+     */
+    public static VertexList copyOf(List<Vertex> vertices) {
+        if (vertices instanceof VertexList) {
+            return ((VertexList) vertices).copy();
+        }
+        VertexList copy = new VertexList(vertices.size());
+        for (Vertex vertex : vertices) {
+            int index = copy.addVertex(Float.NaN, 0, 0);
+            if (vertex != null) {
+                copy.writeVertex(index, vertex);
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Копия для рендера в другом потоке: массивы общие до первого изменения (вызывать в потоке, который меняет список).
+     * Объекты Vertex исходного списка записываются в массивы и отвязываются от него
+     */
+    static VertexList snapshotOf(List<Vertex> vertices) {
+        if (vertices instanceof VertexList) {
+            VertexList source = (VertexList) vertices;
+            source.releaseViews();
+            source.shared = true;
+            return new VertexList(source, true);
+        }
+        return copyOf(vertices);
+    }
+
+    /**
+     * Независимая копия
+     */
+    public VertexList copy() {
+        return new VertexList(this, false);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Объект вершины index. Создаётся при первом обращении и хранит данные вершины сам до следующего снимка
+     * (snapshotOf): тогда данные записываются в массивы, а объект отвязывается, и его правки в список уже не попадают
+     */
+    @Override
+    public Vertex get(int index) {
+        checkIndex(index);
+        Vertex view = view(index);
+        if (view != null) return view;
+
+        view = new Vertex(getPosition(index));
+        if (hasNormal(index)) {
+            view.normal = new Vector3f(normals[index * 3], normals[index * 3 + 1], normals[index * 3 + 2]);
+        }
+        for (int k = firstTextureCoordinate[index]; k != NONE; k = nextTextureCoordinate[k]) {
+            view.textureCoordinates.add(new Vector2f(textureCoordinates[k * 2], textureCoordinates[k * 2 + 1]));
+        }
+        ensureViews();
+        views[index] = view;
+        return view;
+    }
+
+    @Override
+    public Vertex set(int index, Vertex vertex) {
+        Objects.requireNonNull(vertex);
+        Vertex previous = get(index);
+        views[index] = vertex;
+        return previous;
+    }
+
+    @Override
+    public void add(int index, Vertex vertex) {
+        Objects.requireNonNull(vertex);
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        ensureOwned(size + 1, 0);
+        System.arraycopy(positions, index * 3, positions, index * 3 + 3, (size - index) * 3);
+        System.arraycopy(normals, index * 3, normals, index * 3 + 3, (size - index) * 3);
+        System.arraycopy(firstTextureCoordinate, index, firstTextureCoordinate, index + 1, size - index);
+        ensureViews();
+        System.arraycopy(views, index, views, index + 1, size - index);
+        // Данные вершины берутся из самого объекта, строка массивов только помечается пустой
+        positions[index * 3] = Float.NaN;
+        normals[index * 3] = Float.NaN;
+        firstTextureCoordinate[index] = NONE;
+        views[index] = vertex;
+        size++;
+        modCount++;
+    }
+
+    /**
+     * Добавляет вершину без нормали и UV, объект Vertex для неё не создаётся
+     * @return индекс новой вершины
+     */
+    public int addVertex(float x, float y, float z) {
+        ensureOwned(size + 1, 0);
+        int index = size++;
+        positions[index * 3] = x;
+        positions[index * 3 + 1] = y;
+        positions[index * 3 + 2] = z;
+        normals[index * 3] = Float.NaN;
+        firstTextureCoordinate[index] = NONE;
+        if (views != null) {
+            views[index] = null;
+        }
+        modCount++;
+        return index;
+    }
+
+    @Override
+    public Vertex remove(int index) {
+        Vertex previous = get(index);
+        removeRange(index, index + 1);
+        return previous;
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > size || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("Range: " + fromIndex + ".." + toIndex + ", size: " + size);
+        }
+        ensureOwned(size, 0);
+        // UV удалённых вершин остаются в пуле без ссылок на них
+        System.arraycopy(positions, toIndex * 3, positions, fromIndex * 3, (size - toIndex) * 3);
+        System.arraycopy(normals, toIndex * 3, normals, fromIndex * 3, (size - toIndex) * 3);
+        System.arraycopy(firstTextureCoordinate, toIndex, firstTextureCoordinate, fromIndex, size - toIndex);
+        if (views != null) {
+            System.arraycopy(views, toIndex, views, fromIndex, size - toIndex);
+            Arrays.fill(views, size - (toIndex - fromIndex), size, null);
+        }
+        size -= toIndex - fromIndex;
+        modCount++;
+    }
+
+    /**
+     * Оставляет только вершины с keep[i] == true, сохраняя их порядок
+     */
+    void retain(boolean[] keep) {
+        ensureOwned(size, 0);
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (!keep[i]) continue;
+            if (count != i) {
+                System.arraycopy(positions, i * 3, positions, count * 3, 3);
+                System.arraycopy(normals, i * 3, normals, count * 3, 3);
+                firstTextureCoordinate[count] = firstTextureCoordinate[i];
+                if (views != null) {
+                    views[count] = views[i];
+                }
+            }
+            count++;
+        }
+        if (views != null) {
+            Arrays.fill(views, count, size, null);
+        }
+        size = count;
+        modCount++;
+    }
+
+    @Override
+    public void clear() {
+        ensureOwned(0, 0);
+        size = 0;
+        textureCoordinateCount = 0;
+        views = null;
+        modCount++;
+    }
+
+    public boolean hasPosition(int index) {
+        return !Float.isNaN(getX(index));
+    }
+
+    public float getX(int index) {
+        Vertex view = view(index);
+        if (view == null) return positions[index * 3];
+        return view.position == null ? Float.NaN : view.position.getX();
+    }
+
+    public float getY(int index) {
+        Vertex view = view(index);
+        if (view == null) return positions[index * 3 + 1];
+        return view.position == null ? Float.NaN : view.position.getY();
+    }
+
+    public float getZ(int index) {
+        Vertex view = view(index);
+        if (view == null) return positions[index * 3 + 2];
+        return view.position == null ? Float.NaN : view.position.getZ();
+    }
+
+    /**
+     * Позиция вершины (новый объект) или null, если она не задана
+     */
+    public Vector3f getPosition(int index) {
+        return hasPosition(index) ? new Vector3f(getX(index), getY(index), getZ(index)) : null;
+    }
+
+    public void setPosition(int index, float x, float y, float z) {
+        checkIndex(index);
+        Vertex view = view(index);
+        if (view != null) {
+            view.position = new Vector3f(x, y, z);
+            return;
+        }
+        ensureOwned(size, 0);
+        positions[index * 3] = x;
+        positions[index * 3 + 1] = y;
+        positions[index * 3 + 2] = z;
+    }
+
+    public boolean hasNormal(int index) {
+        Vertex view = view(index);
+        return view == null ? !Float.isNaN(normals[index * 3]) : view.normal != null;
+    }
+
+    public float getNormalX(int index) {
+        Vertex view = view(index);
+        return view == null ? normals[index * 3] : view.normal.getX();
+    }
+
+    public float getNormalY(int index) {
+        Vertex view = view(index);
+        return view == null ? normals[index * 3 + 1] : view.normal.getY();
+    }
+
+    public float getNormalZ(int index) {
+        Vertex view = view(index);
+        return view == null ? normals[index * 3 + 2] : view.normal.getZ();
+    }
+
+    public void setNormal(int index, float x, float y, float z) {
+        checkIndex(index);
+        Vertex view = view(index);
+        if (view != null) {
+            view.normal = new Vector3f(x, y, z);
+            return;
+        }
+        ensureOwned(size, 0);
+        normals[index * 3] = x;
+        normals[index * 3 + 1] = y;
+        normals[index * 3 + 2] = z;
+    }
+
+    /**
+     * Сколько разных UV использовалось с вершиной
+     */
+    public int getTextureCoordinateCount(int index) {
+        Vertex view = view(index);
+        if (view != null) {
+            return view.textureCoordinates == null ? 0 : view.textureCoordinates.size();
+        }
+        int count = 0;
+        for (int k = firstTextureCoordinate[index]; k != NONE; k = nextTextureCoordinate[k]) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * UV вершины по её локальному индексу или null, если такой UV нет
+     */
+    public Vector2f getTextureCoordinate(int index, int localIndex) {
+        if (index < 0 || index >= size || localIndex < 0) return null;
+        Vertex view = view(index);
+        if (view != null) {
+            return view.getTextureCoordinate(localIndex);
+        }
+        int k = firstTextureCoordinate[index];
+        for (int i = 0; i < localIndex && k != NONE; i++) {
+            k = nextTextureCoordinate[k];
+        }
+        // NaN - UV null из объекта Vertex
+        if (k == NONE || Float.isNaN(textureCoordinates[k * 2])) return null;
+        return new Vector2f(textureCoordinates[k * 2], textureCoordinates[k * 2 + 1]);
+    }
+
+    /**
+     * Локальный индекс UV (u, v) у вершины, UV добавляется, если её ещё нет
+     */
+    public int getOrAddTextureCoordinate(int index, float u, float v) {
+        checkIndex(index);
+        Vertex view = view(index);
+        if (view != null) {
+            return view.getOrAddTextureCoordinate(new Vector2f(u, v));
+        }
+
+        int local = 0;
+        int last = NONE;
+        for (int k = firstTextureCoordinate[index]; k != NONE; k = nextTextureCoordinate[k]) {
+            // Сравнение как в Vector2f.equals
+            if (Float.compare(textureCoordinates[k * 2], u) == 0 && Float.compare(textureCoordinates[k * 2 + 1], v) == 0) {
+                return local;
+            }
+            last = k;
+            local++;
+        }
+
+        ensureOwned(size, 1);
+        int k = textureCoordinateCount++;
+        textureCoordinates[k * 2] = u;
+        textureCoordinates[k * 2 + 1] = v;
+        nextTextureCoordinate[k] = NONE;
+        if (last == NONE) {
+            firstTextureCoordinate[index] = k;
+        } else {
+            nextTextureCoordinate[last] = k;
+        }
+        return local;
+    }
+
+    // Записывает данные объектов Vertex в массивы и отвязывает объекты от списка
+    private void releaseViews() {
+        if (views == null) return;
+        Vertex[] released = views;
+        views = null;
+        for (int i = 0; i < size; i++) {
+            if (released[i] != null) {
+                writeVertex(i, released[i]);
+            }
+        }
+    }
+
+    // Записывает позицию, нормаль и UV объекта в строку index. Цепочка UV вершины переписывается на месте,
+    // новые ячейки пула берутся только под лишние UV, так что повторная запись той же вершины пул не растит
+    private void writeVertex(int index, Vertex vertex) {
+        final List<Vector2f> uvs = vertex.textureCoordinates;
+        final int uvCount = uvs == null ? 0 : uvs.size();
+        ensureOwned(size, uvCount);
+
+        Vector3f position = vertex.position;
+        positions[index * 3] = position == null ? Float.NaN : position.getX();
+        positions[index * 3 + 1] = position == null ? 0 : position.getY();
+        positions[index * 3 + 2] = position == null ? 0 : position.getZ();
+        Vector3f normal = vertex.normal;
+        normals[index * 3] = normal == null ? Float.NaN : normal.getX();
+        normals[index * 3 + 1] = normal == null ? 0 : normal.getY();
+        normals[index * 3 + 2] = normal == null ? 0 : normal.getZ();
+
+        int last = NONE;
+        int k = firstTextureCoordinate[index];
+        for (int i = 0; i < uvCount; i++) {
+            if (k == NONE) {
+                k = textureCoordinateCount++;
+                nextTextureCoordinate[k] = NONE;
+                if (last == NONE) {
+                    firstTextureCoordinate[index] = k;
+                } else {
+                    nextTextureCoordinate[last] = k;
+                }
+            }
+            // Локальные индексы UV должны сохраниться, поэтому null тоже занимает ячейку
+            Vector2f uv = uvs.get(i);
+            textureCoordinates[k * 2] = uv == null ? Float.NaN : uv.getX();
+            textureCoordinates[k * 2 + 1] = uv == null ? Float.NaN : uv.getY();
+            last = k;
+            k = nextTextureCoordinate[k];
+        }
+        if (last == NONE) {
+            firstTextureCoordinate[index] = NONE;
+        } else {
+            nextTextureCoordinate[last] = NONE;
+        }
+    }
+
+    private Vertex view(int index) {
+        return views == null ? null : views[index];
+    }
+
+    private void ensureViews() {
+        if (views == null) {
+            views = new Vertex[firstTextureCoordinate.length];
+        }
+    }
+
+    // Перед изменением: свои массивы на vertexCapacity вершин и ещё extraTextureCoordinates UV
+    private void ensureOwned(int vertexCapacity, int extraTextureCoordinates) {
+        if (shared || vertexCapacity > firstTextureCoordinate.length) {
+            int length = Math.max(firstTextureCoordinate.length, vertexCapacity);
+            if (vertexCapacity > firstTextureCoordinate.length) {
+                length = Math.max(length, firstTextureCoordinate.length + (firstTextureCoordinate.length >> 1) + 4);
+            }
+            positions = Arrays.copyOf(positions, length * 3);
+            normals = Arrays.copyOf(normals, length * 3);
+            firstTextureCoordinate = Arrays.copyOf(firstTextureCoordinate, length);
+            if (views != null) {
+                views = Arrays.copyOf(views, length);
+            }
+        }
+        int uvCapacity = textureCoordinateCount + extraTextureCoordinates;
+        if (shared || uvCapacity > nextTextureCoordinate.length) {
+            int length = Math.max(nextTextureCoordinate.length, uvCapacity);
+            if (uvCapacity > nextTextureCoordinate.length) {
+                length = Math.max(length, nextTextureCoordinate.length + (nextTextureCoordinate.length >> 1) + 4);
+            }
+            textureCoordinates = Arrays.copyOf(textureCoordinates, length * 2);
+            nextTextureCoordinate = Arrays.copyOf(nextTextureCoordinate, length);
+        }
+        shared = false;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.cgvsu.modelOperations;
+
+import java.util.Arrays;
+
+/**
+ * Иерархический Z-буфер поверх ZBuffer: консервативная (не меньше настоящей) наибольшая глубина
+ * для каждого тайла 8x8 пикселей и для каждого блока 32x32 (4x4 тайла).
+ * Если ближайшая точка треугольника не ближе наибольшей глубины тайла, ни один пиксель треугольника
+ * в этом тайле не пройдёт Z-тест, и тайл можно не растеризовать.
+ * Оценки обновляет сам ZBuffer при записи: тайл знает, сколько его пикселей уже записано, и наибольшую глубину
+ * первых записей. Пока записаны не все пиксели, тайл ничего не закрывает. Перезапись только уменьшает глубину,
+ * поэтому старая оценка остаётся консервативной, а точный максимум пересчитывается при проверке,
+ * когда от него зависит ответ и с прошлого пересчёта накопилось достаточно перезаписей.
+ * Тайл TileRenderer берёт размер блока (TileRenderer.TILE_SIZE = BLOCK_SIZE), поэтому потоки тайлового рендера
+ * работают с разными элементами.
+ * Заодно по блокам считаются фрагменты кадра для статистики перерисовки.
+ */
+public class DepthHierarchy {
+
+    public static final int TILE_SHIFT = 3;
+    public static final int TILE_SIZE = 1 << TILE_SHIFT;
+    public static final int BLOCK_SHIFT = 5;
+    public static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+    private static final int TILES_PER_BLOCK_SHIFT = BLOCK_SHIFT - TILE_SHIFT;
+    // После скольких перезаписей тайла пересчитывать его максимум: не чаще раза на четверть тайла,
+    // иначе при отрисовке сзади вперёд пересчёт шёл бы после каждого треугольника
+    private static final int REFRESH_OVERWRITES = TILE_SIZE * TILE_SIZE / 4;
+
+    private final ZBuffer zBuffer;
+    private final int width;
+    private final int height;
+    private final int tilesX;
+    private final int tilesY;
+    private final int blocksX;
+    // Число пикселей в тайле (у правого и нижнего края тайлы неполные) и число тайлов в блоке
+    private final int[] tileArea;
+    private final int[] blockArea;
+
+    // Данные тайла действительны, только если его метка поколения совпадает с ZBuffer
+    private final int[] tileStamps;
+    // Сколько пикселей тайла записано в этом поколении
+    private final int[] tileCovered;
+    private final float[] tileMax;
+    // Сколько перезаписей было после подсчёта tileMax (оценка может быть завышена)
+    private final int[] tileOverwrites;
+
+    private final int[] blockStamps;
+    // Сколько тайлов блока полностью записано
+    private final int[] blockCovered;
+    private final float[] blockMax;
+
+    // Перерисовка блока за кадр: сколько записанных фрагментов перезаписали более близкие.
+    // Метки поколения свои: invalidate сбрасывает оценку глубины, но не статистику
+    private final int[] counterStamps;
+    private final int[] blockOverdrawn;
+
+    DepthHierarchy(ZBuffer zBuffer, int width, int height) {
+        this.zBuffer = zBuffer;
+        this.width = width;
+        this.height = height;
+        this.tilesX = (width + TILE_SIZE - 1) >> TILE_SHIFT;
+        this.tilesY = (height + TILE_SIZE - 1) >> TILE_SHIFT;
+        this.blocksX = (width + BLOCK_SIZE - 1) >> BLOCK_SHIFT;
+        int blocksY = (height + BLOCK_SIZE - 1) >> BLOCK_SHIFT;
+        this.tileStamps = new int[tilesX * tilesY];
+        this.tileCovered = new int[tilesX * tilesY];
+        this.tileMax = new float[tilesX * tilesY];
+        this.tileOverwrites = new int[tilesX * tilesY];
+        this.blockStamps = new int[blocksX * blocksY];
+        this.blockCovered = new int[blocksX * blocksY];
+        this.blockMax = new float[blocksX * blocksY];
+        this.counterStamps = new int[blocksX * blocksY];
+        this.blockOverdrawn = new int[blocksX * blocksY];
+
+        this.tileArea = new int[tilesX * tilesY];
+        for (int ty = 0; ty < tilesY; ty++) {
+            for (int tx = 0; tx < tilesX; tx++) {
+                tileArea[ty * tilesX + tx] = Math.min(TILE_SIZE, width - (tx << TILE_SHIFT))
+                        * Math.min(TILE_SIZE, height - (ty << TILE_SHIFT));
+            }
+        }
+        final int tilesPerBlock = 1 << TILES_PER_BLOCK_SHIFT;
+        this.blockArea = new int[blocksX * blocksY];
+        for (int by = 0; by < blocksY; by++) {
+            for (int bx = 0; bx < blocksX; bx++) {
+                blockArea[by * blocksX + bx] = Math.min(tilesPerBlock, tilesX - bx * tilesPerBlock)
+                        * Math.min(tilesPerBlock, tilesY - by * tilesPerBlock);
+            }
+        }
+    }
+
+    /**
+     * Сбрасывает все метки, вызывается ZBuffer при переполнении счётчика поколений
+     */
+    void reset() {
+        Arrays.fill(tileStamps, 0);
+        Arrays.fill(blockStamps, 0);
+        Arrays.fill(counterStamps, 0);
+    }
+
+    /**
+     * Первая запись пикселя в текущем поколении
+     */
+    void onFirstWrite(int x, int y, float z, int epoch) {
+        final int tile = (y >> TILE_SHIFT) * tilesX + (x >> TILE_SHIFT);
+        if (tileStamps[tile] != epoch) {
+            tileStamps[tile] = epoch;
+            tileCovered[tile] = 0;
+            tileMax[tile] = 0;
+            tileOverwrites[tile] = 0;
+        }
+        if (z > tileMax[tile]) tileMax[tile] = z;
+        if (++tileCovered[tile] < tileArea[tile]) return;
+
+        // Тайл записан целиком - учитываем его в блоке
+        final int block = (y >> BLOCK_SHIFT) * blocksX + (x >> BLOCK_SHIFT);
+        if (blockStamps[block] != epoch) {
+            blockStamps[block] = epoch;
+            blockCovered[block] = 0;
+            blockMax[block] = 0;
+        }
+        if (tileMax[tile] > blockMax[block]) blockMax[block] = tileMax[tile];
+        blockCovered[block]++;
+    }
+
+    /**
+     * Перезапись пикселя меньшей глубиной
+     */
+    void onOverwrite(int x, int y, int epoch) {
+        tileOverwrites[(y >> TILE_SHIFT) * tilesX + (x >> TILE_SHIFT)]++;
+        blockOverdrawn[counterBlock(x, y, epoch)]++;
+    }
+
+    private int counterBlock(int x, int y, int epoch) {
+        final int block = (y >> BLOCK_SHIFT) * blocksX + (x >> BLOCK_SHIFT);
+        if (counterStamps[block] != epoch) {
+            counterStamps[block] = epoch;
+            blockOverdrawn[block] = 0;
+        }
+        return block;
+    }
+
+    /**
+     * Сколько фрагментов текущего кадра было записано и затем перезаписано более близкими
+     */
+    public long getOverdrawnFragments() {
+        return sumCounters(blockOverdrawn);
+    }
+
+    private long sumCounters(int[] counters) {
+        final int epoch = zBuffer.getEpoch();
+        long sum = 0;
+        for (int block = 0; block < counters.length; block++) {
+            if (counterStamps[block] == epoch) sum += counters[block];
+        }
+        return sum;
+    }
+
+    /**
+     * Запись без проверки (ZBuffer.setDepth) могла увеличить глубину: тайл и блок больше ничего не закрывают
+     */
+    void invalidate(int x, int y) {
+        tileStamps[(y >> TILE_SHIFT) * tilesX + (x >> TILE_SHIFT)] = 0;
+        blockStamps[(y >> BLOCK_SHIFT) * blocksX + (x >> BLOCK_SHIFT)] = 0;
+    }
+
+    /**
+     * Проверяет, закрыт ли тайл (tx, ty) для поверхности с ближайшей глубиной nearestDepth
+     */
+    public boolean isTileOccluded(int tx, int ty, float nearestDepth) {
+        final int tile = ty * tilesX + tx;
+        final int epoch = zBuffer.getEpoch();
+        if (tileStamps[tile] != epoch || tileCovered[tile] < tileArea[tile]) return false;
+        if (nearestDepth >= tileMax[tile]) return true;
+        if (tileOverwrites[tile] < REFRESH_OVERWRITES) return false;
+
+        // Оценка могла устареть - уточняем и проверяем ещё раз
+        tileMax[tile] = exactTileMax(tx, ty);
+        tileOverwrites[tile] = 0;
+        return nearestDepth >= tileMax[tile];
+    }
+
+    /**
+     * Проверяет, закрыт ли весь прямоугольник пикселей (включительно) для поверхности с ближайшей глубиной
+     * nearestDepth. Сначала смотрит на блоки, и только для незакрытых блоков - на их тайлы.
+     */
+    public boolean isOccluded(int minX, int minY, int maxX, int maxY, float nearestDepth) {
+        final int epoch = zBuffer.getEpoch();
+        final int tMinX = minX >> TILE_SHIFT, tMaxX = maxX >> TILE_SHIFT;
+        final int tMinY = minY >> TILE_SHIFT, tMaxY = maxY >> TILE_SHIFT;
+
+        for (int by = minY >> BLOCK_SHIFT; by <= maxY >> BLOCK_SHIFT; by++) {
+            for (int bx = minX >> BLOCK_SHIFT; bx <= maxX >> BLOCK_SHIFT; bx++) {
+                final int block = by * blocksX + bx;
+                if (blockStamps[block] == epoch && blockCovered[block] == blockArea[block]
+                        && nearestDepth >= blockMax[block]) continue;
+
+                // Блок не закрыт целиком - проверяем его тайлы внутри прямоугольника
+                int fromTy = Math.max(tMinY, by << TILES_PER_BLOCK_SHIFT);
+                int toTy = Math.min(tMaxY, ((by + 1) << TILES_PER_BLOCK_SHIFT) - 1);
+                int fromTx = Math.max(tMinX, bx << TILES_PER_BLOCK_SHIFT);
+                int toTx = Math.min(tMaxX, ((bx + 1) << TILES_PER_BLOCK_SHIFT) - 1);
+                for (int ty = fromTy; ty <= toTy; ty++) {
+                    for (int tx = fromTx; tx <= toTx; tx++) {
+                        if (!isTileOccluded(tx, ty, nearestDepth)) return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private float exactTileMax(int tx, int ty) {
+        final float[] depths = zBuffer.getDepths();
+        final int x0 = tx << TILE_SHIFT, x1 = Math.min(width, x0 + TILE_SIZE);
+        final int y0 = ty << TILE_SHIFT, y1 = Math.min(height, y0 + TILE_SIZE);
+        float max = 0;
+        for (int y = y0; y < y1; y++) {
+            final int row = y * width;
+            for (int x = x0; x < x1; x++) {
+                float depth = depths[row + x];
+                if (depth > max) max = depth;
+            }
+        }
+        return max;
+    }
+}
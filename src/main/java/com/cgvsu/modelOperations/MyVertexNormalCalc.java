@@ -1,10 +1,9 @@
 package com.cgvsu.modelOperations;
 
 import com.cgvsu.math.vectors.Vector3f;
+import com.cgvsu.model.IntArrayList;
 import com.cgvsu.model.Model;
-
-import java.util.ArrayList;
-import java.util.List;
+import com.cgvsu.model.VertexList;
 
 import static com.cgvsu.modelOperations.NormalCalculation.calculatePolygonNormal;
 import static com.cgvsu.modelOperations.NormalCalculation.computePolygonArea;
@@ -19,34 +18,32 @@ public class MyVertexNormalCalc implements VertexNormals<Model> {
     public void calculateVertexNormals(Model model) {
         int vertexCount = model.vertices.size();
 
-        List<Vector3f> vertexNormals = new ArrayList<>(vertexCount);
-        List<Float> vertexWeights = new ArrayList<>(vertexCount);
+        // Суммы взвешенных нормалей (x, y, z подряд) и весов по вершинам
+        float[] vertexNormals = new float[vertexCount * 3];
+        float[] vertexWeights = new float[vertexCount];
 
-        for (int i = 0; i < vertexCount; i++) {
-            vertexNormals.add(new Vector3f(0, 0, 0));
-            vertexWeights.add(0f);
-        }
-
-        int polyCount = model.polygonsBoundaries.size();
+        IntArrayList polygons = IntArrayList.of(model.polygons);
+        IntArrayList polygonsBoundaries = IntArrayList.of(model.polygonsBoundaries);
+        int polyCount = polygonsBoundaries.size();
 
         for (int polyIdx = 0; polyIdx < polyCount; polyIdx++) {
-            int startOfPolygon = model.polygonsBoundaries.get(polyIdx);
+            int startOfPolygon = polygonsBoundaries.getInt(polyIdx);
             int endOfPolygon = (polyIdx == polyCount - 1)
-                    ? model.polygons.size()
-                    : model.polygonsBoundaries.get(polyIdx + 1);
+                    ? polygons.size()
+                    : polygonsBoundaries.getInt(polyIdx + 1);
 
             if (endOfPolygon - startOfPolygon < 3) continue;
 
             Vector3f polygonNormal = calculatePolygonNormal(
                     model.vertices,
-                    model.polygons,
+                    polygons,
                     startOfPolygon,
                     endOfPolygon
             );
 
             float area = computePolygonArea(
                     model.vertices,
-                    model.polygons,
+                    polygons,
                     startOfPolygon,
                     endOfPolygon
             );
@@ -58,22 +55,27 @@ public class MyVertexNormalCalc implements VertexNormals<Model> {
             Vector3f weightedNormal = polygonNormal.multiplied(area);
 
             for (int j = startOfPolygon; j < endOfPolygon; j++) {
-                int idx = model.polygons.get(j);
+                int idx = polygons.getInt(j);
                 if (idx < 0 || idx >= vertexCount) continue;
 
-                Vector3f currentNormal = vertexNormals.get(idx);
-                vertexNormals.set(idx, currentNormal.added(weightedNormal));
-
-                vertexWeights.set(idx, vertexWeights.get(idx) + area);
+                vertexNormals[idx * 3] += weightedNormal.getX();
+                vertexNormals[idx * 3 + 1] += weightedNormal.getY();
+                vertexNormals[idx * 3 + 2] += weightedNormal.getZ();
+                vertexWeights[idx] += area;
             }
         }
 
+        VertexList flatVertices = model.vertices instanceof VertexList ? (VertexList) model.vertices : null;
         for (int i = 0; i < vertexCount; i++) {
-            float weight = vertexWeights.get(i);
-            if (weight > 0) {
-                model.vertices.get(i).normal = vertexNormals.get(i).divided(weight).normalized();
+            float weight = vertexWeights[i];
+            Vector3f normal = weight > 0
+                    ? new Vector3f(vertexNormals[i * 3], vertexNormals[i * 3 + 1], vertexNormals[i * 3 + 2])
+                            .divided(weight).normalized()
+                    : new Vector3f(0, 0, 0);
+            if (flatVertices != null) {
+                flatVertices.setNormal(i, normal.getX(), normal.getY(), normal.getZ());
             } else {
-                model.vertices.get(i).normal = new Vector3f(0, 0, 0);
+                model.vertices.get(i).normal = normal;
             }
         }
     }
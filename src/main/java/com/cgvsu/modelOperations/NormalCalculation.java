@@ -2,6 +2,7 @@ package com.cgvsu.modelOperations;
 
 import com.cgvsu.math.vectors.Vector3f;
 import com.cgvsu.model.Vertex;
+import com.cgvsu.model.VertexList;
 
 import java.util.List;
 
@@ -26,9 +27,9 @@ public class NormalCalculation {
             return new Vector3f(0, 0, 0);
         }
 
-        Vector3f pos1 = vertices.get(i1).position;
-        Vector3f pos2 = vertices.get(i2).position;
-        Vector3f pos3 = vertices.get(i3).position;
+        Vector3f pos1 = position(vertices, i1);
+        Vector3f pos2 = position(vertices, i2);
+        Vector3f pos3 = position(vertices, i3);
 
         Vector3f normal = pos2.subbed(pos1).crossed(pos3.subbed(pos1));
 
@@ -61,10 +62,18 @@ public class NormalCalculation {
             return 0f;
         }
 
-        Vector3f v1 = vertices.get(i1).position;
-        Vector3f v2 = vertices.get(i2).position;
-        Vector3f v3 = vertices.get(i3).position;
+        Vector3f v1 = position(vertices, i1);
+        Vector3f v2 = position(vertices, i2);
+        Vector3f v3 = position(vertices, i3);
 
         return v2.subbed(v1).crossed(v3.subbed(v1)).len() * 0.5f;
     }
+
+    //Позиция вершины; у VertexList берём из массивов, чтобы не создавать объект Vertex на каждую вершину
+    private static Vector3f position(List<Vertex> vertices, int index) {
+        if (vertices instanceof VertexList) {
+            return ((VertexList) vertices).getPosition(index);
+        }
+        return vertices.get(index).position;
+    }
 }
@@ -214,9 +214,27 @@ public class Rasterization {
             float z1, float z2, float z3,
             float[] barycentric) {
 
+        if (v1 == null || v2 == null || v3 == null) {
+            return new Vector3f(0, 1, 0); // нормаль по умолчанию
+        }
+        return interpolateNormalWithPerspective(v1.normal, v2.normal, v3.normal, z1, z2, z3, barycentric);
+    }
+
+    /**
+     * То же, что и интерполяция по вершинам, но нормали передаются напрямую
+     * (например, уже переведённые в world space вершинной стадией)
+     * @param n1 нормаль первой вершины
+     * @param z1 глубина этой вершины
+     * @param barycentric барицентрики для вершин полигона
+     * @return нормаль в конкретной точке по барицентрикам
+     */
+    public static Vector3f interpolateNormalWithPerspective(
+            Vector3f n1, Vector3f n2, Vector3f n3,
+            float z1, float z2, float z3,
+            float[] barycentric) {
+
         if (barycentric == null || barycentric.length < 3 ||
-                v1 == null || v2 == null || v3 == null ||
-                v1.normal == null || v2.normal == null || v3.normal == null) {
+                n1 == null || n2 == null || n3 == null) {
             return new Vector3f(0, 1, 0); // нормаль по умолчанию
         }
 
@@ -230,17 +248,17 @@ public class Rasterization {
         float one_over_z3 = 1.0f / z3;
 
         // Вычисляем normal/z для каждой вершины
-        float nx_over_z1 = v1.normal.getX() * one_over_z1;
-        float ny_over_z1 = v1.normal.getY() * one_over_z1;
-        float nz_over_z1 = v1.normal.getZ() * one_over_z1;
+        float nx_over_z1 = n1.getX() * one_over_z1;
+        float ny_over_z1 = n1.getY() * one_over_z1;
+        float nz_over_z1 = n1.getZ() * one_over_z1;
 
-        float nx_over_z2 = v2.normal.getX() * one_over_z2;
-        float ny_over_z2 = v2.normal.getY() * one_over_z2;
-        float nz_over_z2 = v2.normal.getZ() * one_over_z2;
+        float nx_over_z2 = n2.getX() * one_over_z2;
+        float ny_over_z2 = n2.getY() * one_over_z2;
+        float nz_over_z2 = n2.getZ() * one_over_z2;
 
-        float nx_over_z3 = v3.normal.getX() * one_over_z3;
-        float ny_over_z3 = v3.normal.getY() * one_over_z3;
-        float nz_over_z3 = v3.normal.getZ() * one_over_z3;
+        float nx_over_z3 = n3.getX() * one_over_z3;
+        float ny_over_z3 = n3.getY() * one_over_z3;
+        float nz_over_z3 = n3.getZ() * one_over_z3;
 
         // Интерполяция
         float nx_over_z = alpha * nx_over_z1 + beta * nx_over_z2 + gamma * nx_over_z3;
@@ -382,6 +400,24 @@ public class Rasterization {
         return new int[]{minX, minY, maxX, maxY};
     }
 
+    /**
+     * Находит ограничивающий прямоугольник треугольника, обрезанный по прямоугольнику отсечения (обычно по экрану).
+     * Если треугольник не пересекается с прямоугольником отсечения, то minX > maxX или minY > maxY.
+     *
+     * @param v1, v2, v3 вершины треугольника в экранных координатах
+     * @param clipMinX, clipMinY, clipMaxX, clipMaxY прямоугольник отсечения (включительно)
+     * @return массив [minX, minY, maxX, maxY]
+     */
+    public static int[] getBoundingBox(Point2f v1, Point2f v2, Point2f v3,
+                                       int clipMinX, int clipMinY, int clipMaxX, int clipMaxY) {
+        int[] bbox = getBoundingBox(v1, v2, v3);
+        bbox[0] = Math.max(bbox[0], clipMinX);
+        bbox[1] = Math.max(bbox[1], clipMinY);
+        bbox[2] = Math.min(bbox[2], clipMaxX);
+        bbox[3] = Math.min(bbox[3], clipMaxY);
+        return bbox;
+    }
+
     /**
      * Растеризует треугольник, вызывая callback для каждого пикселя внутри треугольника.
      *
@@ -482,60 +518,401 @@ public class Rasterization {
             Vector3f worldPos1, Vector3f worldPos2, Vector3f worldPos3,
             PixelCallback pixelCallback, Matrix4f modelMatrix) {
 
-        int[] bbox = getBoundingBox(v1, v2, v3);
-        int minX = bbox[0];
-        int minY = bbox[1];
-        int maxX = bbox[2];
-        int maxY = bbox[3];
+        rasterizeTriangleWithWorldPos(v1, v2, v3, zProj1, zProj2, zProj3, zView1, zView2, zView3,
+                vertex1, vertex2, vertex3, tex1, tex2, tex3,
+                worldPos1, worldPos2, worldPos3, pixelCallback, modelMatrix,
+                Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
 
-        for (int y = minY; y <= maxY; y++) {
-            for (int x = minX; x <= maxX; x++) {
-                Point2f pixel = new Point2f(x, y);
-                float[] barycentric = calculateBarycentricCoordinates(pixel, v1, v2, v3);
+    /**
+     * То же самое, что и rasterizeTriangleWithWorldPos, но обходятся только пиксели внутри прямоугольника отсечения.
+     * Используется тайловым рендером, где каждый тайл растеризует свою часть треугольника.
+     *
+     * @param clipMinX, clipMinY левый верхний угол прямоугольника отсечения (включительно)
+     * @param clipMaxX, clipMaxY правый нижний угол прямоугольника отсечения (включительно)
+     */
+    public static void rasterizeTriangleWithWorldPos(
+            Point2f v1, Point2f v2, Point2f v3,
+            float zProj1, float zProj2, float zProj3,
+            float zView1, float zView2, float zView3,
+            Vertex vertex1, Vertex vertex2, Vertex vertex3,
+            Vector2f tex1, Vector2f tex2, Vector2f tex3,
+            Vector3f worldPos1, Vector3f worldPos2, Vector3f worldPos3,
+            PixelCallback pixelCallback, Matrix4f modelMatrix,
+            int clipMinX, int clipMinY, int clipMaxX, int clipMaxY) {
+
+        rasterizeTriangleCore(v1, v2, v3, zProj1, zProj2, zProj3, zView1, zView2, zView3,
+                vertex1 == null ? null : vertex1.normal,
+                vertex2 == null ? null : vertex2.normal,
+                vertex3 == null ? null : vertex3.normal,
+                tex1, tex2, tex3, worldPos1, worldPos2, worldPos3,
+                Varyings.forCurrentThread(), toFragmentCallback(pixelCallback), modelMatrix,
+                clipMinX, clipMinY, clipMaxX, clipMaxY);
+    }
 
-                if (isInsideTriangle(barycentric)) {
+    /**
+     * Растеризует треугольник, у которого нормали вершин уже переведены в world space (вершинной стадией).
+     * В callback одна и та же интерполированная нормаль приходит и как normal, и как worldNormal.
+     *
+     * @param v1, v2, v3 вершины треугольника в экранных координатах
+     * @param zView1, zView2, zView3 глубины вершин в view space
+     * @param normal1, normal2, normal3 нормали вершин в world space
+     * @param tex1, tex2, tex3 текстурные координаты углов (могут быть null)
+     * @param worldPos1, worldPos2, worldPos3 мировые позиции вершин
+     * @param pixelCallback callback для каждого пикселя
+     * @param clipMinX, clipMinY, clipMaxX, clipMaxY прямоугольник отсечения (включительно)
+     */
+    public static void rasterizeTriangleWithWorldNormals(
+            Point2f v1, Point2f v2, Point2f v3,
+            float zView1, float zView2, float zView3,
+            Vector3f normal1, Vector3f normal2, Vector3f normal3,
+            Vector2f tex1, Vector2f tex2, Vector2f tex3,
+            Vector3f worldPos1, Vector3f worldPos2, Vector3f worldPos3,
+            PixelCallback pixelCallback,
+            int clipMinX, int clipMinY, int clipMaxX, int clipMaxY) {
 
-                    float z = interpolateZWithPerspective(
-                            zProj1, zProj2, zProj3,
-                            zView1, zView2, zView3,
-                            barycentric
-                    );
-
-                    // Интерполируем мировую позицию
-                    Vector3f worldPosition = interpolateWorldPositionWithPerspective(
-                            worldPos1, worldPos2, worldPos3,
-                            zView1, zView2, zView3,
-                            barycentric
-                    );
-                    // Интерполируем текстурные координаты (передаются отдельно от Vertex)
-                    Vector2f texCoord = null;
-                    if (tex1 != null && tex2 != null && tex3 != null) {
-                        texCoord = interpolateWithPerspective(tex1, tex2, tex3, zView1, zView2, zView3, barycentric);
-                    } else if (!(tex1 == null && tex2 == null && tex3 == null)) {
-                        texCoord = new Vector2f(0, 0);
-                    }
-                    // Интерполируем нормаль
-                    Vector3f normal = interpolateNormalWithPerspective(
-                            vertex1, vertex2, vertex3,
-                            zView1, zView2, zView3,
-                            barycentric
-                    );
+        rasterizeTriangleFragments(v1, v2, v3, zView1, zView2, zView3,
+                normal1, normal2, normal3, tex1, tex2, tex3, worldPos1, worldPos2, worldPos3,
+                toFragmentCallback(pixelCallback), clipMinX, clipMinY, clipMaxX, clipMaxY);
+    }
 
-                    Vector3f worldNormal = modelMatrix.multiplyOnVector(normal);
-                    worldNormal.normalize();
+    /**
+     * Растеризует треугольник с нормалями в world space и отдаёт каждый пиксель во FragmentCallback.
+     * Атрибуты пикселя пишутся в Varyings текущего потока, в цикле по пикселям ничего не выделяется.
+     *
+     * @param v1, v2, v3 вершины треугольника в экранных координатах
+     * @param zView1, zView2, zView3 глубины вершин в view space
+     * @param normal1, normal2, normal3 нормали вершин в world space
+     * @param tex1, tex2, tex3 текстурные координаты углов (могут быть null)
+     * @param worldPos1, worldPos2, worldPos3 мировые позиции вершин
+     * @param fragmentCallback callback для каждого пикселя
+     * @param clipMinX, clipMinY, clipMaxX, clipMaxY прямоугольник отсечения (включительно)
+     */
+    public static void rasterizeTriangleFragments(
+            Point2f v1, Point2f v2, Point2f v3,
+            float zView1, float zView2, float zView3,
+            Vector3f normal1, Vector3f normal2, Vector3f normal3,
+            Vector2f tex1, Vector2f tex2, Vector2f tex3,
+            Vector3f worldPos1, Vector3f worldPos2, Vector3f worldPos3,
+            FragmentCallback fragmentCallback,
+            int clipMinX, int clipMinY, int clipMaxX, int clipMaxY) {
 
-                    pixelCallback.onPixel(x, y, z, barycentric, texCoord, normal, worldNormal, worldPosition);
+        rasterizeTriangleCore(v1, v2, v3, zView1, zView2, zView3, zView1, zView2, zView3,
+                normal1, normal2, normal3, tex1, tex2, tex3, worldPos1, worldPos2, worldPos3,
+                Varyings.forCurrentThread(), fragmentCallback, null, clipMinX, clipMinY, clipMaxX, clipMaxY);
+    }
+
+    /**
+     * Записывает в z-буфер только глубину треугольника, без атрибутов и закраски (проход глубины).
+     * Глубина пикселя считается теми же операциями, что и в rasterizeTriangleFragments, поэтому совпадает
+     * с ней побитово.
+     *
+     * @param v1, v2, v3 вершины треугольника в экранных координатах
+     * @param zView1, zView2, zView3 глубины вершин в view space
+     * @param zBuffer z-буфер, в который пишется глубина
+     * @param depthCallback вызывается для пикселей, прошедших Z-тест (может быть null)
+     * @param clipMinX, clipMinY, clipMaxX, clipMaxY прямоугольник отсечения (включительно)
+     */
+    public static void rasterizeTriangleDepth(
+            Point2f v1, Point2f v2, Point2f v3,
+            float zView1, float zView2, float zView3,
+            ZBuffer zBuffer, DepthCallback depthCallback,
+            int clipMinX, int clipMinY, int clipMaxX, int clipMaxY) {
+
+        final long x1 = toFixed(v1.getX()), y1 = toFixed(v1.getY());
+        final long x2 = toFixed(v2.getX()), y2 = toFixed(v2.getY());
+        final long x3 = toFixed(v3.getX()), y3 = toFixed(v3.getY());
+
+        long a1 = y2 - y3, b1 = x3 - x2;
+        long a2 = y3 - y1, b2 = x1 - x3;
+        long a3 = y1 - y2, b3 = x2 - x1;
+        long c1 = -(a1 * x3 + b1 * y3);
+        long c2 = -(a2 * x3 + b2 * y3);
+        long c3 = -(a3 * x1 + b3 * y1);
+        long area = a1 * x1 + b1 * y1 + c1;
+        if (area == 0) {
+            return;
+        }
+        if (area < 0) {
+            area = -area;
+            a1 = -a1; b1 = -b1; c1 = -c1;
+            a2 = -a2; b2 = -b2; c2 = -c2;
+            a3 = -a3; b3 = -b3; c3 = -c3;
+        }
+        final float invArea = 1.0f / area;
+
+        final boolean topLeft1 = isTopLeftEdge(a1, b1);
+        final boolean topLeft2 = isTopLeftEdge(a2, b2);
+        final boolean topLeft3 = isTopLeftEdge(a3, b3);
+
+        int[] bbox = getBoundingBox(v1, v2, v3, clipMinX, clipMinY, clipMaxX, clipMaxY);
+        final int minX = bbox[0], minY = bbox[1], maxX = bbox[2], maxY = bbox[3];
+
+        final float iz1 = 1.0f / zView1, iz2 = 1.0f / zView2, iz3 = 1.0f / zView3;
+
+        final long dx1 = a1 << SUBPIXEL_BITS, dx2 = a2 << SUBPIXEL_BITS, dx3 = a3 << SUBPIXEL_BITS;
+        final long dy1 = b1 << SUBPIXEL_BITS, dy2 = b2 << SUBPIXEL_BITS, dy3 = b3 << SUBPIXEL_BITS;
+        long row1 = a1 * ((long) minX << SUBPIXEL_BITS) + b1 * ((long) minY << SUBPIXEL_BITS) + c1;
+        long row2 = a2 * ((long) minX << SUBPIXEL_BITS) + b2 * ((long) minY << SUBPIXEL_BITS) + c2;
+        long row3 = a3 * ((long) minX << SUBPIXEL_BITS) + b3 * ((long) minY << SUBPIXEL_BITS) + c3;
+
+        for (int y = minY; y <= maxY; y++, row1 += dy1, row2 += dy2, row3 += dy3) {
+            long w1 = row1, w2 = row2, w3 = row3;
+            for (int x = minX; x <= maxX; x++, w1 += dx1, w2 += dx2, w3 += dx3) {
+                if (w1 < 0 || w2 < 0 || w3 < 0) continue;
+                if ((w1 == 0 && !topLeft1) || (w2 == 0 && !topLeft2) || (w3 == 0 && !topLeft3)) continue;
+
+                final float alpha = w1 * invArea;
+                final float beta = w2 * invArea;
+                final float gamma = 1.0f - alpha - beta;
+                final float zView = 1.0f / (alpha * iz1 + beta * iz2 + gamma * iz3);
+                if (Float.isFinite(zView) && zBuffer.testAndSet(x, y, zView) && depthCallback != null) {
+                    depthCallback.onDepthWritten(x, y, alpha, beta);
                 }
             }
         }
     }
 
+    /**
+     * Переходник со старого PixelCallback: объекты для callback создаются один раз на треугольник
+     * и заполняются из Varyings
+     */
+    private static FragmentCallback toFragmentCallback(PixelCallback pixelCallback) {
+        final float[] barycentric = new float[3];
+        final Vector2f texCoord = new Vector2f(0, 0);
+        final Vector3f normal = new Vector3f(0, 1, 0);
+        final Vector3f worldNormal = new Vector3f(0, 1, 0);
+        final Vector3f worldPosition = new Vector3f(0, 0, 0);
+        return in -> {
+            barycentric[0] = in.alpha;
+            barycentric[1] = in.beta;
+            barycentric[2] = in.gamma;
+            texCoord.setX(in.u);
+            texCoord.setY(in.v);
+            normal.setX(in.normalX);
+            normal.setY(in.normalY);
+            normal.setZ(in.normalZ);
+            worldNormal.setX(in.worldNormalX);
+            worldNormal.setY(in.worldNormalY);
+            worldNormal.setZ(in.worldNormalZ);
+            worldPosition.setX(in.worldX);
+            worldPosition.setY(in.worldY);
+            worldPosition.setZ(in.worldZ);
+            pixelCallback.onPixel(in.x, in.y, in.z, barycentric, in.hasTexCoord ? texCoord : null,
+                    normal, worldNormal, worldPosition);
+        };
+    }
+
+    /**
+     * Общий цикл растеризации на рёберных функциях. Если modelMatrix == null, нормали считаются уже мировыми.
+     * Рёберные функции и все деления на глубину считаются один раз на треугольник, по пикселям рёберные функции
+     * накапливаются сложением. Они целые (вершины в фиксированной точке), поэтому накопление точное: глубина
+     * пикселя не зависит от прямоугольника отсечения и совпадает в разных проходах и тайлах.
+     * Используется правило заполнения top-left, поэтому пиксель на общем ребре двух треугольников
+     * закрашивается ровно один раз.
+     * В цикле по пикселям ничего не выделяется: атрибуты пикселя пишутся в примитивные поля out,
+     * который переиспользуется для всех пикселей и валиден только внутри вызова callback.
+     */
+    private static void rasterizeTriangleCore(
+            Point2f v1, Point2f v2, Point2f v3,
+            float zProj1, float zProj2, float zProj3,
+            float zView1, float zView2, float zView3,
+            Vector3f normal1, Vector3f normal2, Vector3f normal3,
+            Vector2f tex1, Vector2f tex2, Vector2f tex3,
+            Vector3f worldPos1, Vector3f worldPos2, Vector3f worldPos3,
+            Varyings out, FragmentCallback fragmentCallback, Matrix4f modelMatrix,
+            int clipMinX, int clipMinY, int clipMaxX, int clipMaxY) {
+
+        // Вершины в фиксированной точке, см. toFixed
+        final long x1 = toFixed(v1.getX()), y1 = toFixed(v1.getY());
+        final long x2 = toFixed(v2.getX()), y2 = toFixed(v2.getY());
+        final long x3 = toFixed(v3.getX()), y3 = toFixed(v3.getY());
+
+        // Коэффициенты рёберных функций w = A * x + B * y + C (w1 -> alpha, w2 -> beta, w3 -> gamma)
+        long a1 = y2 - y3, b1 = x3 - x2;
+        long a2 = y3 - y1, b2 = x1 - x3;
+        long a3 = y1 - y2, b3 = x2 - x1;
+        long c1 = -(a1 * x3 + b1 * y3);
+        long c2 = -(a2 * x3 + b2 * y3);
+        long c3 = -(a3 * x1 + b3 * y1);
+
+        // Удвоенная ориентированная площадь, тот же знаменатель, что и в calculateBarycentricCoordinates
+        long area = a1 * x1 + b1 * y1 + c1;
+        if (area == 0) {
+            return; //Вырожденный треугольник
+        }
+
+        // Приводим к ориентации, в которой внутренность треугольника соответствует w > 0
+        if (area < 0) {
+            area = -area;
+            a1 = -a1; b1 = -b1; c1 = -c1;
+            a2 = -a2; b2 = -b2; c2 = -c2;
+            a3 = -a3; b3 = -b3; c3 = -c3;
+        }
+        final float invArea = 1.0f / area;
+
+        final boolean topLeft1 = isTopLeftEdge(a1, b1);
+        final boolean topLeft2 = isTopLeftEdge(a2, b2);
+        final boolean topLeft3 = isTopLeftEdge(a3, b3);
+
+        int[] bbox = getBoundingBox(v1, v2, v3, clipMinX, clipMinY, clipMaxX, clipMaxY);
+        final int minX = bbox[0];
+        final int minY = bbox[1];
+        final int maxX = bbox[2];
+        final int maxY = bbox[3];
+        if (minX > maxX || minY > maxY) {
+            return;
+        }
+
+        // Перспективно-корректная интерполяция: все атрибуты заранее делим на zView
+        final float iz1 = 1.0f / zView1, iz2 = 1.0f / zView2, iz3 = 1.0f / zView3;
+        final float zp1 = zProj1 * iz1, zp2 = zProj2 * iz2, zp3 = zProj3 * iz3;
+
+        final boolean hasWorldPos = worldPos1 != null && worldPos2 != null && worldPos3 != null;
+        final float wx1 = hasWorldPos ? worldPos1.getX() * iz1 : 0, wy1 = hasWorldPos ? worldPos1.getY() * iz1 : 0, wz1 = hasWorldPos ? worldPos1.getZ() * iz1 : 0;
+        final float wx2 = hasWorldPos ? worldPos2.getX() * iz2 : 0, wy2 = hasWorldPos ? worldPos2.getY() * iz2 : 0, wz2 = hasWorldPos ? worldPos2.getZ() * iz2 : 0;
+        final float wx3 = hasWorldPos ? worldPos3.getX() * iz3 : 0, wy3 = hasWorldPos ? worldPos3.getY() * iz3 : 0, wz3 = hasWorldPos ? worldPos3.getZ() * iz3 : 0;
+
+        final boolean hasTex = tex1 != null && tex2 != null && tex3 != null;
+        final boolean partialTex = !hasTex && !(tex1 == null && tex2 == null && tex3 == null);
+        final float u1 = hasTex ? tex1.getX() * iz1 : 0, tv1 = hasTex ? tex1.getY() * iz1 : 0;
+        final float u2 = hasTex ? tex2.getX() * iz2 : 0, tv2 = hasTex ? tex2.getY() * iz2 : 0;
+        final float u3 = hasTex ? tex3.getX() * iz3 : 0, tv3 = hasTex ? tex3.getY() * iz3 : 0;
+
+        final boolean hasNormals = normal1 != null && normal2 != null && normal3 != null;
+        final float nx1 = hasNormals ? normal1.getX() * iz1 : 0, ny1 = hasNormals ? normal1.getY() * iz1 : 0, nz1 = hasNormals ? normal1.getZ() * iz1 : 0;
+        final float nx2 = hasNormals ? normal2.getX() * iz2 : 0, ny2 = hasNormals ? normal2.getY() * iz2 : 0, nz2 = hasNormals ? normal2.getZ() * iz2 : 0;
+        final float nx3 = hasNormals ? normal3.getX() * iz3 : 0, ny3 = hasNormals ? normal3.getY() * iz3 : 0, nz3 = hasNormals ? normal3.getZ() * iz3 : 0;
+
+        // Верхняя 3x4 часть modelMatrix для нормалей (старый путь через rasterizeTriangleWithWorldPos)
+        final boolean transformNormal = modelMatrix != null;
+        final float m00 = transformNormal ? modelMatrix.getValue(0, 0) : 0, m01 = transformNormal ? modelMatrix.getValue(0, 1) : 0;
+        final float m02 = transformNormal ? modelMatrix.getValue(0, 2) : 0, m03 = transformNormal ? modelMatrix.getValue(0, 3) : 0;
+        final float m10 = transformNormal ? modelMatrix.getValue(1, 0) : 0, m11 = transformNormal ? modelMatrix.getValue(1, 1) : 0;
+        final float m12 = transformNormal ? modelMatrix.getValue(1, 2) : 0, m13 = transformNormal ? modelMatrix.getValue(1, 3) : 0;
+        final float m20 = transformNormal ? modelMatrix.getValue(2, 0) : 0, m21 = transformNormal ? modelMatrix.getValue(2, 1) : 0;
+        final float m22 = transformNormal ? modelMatrix.getValue(2, 2) : 0, m23 = transformNormal ? modelMatrix.getValue(2, 3) : 0;
+        final float m30 = transformNormal ? modelMatrix.getValue(3, 0) : 0, m31 = transformNormal ? modelMatrix.getValue(3, 1) : 0;
+        final float m32 = transformNormal ? modelMatrix.getValue(3, 2) : 0, m33 = transformNormal ? modelMatrix.getValue(3, 3) : 0;
+
+        out.hasTexCoord = hasTex || partialTex;
+        out.u = 0;
+        out.v = 0;
+
+        // Шаг рёберных функций на пиксель по x и по y
+        final long dx1 = a1 << SUBPIXEL_BITS, dx2 = a2 << SUBPIXEL_BITS, dx3 = a3 << SUBPIXEL_BITS;
+        final long dy1 = b1 << SUBPIXEL_BITS, dy2 = b2 << SUBPIXEL_BITS, dy3 = b3 << SUBPIXEL_BITS;
+        long row1 = a1 * ((long) minX << SUBPIXEL_BITS) + b1 * ((long) minY << SUBPIXEL_BITS) + c1;
+        long row2 = a2 * ((long) minX << SUBPIXEL_BITS) + b2 * ((long) minY << SUBPIXEL_BITS) + c2;
+        long row3 = a3 * ((long) minX << SUBPIXEL_BITS) + b3 * ((long) minY << SUBPIXEL_BITS) + c3;
+
+        for (int y = minY; y <= maxY; y++, row1 += dy1, row2 += dy2, row3 += dy3) {
+            long w1 = row1, w2 = row2, w3 = row3;
+            for (int x = minX; x <= maxX; x++, w1 += dx1, w2 += dx2, w3 += dx3) {
+                if (w1 < 0 || w2 < 0 || w3 < 0) continue;
+                if ((w1 == 0 && !topLeft1) || (w2 == 0 && !topLeft2) || (w3 == 0 && !topLeft3)) continue;
+
+                final float alpha = w1 * invArea;
+                final float beta = w2 * invArea;
+                final float gamma = 1.0f - alpha - beta;
+                out.x = x;
+                out.y = y;
+                out.alpha = alpha;
+                out.beta = beta;
+                out.gamma = gamma;
+
+                final float iz = alpha * iz1 + beta * iz2 + gamma * iz3;
+                final float zView = 1.0f / iz;
+                out.depth = zView;
+                out.z = (alpha * zp1 + beta * zp2 + gamma * zp3) * zView;
+
+                // Интерполируем мировую позицию
+                out.worldX = (alpha * wx1 + beta * wx2 + gamma * wx3) * zView;
+                out.worldY = (alpha * wy1 + beta * wy2 + gamma * wy3) * zView;
+                out.worldZ = (alpha * wz1 + beta * wz2 + gamma * wz3) * zView;
+
+                // Интерполируем текстурные координаты (при неполных данных остаются нулями)
+                if (hasTex) {
+                    out.u = (alpha * u1 + beta * u2 + gamma * u3) * zView;
+                    out.v = (alpha * tv1 + beta * tv2 + gamma * tv3) * zView;
+                }
+
+                // Интерполируем нормаль
+                float nx = 0, ny = 1, nz = 0;
+                if (hasNormals) {
+                    nx = (alpha * nx1 + beta * nx2 + gamma * nx3) * zView;
+                    ny = (alpha * ny1 + beta * ny2 + gamma * ny3) * zView;
+                    nz = (alpha * nz1 + beta * nz2 + gamma * nz3) * zView;
+                    float len = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+                    if (len > Vector3f.EPS) {
+                        nx /= len;
+                        ny /= len;
+                        nz /= len;
+                    }
+                }
+                out.normalX = nx;
+                out.normalY = ny;
+                out.normalZ = nz;
+
+                if (transformNormal) {
+                    // Как Matrix4f.multiplyOnVector(Vector3f): с переносом и делением на w
+                    float tx = m00 * nx + m01 * ny + m02 * nz + m03;
+                    float ty = m10 * nx + m11 * ny + m12 * nz + m13;
+                    float tz = m20 * nx + m21 * ny + m22 * nz + m23;
+                    float tw = m30 * nx + m31 * ny + m32 * nz + m33;
+                    if (Math.abs(tw) >= Matrix4f.EPS) {
+                        tx /= tw;
+                        ty /= tw;
+                        tz /= tw;
+                    }
+                    float len = (float) Math.sqrt(tx * tx + ty * ty + tz * tz);
+                    if (len > Vector3f.EPS) {
+                        tx /= len;
+                        ty /= len;
+                        tz /= len;
+                    }
+                    nx = tx;
+                    ny = ty;
+                    nz = tz;
+                }
+                out.worldNormalX = nx;
+                out.worldNormalY = ny;
+                out.worldNormalZ = nz;
+
+                fragmentCallback.onFragment(out);
+            }
+        }
+    }
+
+    /**
+     * Правило top-left для рёберной функции w = A * x + B * y + C (внутренность при w > 0, ось y направлена вниз).
+     * Левое ребро: внутренность справа от него (A > 0). Верхнее ребро: горизонтальное, внутренность снизу (A == 0, B > 0).
+     */
+    private static boolean isTopLeftEdge(long a, long b) {
+        return a > 0 || (a == 0 && b > 0);
+    }
+
+    /**
+     * Число бит дробной части у экранных координат вершин в рёберных функциях
+     */
+    public static final int SUBPIXEL_BITS = 8;
+
+    /**
+     * Экранная координата в фиксированной точке с SUBPIXEL_BITS битами дробной части.
+     * Координаты вершин ограничены guard band отсечения, так что рёберные функции помещаются в long
+     */
+    public static long toFixed(float coordinate) {
+        return Math.round((double) coordinate * (1 << SUBPIXEL_BITS));
+    }
+
     /**
      * Интерфейс callback для обработки пикселей при растеризации.
      */
     public interface PixelCallback {
         /**
          * Вызывается для каждого пикселя внутри треугольника.
+         * Переданные объекты (barycentric, texCoord, normal, worldNormal, worldPosition) переиспользуются
+         * растеризатором для следующих пикселей, поэтому сохранять ссылки на них нельзя.
          *
          * @param x, y координаты пикселя в экранных координатах
          * @param z интерполированная глубина (для Z-буфера)
@@ -546,6 +923,25 @@ public class Rasterization {
          */
         void onPixel(int x, int y, float z, float[] barycentric, Vector2f texCoord, Vector3f normal, Vector3f worldNormal, Vector3f worldPosition);
     }
+    /**
+     * Callback прохода глубины: пиксель прошёл Z-тест, его глубина записана.
+     */
+    public interface DepthCallback {
+        /**
+         * @param alpha, beta экранные барицентрические координаты пикселя (gamma = 1 - alpha - beta)
+         */
+        void onDepthWritten(int x, int y, float alpha, float beta);
+    }
+    /**
+     * Фрагментный callback: получает атрибуты пикселя в примитивных полях Varyings.
+     */
+    public interface FragmentCallback {
+        /**
+         * Вызывается для каждого пикселя внутри треугольника.
+         * in переиспользуется растеризатором для следующих пикселей, сохранять ссылку на него нельзя.
+         */
+        void onFragment(Varyings in);
+    }
     public interface LinePixelCallback {
         /**
          * Вызывается для каждого пикселя на прямой
@@ -634,8 +1030,11 @@ public class Rasterization {
         }
     }
 
+    // Запас при вычислении отрезка строки толстой линии, покрывает ошибку округления
+    private static final float LINE_SPAN_EPS = 0.01f;
+
     /**
-     * Растеризует линию с утолщением (ширина линии)
+     * Растеризует линию с утолщением (ширина линии) без скруглённых концов
      *
      * @param p1 первая точка
      * @param p2 вторая точка
@@ -646,58 +1045,151 @@ public class Rasterization {
      */
     public static void rasterizeThickLine(Point2f p1, Point2f p2, float z1, float z2,
                                           int lineWidth, LinePixelCallback callback) {
-        int x1 = (int) Math.round(p1.getX());
-        int y1 = (int) Math.round(p1.getY());
-        int x2 = (int) Math.round(p2.getX());
-        int y2 = (int) Math.round(p2.getY());
+        rasterizeThickLine(p1, p2, z1, z2, lineWidth, false, callback,
+                Integer.MIN_VALUE / 2, Integer.MIN_VALUE / 2, Integer.MAX_VALUE / 2, Integer.MAX_VALUE / 2);
+    }
 
-        // Для толстой линии рисуем несколько параллельных линий
+    /**
+     * Растеризует линию с утолщением как прямоугольник шириной lineWidth вдоль отрезка и, если roundCaps,
+     * полукруги радиуса lineWidth / 2 на концах. Части не пересекаются, а их границы полуоткрыты, как при правиле
+     * top-left у треугольников, поэтому callback вызывается для каждого пикселя линии ровно один раз.
+     * Пиксели берутся по целым координатам, как в rasterizeTriangleCore, и обходятся только по строкам линии,
+     * а не по всему ограничивающему прямоугольнику. Глубина перспективно-корректна: 1/z линейна вдоль отрезка
+     * и постоянна поперёк него. Линия толщиной 1 рисуется Брезенхемом.
+     *
+     * @param p1, p2 концы отрезка в экранных координатах
+     * @param z1, z2 глубины концов в view space
+     * @param lineWidth толщина линии (в пикселях)
+     * @param roundCaps скруглять ли концы (смежные рёбра сетки тогда смыкаются без щелей)
+     * @param callback callback для каждого пикселя
+     * @param clipMinX, clipMinY, clipMaxX, clipMaxY прямоугольник отсечения (включительно)
+     */
+    public static void rasterizeThickLine(Point2f p1, Point2f p2, float z1, float z2, int lineWidth,
+                                          boolean roundCaps, LinePixelCallback callback,
+                                          int clipMinX, int clipMinY, int clipMaxX, int clipMaxY) {
         if (lineWidth <= 1) {
-            rasterizeLine(x1, y1, x2, y2, z1, z2, callback);
+            rasterizeLine(p1, p2, z1, z2, callback);
             return;
         }
 
-        // Вычисляем нормаль к линии
-        float dx = x2 - x1;
-        float dy = y2 - y1;
-        float length = (float) Math.sqrt(dx*dx + dy*dy);
+        final float x1 = p1.getX(), y1 = p1.getY();
+        final float x2 = p2.getX(), y2 = p2.getY();
+        final float halfWidth = lineWidth / 2.0f;
+        final float length = (float) Math.sqrt((x2 - x1) * (x2 - x1) + (y2 - y1) * (y2 - y1));
 
-        if (length == 0) {
-            // Точки совпадают - рисуем точку с радиусом
-            drawPointWithThickness(x1, y1, z1, lineWidth, callback);
+        if (length < 1e-6f) {
+            // Точки совпадают - рисуем точку толщиной lineWidth
+            rasterizeLineCap(x1, y1, halfWidth, z1, x1, y1, 0, 0, Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY,
+                    callback, clipMinX, clipMinY, clipMaxX, clipMaxY);
             return;
         }
 
-        // Нормализуем вектор направления
-        dx /= length;
-        dy /= length;
-
-        // Перпендикулярный вектор (для толщины)
-        float perpX = -dy;
-        float perpY = dx;
-
-        // Смещения для толщины
-        float halfWidth = (lineWidth - 1) / 2.0f;
+        // Единичный вектор вдоль отрезка. Пиксель внутри прямоугольника, если along = (p - p1) * u в [0, length)
+        // и расстояние от оси не больше halfWidth
+        final float invLength = 1.0f / length;
+        final float ux = (x2 - x1) * invLength;
+        final float uy = (y2 - y1) * invLength;
+        // 1/z линейна по along
+        final float iz1 = 1.0f / z1;
+        final float depthStep = (1.0f / z2 - iz1) * invLength;
+
+        // Внутренний цикл идёт вдоль основной оси линии, так что отрезки строк длинные, а строк мало.
+        // Для крутой линии строки - это столбцы: inner = y, outer = x
+        final boolean steep = Math.abs(uy) > Math.abs(ux);
+        final float inner1 = steep ? y1 : x1;
+        final float outer1 = steep ? x1 : y1;
+        final float outer2 = steep ? x2 : y2;
+        final float uInner = steep ? uy : ux;
+        final float uOuter = steep ? ux : uy;
+        final int minInner = steep ? clipMinY : clipMinX;
+        final int maxInner = steep ? clipMaxY : clipMaxX;
+        final float outerExtent = Math.abs(uInner) * halfWidth;
+        final int minOuter = Math.max(steep ? clipMinX : clipMinY,
+                (int) Math.floor(Math.min(outer1, outer2) - outerExtent));
+        final int maxOuter = Math.min(steep ? clipMaxX : clipMaxY,
+                (int) Math.ceil(Math.max(outer1, outer2) + outerExtent));
+
+        // Границы строки по along и по расстоянию от оси линейны по outer: inner = base + outer * slope.
+        // По расстоянию граница полуоткрыта, так что горизонтальная линия занимает ровно lineWidth строк
+        // (|uInner| >= 1 / sqrt(2), так что деление на uInner безопасно)
+        final float invUInner = 1.0f / uInner;
+        final float alongSlope = -uOuter * invUInner;
+        final float alongFirst = inner1 - outer1 * alongSlope;
+        final float alongLast = alongFirst + length * invUInner;
+        final float leftBase = uInner > 0 ? alongFirst : alongLast;
+        final float rightBase = uInner > 0 ? alongLast : alongFirst;
+        final float acrossSlope = uOuter != 0 ? uInner / uOuter : 0;
+        final float acrossBase = inner1 - outer1 * acrossSlope;
+        final float acrossHalf = uOuter != 0 ? Math.abs(halfWidth / uOuter) : 0;
+        // Со скруглениями границы по along берутся с запасом и уточняются точной проверкой
+        final float alongEps = roundCaps ? LINE_SPAN_EPS : 0;
+
+        for (int o = minOuter; o <= maxOuter; o++) {
+            final float rowAlong = (o - outer1) * uOuter;
+            int start = (int) Math.ceil(o * alongSlope + leftBase - alongEps);
+            int end = (int) Math.floor(o * alongSlope + rightBase + alongEps);
+            if (uOuter != 0) {
+                final float center = o * acrossSlope + acrossBase;
+                start = Math.max(start, (int) Math.ceil(center - acrossHalf));
+                end = Math.min(end, (int) Math.ceil(center + acrossHalf) - 1);
+            } else if (o - outer1 < -halfWidth || o - outer1 >= halfWidth) {
+                continue;
+            }
+            start = Math.max(start, minInner);
+            end = Math.min(end, maxInner);
+            if (roundCaps) {
+                // По along прямоугольник граничит со скруглениями: концы строки проверяются той же формулой,
+                // что и в rasterizeLineCap, чтобы пиксель не попал в обе части
+                while (start <= end && !isAlongSegment((start - inner1) * uInner + rowAlong, length)) start++;
+                while (end >= start && !isAlongSegment((end - inner1) * uInner + rowAlong, length)) end--;
+            }
 
-        // Рисуем несколько линий с небольшим смещением
-        for (int i = 0; i < lineWidth; i++) {
-            float offset = i - halfWidth;
-            int offsetX1 = x1 + Math.round(perpX * offset);
-            int offsetY1 = y1 + Math.round(perpY * offset);
-            int offsetX2 = x2 + Math.round(perpX * offset);
-            int offsetY2 = y2 + Math.round(perpY * offset);
+            for (int i = start; i <= end; i++) {
+                final float z = 1.0f / (iz1 + depthStep * ((i - inner1) * uInner + rowAlong));
+                if (steep) {
+                    callback.onPixel(o, i, z);
+                } else {
+                    callback.onPixel(i, o, z);
+                }
+            }
+        }
 
-            rasterizeLine(offsetX1, offsetY1, offsetX2, offsetY2, z1, z2, callback);
+        if (roundCaps) {
+            rasterizeLineCap(x1, y1, halfWidth, z1, x1, y1, ux, uy, Float.NEGATIVE_INFINITY, 0,
+                    callback, clipMinX, clipMinY, clipMaxX, clipMaxY);
+            rasterizeLineCap(x2, y2, halfWidth, z2, x1, y1, ux, uy, length, Float.POSITIVE_INFINITY,
+                    callback, clipMinX, clipMinY, clipMaxX, clipMaxY);
         }
     }
-    private static void drawPointWithThickness(int x, int y, float z,
-                                               int thickness, LinePixelCallback callback) {
-        int radius = thickness / 2;
-        for (int dy = -radius; dy <= radius; dy++) {
-            for (int dx = -radius; dx <= radius; dx++) {
-                if (dx*dx + dy*dy <= radius*radius) {
-                    callback.onPixel(x + dx, y + dy, z);
-                }
+
+    private static boolean isAlongSegment(float along, float length) {
+        return along >= 0 && along < length;
+    }
+
+    /**
+     * Круг радиуса radius вокруг (cx, cy) с постоянной глубиной z, из которого берутся только пиксели
+     * с along = (p - (x1, y1)) * u в [minAlong, maxAlong). along считается так же, как в rasterizeThickLine,
+     * поэтому скругление не перекрывает прямоугольник линии.
+     */
+    private static void rasterizeLineCap(float cx, float cy, float radius, float z,
+                                         float x1, float y1, float ux, float uy, float minAlong, float maxAlong,
+                                         LinePixelCallback callback,
+                                         int clipMinX, int clipMinY, int clipMaxX, int clipMaxY) {
+        final float radiusSquared = radius * radius;
+        final int minY = Math.max(clipMinY, (int) Math.ceil(cy - radius));
+        final int maxY = Math.min(clipMaxY, (int) Math.floor(cy + radius));
+        for (int y = minY; y <= maxY; y++) {
+            final float rowAlong = (y - y1) * uy;
+            final float dy = y - cy;
+            final float rest = radiusSquared - dy * dy;
+            if (rest < 0) continue;
+            final float halfChord = (float) Math.sqrt(rest);
+            final int startX = Math.max(clipMinX, (int) Math.ceil(cx - halfChord));
+            final int endX = Math.min(clipMaxX, (int) Math.floor(cx + halfChord));
+            for (int x = startX; x <= endX; x++) {
+                final float along = (x - x1) * ux + rowAlong;
+                if (along < minAlong || along >= maxAlong) continue;
+                callback.onPixel(x, y, z);
             }
         }
     }
@@ -0,0 +1,236 @@
+package com.cgvsu.modelOperations;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelReader;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Текстура, один раз раскодированная из JavaFX Image в упакованный массив ARGB.
+ * Выборка - это обычная индексация массива, без PixelReader и без создания Color на каждый пиксель.
+ * Для размеров, равных степени двойки, повторение текстуры (wrap) делается битовой маской.
+ * При создании сразу строится цепочка мип-уровней (каждый следующий вдвое меньше, усреднение 2x2, по нечётной
+ * стороне - по три текселя), чтобы удалённые поверхности читали маленький уровень, а не прыгали по всей
+ * исходной картинке.
+ */
+public class Texture {
+
+    private final int[] texels;
+    private final int width;
+    private final int height;
+
+    // Маски для размеров-степеней двойки, -1 если размер не степень двойки
+    private final int maskX;
+    private final int maskY;
+
+    // Мип-уровни, нулевой - сама текстура
+    private final Texture[] mipLevels;
+
+    // Одна и та же картинка (например Model.defaultTexture) раскодируется один раз на все модели
+    private static final Map<Image, Texture> decoded = new WeakHashMap<>();
+
+    public Texture(int[] texels, int width, int height) {
+        this(texels, width, height, true);
+    }
+
+    private Texture(int[] texels, int width, int height, boolean buildMipmaps) {
+        if (width <= 0 || height <= 0 || texels.length < width * height) {
+            throw new IllegalArgumentException("Texture size does not match texel array");
+        }
+        this.texels = texels;
+        this.width = width;
+        this.height = height;
+        this.maskX = isPowerOfTwo(width) ? width - 1 : -1;
+        this.maskY = isPowerOfTwo(height) ? height - 1 : -1;
+        this.mipLevels = buildMipmaps ? buildMipChain(this) : null;
+    }
+
+    private static Texture[] buildMipChain(Texture base) {
+        ArrayList<Texture> levels = new ArrayList<>();
+        levels.add(base);
+        Texture level = base;
+        while (level.width > 1 || level.height > 1) {
+            level = downsample(level);
+            levels.add(level);
+        }
+        return levels.toArray(new Texture[0]);
+    }
+
+    // Следующий мип-уровень. По чётной стороне - среднее пар текселей. Нечётная сторона 2k + 1 сжимается до k,
+    // и каждый выходной тексель берёт три исходных с весами (k - i, k, i + 1) / (2k + 1): так учитывается
+    // каждый тексель, включая последний столбец/строку
+    private static Texture downsample(Texture source) {
+        int width = Math.max(1, source.width / 2);
+        int height = Math.max(1, source.height / 2);
+        float[] weightsX = downsampleWeights(source.width, width);
+        float[] weightsY = downsampleWeights(source.height, height);
+        int[] texels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                float a = 0, r = 0, g = 0, b = 0;
+                for (int j = 0; j < 3; j++) {
+                    float wy = weightsY[y * 3 + j];
+                    if (wy == 0) continue;
+                    int sy = Math.min(2 * y + j, source.height - 1);
+                    for (int i = 0; i < 3; i++) {
+                        float w = weightsX[x * 3 + i] * wy;
+                        if (w == 0) continue;
+                        int c = source.getTexel(Math.min(2 * x + i, source.width - 1), sy);
+                        a += w * ((c >>> 24) & 0xFF);
+                        r += w * ((c >> 16) & 0xFF);
+                        g += w * ((c >> 8) & 0xFF);
+                        b += w * (c & 0xFF);
+                    }
+                }
+                texels[y * width + x] = (toChannel(a) << 24) | (toChannel(r) << 16) | (toChannel(g) << 8) | toChannel(b);
+            }
+        }
+        return new Texture(texels, width, height, false);
+    }
+
+    // Веса трёх исходных текселей (2i, 2i + 1, 2i + 2) для каждого выходного i
+    private static float[] downsampleWeights(int sourceSize, int size) {
+        float[] weights = new float[size * 3];
+        for (int i = 0; i < size; i++) {
+            if (sourceSize == 1) {
+                weights[i * 3] = 1;
+            } else if (sourceSize % 2 == 0) {
+                weights[i * 3] = 0.5f;
+                weights[i * 3 + 1] = 0.5f;
+            } else {
+                float n = sourceSize;
+                weights[i * 3] = (size - i) / n;
+                weights[i * 3 + 1] = size / n;
+                weights[i * 3 + 2] = (i + 1) / n;
+            }
+        }
+        return weights;
+    }
+
+    private static int toChannel(float value) {
+        return Math.min(255, (int) (value + 0.5f));
+    }
+
+    /**
+     * Раскодирует картинку (результат кэшируется по самой картинке)
+     * @return текстура или null, если картинку нельзя прочитать
+     */
+    public static synchronized Texture of(Image image) {
+        if (image == null) return null;
+        Texture texture = decoded.get(image);
+        if (texture == null) {
+            texture = decode(image);
+            if (texture != null) {
+                decoded.put(image, texture);
+            }
+        }
+        return texture;
+    }
+
+    private static Texture decode(Image image) {
+        PixelReader pixelReader = image.getPixelReader();
+        int width = (int) image.getWidth();
+        int height = (int) image.getHeight();
+        if (pixelReader == null || width <= 0 || height <= 0) {
+            return null;
+        }
+        int[] texels = new int[width * height];
+        pixelReader.getPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), texels, 0, width);
+        return new Texture(texels, width, height);
+    }
+
+    /**
+     * Цвет текстуры по текстурным координатам с повторением
+     * @param u, v текстурные координаты, v направлена вверх (как в OBJ)
+     * @return цвет в формате ARGB
+     */
+    public int sample(float u, float v) {
+        int x = (int) Math.floor(u * width);
+        int y = (int) Math.floor((1.0f - v) * height);
+        return texels[wrapY(y) * width + wrapX(x)];
+    }
+
+    /**
+     * Цвет текстуры с учётом уровня детализации
+     * @param u, v текстурные координаты
+     * @param lod уровень детализации: log2 числа текселей исходной текстуры на пиксель экрана
+     * @param trilinear true - билинейная выборка из двух соседних уровней и смешивание между ними,
+     *                  false - ближайший тексель ближайшего уровня
+     * @return цвет в формате ARGB
+     */
+    public int sample(float u, float v, float lod, boolean trilinear) {
+        if (mipLevels == null || !(lod > 0)) {
+            return trilinear ? sampleBilinear(u, v) : sample(u, v);
+        }
+        int last = mipLevels.length - 1;
+        if (!trilinear) {
+            int level = Math.min((int) (lod + 0.5f), last);
+            return mipLevels[level].sample(u, v);
+        }
+        int level = Math.min((int) lod, last);
+        if (level == last) {
+            return mipLevels[last].sampleBilinear(u, v);
+        }
+        float t = lod - level;
+        return lerp(mipLevels[level].sampleBilinear(u, v), mipLevels[level + 1].sampleBilinear(u, v), t);
+    }
+
+    // Билинейная выборка с повторением
+    private int sampleBilinear(float u, float v) {
+        float fx = u * width - 0.5f;
+        float fy = (1.0f - v) * height - 0.5f;
+        int x0 = (int) Math.floor(fx);
+        int y0 = (int) Math.floor(fy);
+        float tx = fx - x0;
+        float ty = fy - y0;
+        int x1 = wrapX(x0 + 1);
+        int y1 = wrapY(y0 + 1);
+        x0 = wrapX(x0);
+        y0 = wrapY(y0);
+        int top = lerp(texels[y0 * width + x0], texels[y0 * width + x1], tx);
+        int bottom = lerp(texels[y1 * width + x0], texels[y1 * width + x1], tx);
+        return lerp(top, bottom, ty);
+    }
+
+    private int wrapX(int x) {
+        return maskX >= 0 ? x & maskX : Math.floorMod(x, width);
+    }
+
+    private int wrapY(int y) {
+        return maskY >= 0 ? y & maskY : Math.floorMod(y, height);
+    }
+
+    public int getMipLevelCount() {
+        return mipLevels == null ? 1 : mipLevels.length;
+    }
+
+    public int getTexel(int x, int y) {
+        return texels[y * width + x];
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    private static boolean isPowerOfTwo(int n) {
+        return (n & (n - 1)) == 0;
+    }
+
+    // Покомпонентная интерполяция двух цветов ARGB
+    private static int lerp(int c0, int c1, float t) {
+        int a0 = (c0 >>> 24) & 0xFF, r0 = (c0 >> 16) & 0xFF, g0 = (c0 >> 8) & 0xFF, b0 = c0 & 0xFF;
+        int a1 = (c1 >>> 24) & 0xFF, r1 = (c1 >> 16) & 0xFF, g1 = (c1 >> 8) & 0xFF, b1 = c1 & 0xFF;
+        int a = a0 + Math.round((a1 - a0) * t);
+        int r = r0 + Math.round((r1 - r0) * t);
+        int g = g0 + Math.round((g1 - g0) * t);
+        int b = b0 + Math.round((b1 - b0) * t);
+        return (a << 24) | (r << 16) | (g << 8) | b;
+    }
+}
@@ -5,7 +5,6 @@ import com.cgvsu.math.vectors.Vector3f;
 import com.cgvsu.render_engine.Camera;
 import com.cgvsu.sceneview.SceneManager;
 import javafx.scene.image.Image;
-import javafx.scene.image.PixelReader;
 import javafx.scene.paint.Color;
 
 /**
@@ -23,37 +22,62 @@ public class TextureMapping {
      * @return цвет пикселя из текстуры, или белый цвет если текстура null
      */
     public static Color getTextureColor(Image texture, Vector2f texCoord) {
-        if (texture == null || texCoord == null) {
+        Texture decoded = Texture.of(texture);
+        if (decoded == null || texCoord == null) {
             return Color.WHITE;
         }
+        int argb = decoded.sample(texCoord.getX(), texCoord.getY());
+        return Color.rgb((argb >> 16) & 0xFF, (argb >> 8) & 0xFF, argb & 0xFF, ((argb >>> 24) & 0xFF) / 255.0);
+    }
 
-        PixelReader pixelReader = texture.getPixelReader();
-        if (pixelReader == null) {
-            return Color.WHITE;
+    /**
+     * Получает цвет пикселя из раскодированной текстуры, без создания объектов.
+     *
+     * @param texture раскодированная текстура
+     * @param texCoord текстурные координаты (u, v), за пределами [0, 1] текстура повторяется
+     * @return цвет в формате ARGB, или белый цвет если текстура null
+     */
+    public static int getTextureArgb(Texture texture, Vector2f texCoord) {
+        if (texture == null || texCoord == null) {
+            return 0xFFFFFFFF;
         }
+        return texture.sample(texCoord.getX(), texCoord.getY());
+    }
 
-        // Преобразуем нормализованные координаты [0, 1] в координаты текстуры
-        float u = texCoord.getX();
-        float v = texCoord.getY();
-
-        // Обрабатываем повторение текстуры (wrap mode)
-        // Если координаты выходят за [0, 1], повторяем текстуру
-        u = u - (float) Math.floor(u);
-        v = v - (float) Math.floor(v);
-
-        v = 1.0f - v;
-        if (v >= 1.0f) v = 0.0f;
-
-        // Преобразуем в координаты пикселя в текстуре
-        int texX = (int) (u * (texture.getWidth() - 1));
-        int texY = (int) (v * (texture.getHeight() - 1));
+    /**
+     * Получает цвет пикселя из мип-цепочки текстуры.
+     *
+     * @param texture раскодированная текстура
+     * @param texCoord текстурные координаты (u, v)
+     * @param lod уровень детализации (log2 текселей на пиксель)
+     * @param trilinear смешивать ли два соседних уровня с билинейной выборкой
+     * @return цвет в формате ARGB, или белый цвет если текстура null
+     */
+    public static int getTextureArgb(Texture texture, Vector2f texCoord, float lod, boolean trilinear) {
+        if (texture == null || texCoord == null) {
+            return 0xFFFFFFFF;
+        }
+        return texture.sample(texCoord.getX(), texCoord.getY(), lod, trilinear);
+    }
 
-        // Ограничиваем координаты размерами текстуры
-        texX = Math.max(0, Math.min(texX, (int) texture.getWidth() - 1));
-        texY = Math.max(0, Math.min(texY, (int) texture.getHeight() - 1));
+    /**
+     * То же, что getTextureArgb(Texture, Vector2f, float, boolean), но uv передаются числами
+     */
+    public static int getTextureArgb(Texture texture, float u, float v, float lod, boolean trilinear) {
+        if (texture == null) {
+            return 0xFFFFFFFF;
+        }
+        return texture.sample(u, v, lod, trilinear);
+    }
 
-        // Читаем цвет пикселя
-        return pixelReader.getColor(texX, texY);
+    /**
+     * То же, что getTextureArgb(Texture, Vector2f), но uv передаются числами
+     */
+    public static int getTextureArgb(Texture texture, float u, float v) {
+        if (texture == null) {
+            return 0xFFFFFFFF;
+        }
+        return texture.sample(u, v);
     }
 
     /**
@@ -97,29 +121,113 @@ public class TextureMapping {
             Color baseColor,
             float k
     ) {
+        float intensity = getLightingIntensity(worldNormal, worldPosition, k);
+
+        return new Color(
+                clamp01((float) (baseColor.getRed()   * intensity)),
+                clamp01((float) (baseColor.getGreen() * intensity)),
+                clamp01((float) (baseColor.getBlue()  * intensity)),
+                baseColor.getOpacity()
+        );
+    }
+
+    /**
+     * То же освещение для цвета в формате ARGB, без создания Color
+     * @param argb начальный цвет пикселя
+     * @return освещённый цвет в формате ARGB
+     */
+    public static int getModifiedArgbWithLighting(
+            Vector3f worldNormal,
+            Vector3f worldPosition,
+            int argb,
+            float k
+    ) {
+        return getModifiedArgbWithLighting(
+                worldNormal.getX(), worldNormal.getY(), worldNormal.getZ(),
+                worldPosition.getX(), worldPosition.getY(), worldPosition.getZ(),
+                argb, k);
+    }
+
+    /**
+     * То же освещение, но нормаль и позиция передаются числами: ничего не выделяет, вызывается для каждого пикселя
+     */
+    public static int getModifiedArgbWithLighting(
+            float normalX, float normalY, float normalZ,
+            float worldX, float worldY, float worldZ,
+            int argb,
+            float k
+    ) {
+        Vector3f cameraPos = SceneManager.activeCamera.getPosition();
+        return getModifiedArgbWithLighting(
+                normalX, normalY, normalZ,
+                worldX, worldY, worldZ,
+                cameraPos.getX(), cameraPos.getY(), cameraPos.getZ(),
+                argb, k);
+    }
+
+    /**
+     * То же освещение с явным положением камеры (источника света): рендер в отдельном потоке
+     * освещает кадр из камеры своего снимка сцены, а не из текущей активной камеры
+     */
+    public static int getModifiedArgbWithLighting(
+            float normalX, float normalY, float normalZ,
+            float worldX, float worldY, float worldZ,
+            float cameraX, float cameraY, float cameraZ,
+            int argb,
+            float k
+    ) {
+        float intensity = getLightingIntensity(normalX, normalY, normalZ, worldX, worldY, worldZ,
+                cameraX, cameraY, cameraZ, k);
+
+        int r = Math.min(255, Math.round(((argb >> 16) & 0xFF) * intensity));
+        int g = Math.min(255, Math.round(((argb >> 8) & 0xFF) * intensity));
+        int b = Math.min(255, Math.round((argb & 0xFF) * intensity));
+        return (argb & 0xFF000000) | (r << 16) | (g << 8) | b;
+    }
+
+    private static float getLightingIntensity(Vector3f worldNormal, Vector3f worldPosition, float k) {
+        Vector3f cameraPos = SceneManager.activeCamera.getPosition();
+        return getLightingIntensity(
+                worldNormal.getX(), worldNormal.getY(), worldNormal.getZ(),
+                worldPosition.getX(), worldPosition.getY(), worldPosition.getZ(),
+                cameraPos.getX(), cameraPos.getY(), cameraPos.getZ(),
+                k);
+    }
+
+    // Коэффициент яркости ambient + diffuse, источник света в камере
+    private static float getLightingIntensity(
+            float nx, float ny, float nz,
+            float worldX, float worldY, float worldZ,
+            float cameraX, float cameraY, float cameraZ,
+            float k) {
         // 1. Нормаль в точке
         k = clamp01(k);
-        Vector3f n = worldNormal.normalize();
+        float nLen = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+        if (nLen > Vector3f.EPS) {
+            nx /= nLen;
+            ny /= nLen;
+            nz /= nLen;
+        }
 
         // 2. Луч света (от точки к камере = направление К источнику света в камере)
-        Vector3f cameraPos = SceneManager.activeCamera.getPosition();
-        Vector3f ray = cameraPos.subbed(worldPosition).normalize();
+        float rx = cameraX - worldX;
+        float ry = cameraY - worldY;
+        float rz = cameraZ - worldZ;
+        float rLen = (float) Math.sqrt(rx * rx + ry * ry + rz * rz);
+        if (rLen > Vector3f.EPS) {
+            rx /= rLen;
+            ry /= rLen;
+            rz /= rLen;
+        }
 
         // 3. Коэффициент освещения (Lambertian diffuse)
         // ray направлен от точки к камере (к источнику света)
         // Если нормаль направлена к камере, n.dot(ray) положительный = ярко
-        float l = n.dot(ray);
+        float l = nx * rx + ny * ry + nz * rz;
         if (l < 0f) l = 0f;
 
         // 4. Итоговый коэффициент яркости
-        float intensity = (1f - k) + k * l;
-
-        return new Color(
-                clamp01((float) (baseColor.getRed()   * intensity)),
-                clamp01((float) (baseColor.getGreen() * intensity)),
-                clamp01((float) (baseColor.getBlue()  * intensity)),
-                baseColor.getOpacity()
-        );
+        return (1f - k) + k * l;
     }
 
     private static float clamp01(float v) {
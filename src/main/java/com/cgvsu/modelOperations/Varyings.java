@@ -0,0 +1,34 @@
+package com.cgvsu.modelOperations;
+
+/**
+ * Интерполированные атрибуты (varyings) одного пикселя треугольника в примитивных полях.
+ * Растеризатор перезаписывает один и тот же экземпляр для каждого пикселя, поэтому в цикле растеризации
+ * ничего не выделяется. У каждого потока свой экземпляр (forCurrentThread), так что тайлы рендерятся параллельно
+ * без синхронизации. Значения валидны только внутри вызова FragmentCallback.
+ */
+public final class Varyings {
+
+    private static final ThreadLocal<Varyings> PER_THREAD = ThreadLocal.withInitial(Varyings::new);
+
+    // Координаты пикселя на экране
+    public int x, y;
+    // Интерполированная глубина в системе координат проекции и перспективно-корректная глубина в view space
+    public float z, depth;
+    // Барицентрические координаты пикселя на экране
+    public float alpha, beta, gamma;
+    // Текстурные координаты, есть только если у треугольника заданы uv (иначе u = v = 0)
+    public boolean hasTexCoord;
+    public float u, v;
+    // Интерполированная нормаль вершин (нормализованная) и она же в world space
+    public float normalX, normalY, normalZ;
+    public float worldNormalX, worldNormalY, worldNormalZ;
+    // Позиция пикселя в world space
+    public float worldX, worldY, worldZ;
+
+    /**
+     * Экземпляр текущего потока
+     */
+    public static Varyings forCurrentThread() {
+        return PER_THREAD.get();
+    }
+}
@@ -1,13 +1,25 @@
 package com.cgvsu.modelOperations;
 
+import java.util.Arrays;
+
 /**
  * Алгоритм Z-буфера (буфера глубины) для правильной отрисовки 3D сцены.
+ * Глубины хранятся в одном плоском массиве по строкам. Буфер рассчитан на переиспользование между кадрами:
+ * очистка не трогает массив, а только увеличивает номер поколения (epoch). Значение пикселя считается
+ * записанным, только если его метка поколения совпадает с текущей, иначе пиксель пустой (Float.MAX_VALUE).
+ * Поверх буфера строится иерархия наибольших глубин по тайлам (DepthHierarchy) для раннего отбрасывания.
  */
 public class ZBuffer {
 
-    private float[][] buffer;
-    private final int width;
-    private final int height;
+    private float[] buffer;
+    // Поколение, в котором был записан пиксель
+    private int[] stamps;
+    private int epoch;
+    private int width;
+    private int height;
+    private DepthHierarchy hierarchy;
+    // Обновлять ли иерархию при записи (SceneManager.hierarchicalZ)
+    private boolean hierarchyEnabled = true;
 
     /**
      * Создаёт Z-буфер заданного размера.
@@ -20,21 +32,45 @@ public class ZBuffer {
             throw new IllegalArgumentException("Width and height must be positive");
         }
         
+        allocate(width, height);
+    }
+
+    /**
+     * Меняет размер буфера. Если размер не изменился, ничего не делает, иначе буфер становится пустым.
+     *
+     * @param width новая ширина
+     * @param height новая высота
+     */
+    public void resize(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Width and height must be positive");
+        }
+        if (width == this.width && height == this.height) {
+            return;
+        }
+        allocate(width, height);
+    }
+
+    private void allocate(int width, int height) {
         this.width = width;
         this.height = height;
-        this.buffer = new float[height][width];
-        clear();
+        this.buffer = new float[width * height];
+        this.stamps = new int[width * height];
+        this.epoch = 1;
+        this.hierarchy = new DepthHierarchy(this, width, height);
     }
 
     /**
      * Очищает Z-буфер, устанавливая все значения в максимальную глубину (дальше всего от камеры).
-     * Должен вызываться перед началом рендеринга каждого кадра.
+     * Должен вызываться перед началом рендеринга каждого кадра. Работает за O(1): меняется только поколение,
+     * полный проход по меткам нужен раз в 2^31 очисток при переполнении счётчика.
      */
     public void clear() {
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                buffer[y][x] = Float.MAX_VALUE;
-            }
+        epoch++;
+        if (epoch == Integer.MAX_VALUE) {
+            Arrays.fill(stamps, 0);
+            hierarchy.reset();
+            epoch = 1;
         }
     }
 
@@ -53,14 +89,40 @@ public class ZBuffer {
         }
         
         // В нашей системе координат чем меньше z, тем ближе пиксель
-        if (z < buffer[y][x]) {
-            buffer[y][x] = z;
+        int index = y * width + x;
+        if (stamps[index] != epoch) {
+            if (!(z < Float.MAX_VALUE)) return false;
+            buffer[index] = z;
+            stamps[index] = epoch;
+            if (hierarchyEnabled) hierarchy.onFirstWrite(x, y, z, epoch);
             return true;
         }
-        
+        if (z < buffer[index]) {
+            buffer[index] = z;
+            if (hierarchyEnabled) hierarchy.onOverwrite(x, y, epoch);
+            return true;
+        }
+
         return false;
     }
 
+    /**
+     * Проверка второго прохода после прохода только глубины: пиксель закрашивается, только если его глубина
+     * совпала с уже записанной, то есть он и есть ближайший. Буфер не меняется.
+     *
+     * @param x, y координаты пикселя
+     * @param z глубина пикселя, посчитанная так же, как в проходе глубины
+     * @return true если пиксель нужно закрасить
+     */
+    public boolean testEqual(int x, int y, float z) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            return false;
+        }
+
+        int index = y * width + x;
+        return stamps[index] == epoch && buffer[index] == z;
+    }
+
     /**
      * @param x, y координаты пикселя
      * @return глубина пикселя, или Float.MAX_VALUE если пиксель не был отрисован, можно сделать null, чтобы не
@@ -71,7 +133,8 @@ public class ZBuffer {
             return Float.MAX_VALUE;
         }
         
-        return buffer[y][x];
+        int index = y * width + x;
+        return stamps[index] == epoch ? buffer[index] : Float.MAX_VALUE;
     }
 
     /**
@@ -82,10 +145,44 @@ public class ZBuffer {
      */
     public void setDepth(int x, int y, float z) {
         if (x >= 0 && x < width && y >= 0 && y < height) {
-            buffer[y][x] = z;
+            int index = y * width + x;
+            buffer[index] = z;
+            stamps[index] = epoch;
+            // Глубина могла вырасти, оценка тайла больше не консервативна
+            hierarchy.invalidate(x, y);
         }
     }
 
+    /**
+     * Включает или выключает обновление иерархии при записи. Пока она выключена, её нельзя использовать
+     * для отбрасывания, и счётчики фрагментов не ведутся. Включать можно в любой момент: тайл, у которого
+     * пропущены первые записи, не считается записанным целиком и ничего не закрывает, а пропущенные перезаписи
+     * только уменьшали глубину.
+     */
+    public void setHierarchyEnabled(boolean enabled) {
+        this.hierarchyEnabled = enabled;
+    }
+
+    public boolean isHierarchyEnabled() {
+        return hierarchyEnabled;
+    }
+
+    /**
+     * Иерархия наибольших глубин по тайлам, пересоздаётся при изменении размера
+     */
+    public DepthHierarchy getHierarchy() {
+        return hierarchy;
+    }
+
+    int getEpoch() {
+        return epoch;
+    }
+
+    float[] getDepths() {
+        return buffer;
+    }
+
+
     /**
      * Возвращает ширину Z-буфера.
      */
@@ -1,8 +1,9 @@
 package com.cgvsu.objwriter;
 
 import com.cgvsu.math.vectors.Vector2f;
+import com.cgvsu.model.IntArrayList;
 import com.cgvsu.model.Model;
-import com.cgvsu.model.Vertex;
+import com.cgvsu.model.VertexList;
 import com.cgvsu.modelOperations.MyVertexNormalCalc;
 
 import java.io.BufferedWriter;
@@ -25,6 +26,10 @@ public class ObjWriter {
         //Для преобразования нашего Vertex в плоский список vt
         ArrayList<Vector2f> globalVt = new ArrayList<>();
         int[] globalVtIndexByCorner = null; //Глобальные индексы vt для конкретного угла полигона (по индексу вершины polygons)
+        //Геометрия в плоских массивах, берётся после пересчёта нормалей
+        VertexList vertices;
+        IntArrayList polygons;
+        IntArrayList polygonsBoundaries;
 
         try {
             if (model == null) {
@@ -33,8 +38,9 @@ public class ObjWriter {
 
             boolean hasNormals = false;
 
-            for (Vertex v : model.vertices) {
-                if (v.normal != null) {
+            vertices = VertexList.of(model.vertices);
+            for (int i = 0; i < vertices.size(); i++) {
+                if (vertices.hasNormal(i)) {
                     hasNormals = true;
                     break;
                 }
@@ -44,8 +50,10 @@ public class ObjWriter {
                 //Мы при чтении не учитываем нормали из файла, но чтобы записанная модель, могла использоваться в других программах корректно стоит нормали перерассчитывать тоже по умолчанию
                 MyVertexNormalCalc calc = new MyVertexNormalCalc();
                 calc.calculateVertexNormals(model);
-
+                vertices = VertexList.of(model.vertices);
             }
+            polygons = IntArrayList.of(model.polygons);
+            polygonsBoundaries = IntArrayList.of(model.polygonsBoundaries);
 
             //Поскольку текстурные координаты мы не можем добавлять в программе, то если модель не имела текстуру при загрузке, то и при сохранении ей не нужны текстурные корды
             hasTexCoords = model.getHasTextureVertex();
@@ -62,11 +70,13 @@ public class ObjWriter {
 
 
             if (hasTexCoords) {
-                int cornersCount = model.polygons.size();
+                IntArrayList uvIndices = IntArrayList.of(model.polygonsTextureCoordinateIndices);
+                int cornersCount = polygons.size();
                 globalVtIndexByCorner = new int[cornersCount];
 
                 for (int corner = 0; corner < cornersCount; corner++) {
-                    Vector2f uv = model.getTextureCoordinateForPolygonVertex(corner); //Получаем от конкретного индекса вершины из массива polygons чтобы вычленить нужный UV
+                    //Наличие vt уже проверили выше. Получаем от конкретного индекса вершины из массива polygons чтобы вычленить нужный UV
+                    Vector2f uv = vertices.getTextureCoordinate(polygons.getInt(corner), uvIndices.getInt(corner));
                     if (uv == null) uv = new Vector2f(0, 0); //Делаем, чтобы не падала запись OBJ
 
                     int globalIdx = findOrAddVt(globalVt, uv);
@@ -91,8 +101,8 @@ public class ObjWriter {
 
             try {
                 //Запись вершин по порядку
-                for (Vertex v : model.vertices) {
-                    writer.write(String.format(Locale.US, "v %f %f %f\n", v.position.getX(), v.position.getY(), v.position.getZ()));
+                for (int i = 0; i < vertices.size(); i++) {
+                    writer.write(String.format(Locale.US, "v %f %f %f\n", vertices.getX(i), vertices.getY(i), vertices.getZ(i)));
                 }
                 writer.write("\n");
             } catch (Exception exception){
@@ -112,8 +122,12 @@ public class ObjWriter {
             }
 
             try{
-                for (Vertex v : model.vertices) {
-                    writer.write(String.format(Locale.US, "vn %f %f %f\n", v.normal.getX(), v.normal.getY(), v.normal.getZ()));
+                for (int i = 0; i < vertices.size(); i++) {
+                    if (!vertices.hasNormal(i)) {
+                        throw new ObjWriterException("Нет нормали у вершины " + i);
+                    }
+                    writer.write(String.format(Locale.US, "vn %f %f %f\n",
+                            vertices.getNormalX(i), vertices.getNormalY(i), vertices.getNormalZ(i)));
                 }
                 writer.write("\n");
             } catch (Exception exception){
@@ -122,18 +136,18 @@ public class ObjWriter {
 
             try {
                 //Запись полигонов
-                int polygonsCount = model.polygonsBoundaries.size();
+                int polygonsCount = polygonsBoundaries.size();
                 for (int face = 0; face < polygonsCount; face++) {
-                    int start = model.polygonsBoundaries.get(face);
+                    int start = polygonsBoundaries.getInt(face);
                     int end = (face + 1 < polygonsCount)
-                            ? model.polygonsBoundaries.get(face + 1)
-                            : model.polygons.size();
+                            ? polygonsBoundaries.getInt(face + 1)
+                            : polygons.size();
 
                     StringBuilder faceLine = new StringBuilder("f");
 
                     for (int i = start; i < end; i++) {
                         //i индекс угла в плоском массиве
-                        int vertexIndex = model.polygons.get(i);
+                        int vertexIndex = polygons.getInt(i);
 
                         //OBJ индексы начинаются с 1
                         int objVIndex = vertexIndex + 1;
@@ -0,0 +1,229 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.model.Model;
+import com.cgvsu.modelOperations.ZBuffer;
+import javafx.application.Platform;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Рендер в отдельном потоке. GUI отдаёт в requestFrame снимок сцены и сразу возвращается к обработке событий,
+ * поток рендера рисует снимок в задний буфер, а готовый кадр передаётся потоку JavaFX атомарной заменой
+ * и выводится на канвас. Поэтому интерфейс отзывчив, даже если кадр рендерится сотни миллисекунд.
+ * Запросы не копятся: пока рендерится кадр, новые снимки заменяют друг друга, и следующим рендерится последний.
+ * Буферов не больше трёх: выводимый на канвас, готовый к выводу и рендерящийся.
+ * Кадр с пониженным разрешением рендерится в отдельный малый буфер и растягивается на полный,
+ * время каждого кадра отдаётся ResolutionController.
+ * Настройки рендера берутся из снимка (RenderSettings), а не из SceneManager, который GUI меняет во время кадра.
+ * Проверка SIMD-заливки тоже рендерит сцену, поэтому выполняется в потоке рендера (requestValidation).
+ */
+public final class BackgroundRenderer {
+
+    // Вызывается в потоке JavaFX с готовым кадром
+    private final Consumer<Framebuffer> presenter;
+    // Вызывается в потоке JavaFX, если кадр не отрендерился
+    private final Consumer<RuntimeException> errorHandler;
+
+    private final Object requestLock = new Object();
+    private FrameSnapshot pending;
+    private Validation pendingValidation;
+    private Thread thread;
+
+    // Готовый, ещё не выведенный кадр и свободный буфер для следующего кадра
+    private final AtomicReference<Framebuffer> ready = new AtomicReference<>();
+    private final AtomicReference<Framebuffer> free = new AtomicReference<>();
+
+    // Z-буфер и буфер пониженного разрешения принадлежат потоку рендера
+    private ZBuffer zBuffer;
+    private Framebuffer lowResolution;
+
+    private final ResolutionController resolution = new ResolutionController();
+
+    /**
+     * @param presenter выводит готовый кадр (в потоке JavaFX), после возврата буфер переиспользуется
+     * @param errorHandler получает ошибку рендера кадра (в потоке JavaFX)
+     */
+    public BackgroundRenderer(Consumer<Framebuffer> presenter, Consumer<RuntimeException> errorHandler) {
+        this.presenter = presenter;
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * Выбор разрешения по времени уже отрендеренных кадров
+     */
+    public ResolutionController getResolution() {
+        return resolution;
+    }
+
+    /**
+     * Ставит снимок сцены в очередь на рендер вместо ещё не начатого. Не блокирует вызывающий поток.
+     */
+    public void requestFrame(FrameSnapshot snapshot) {
+        synchronized (requestLock) {
+            pending = snapshot;
+            wakeRenderThread();
+        }
+    }
+
+    /**
+     * Ставит в очередь сверку SIMD-заливки со скалярной на снимке сцены (SimdShading.validate).
+     * Не блокирует вызывающий поток, ошибка проверки уходит в errorHandler.
+     * @param result получает число отличающихся пикселей (в потоке JavaFX)
+     */
+    public void requestValidation(FrameSnapshot snapshot, int tolerance, IntConsumer result) {
+        synchronized (requestLock) {
+            pendingValidation = new Validation(snapshot, tolerance, result);
+            wakeRenderThread();
+        }
+    }
+
+    // Вызывать под requestLock
+    private void wakeRenderThread() {
+        if (thread == null) {
+            thread = new Thread(this::run, "render");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        requestLock.notifyAll();
+    }
+
+    private void run() {
+        while (true) {
+            final FrameSnapshot snapshot;
+            final Validation validation;
+            synchronized (requestLock) {
+                while (pending == null && pendingValidation == null) {
+                    try {
+                        requestLock.wait();
+                    } catch (InterruptedException exception) {
+                        return;
+                    }
+                }
+                snapshot = pending;
+                pending = null;
+                validation = pendingValidation;
+                pendingValidation = null;
+            }
+
+            if (validation != null) {
+                validate(validation);
+            }
+            if (snapshot == null) continue;
+
+            Framebuffer frame = free.getAndSet(null);
+            try {
+                frame = render(snapshot, frame);
+            } catch (RuntimeException exception) {
+                if (frame != null) {
+                    free.set(frame);
+                }
+                Platform.runLater(() -> errorHandler.accept(exception));
+                continue;
+            }
+
+            // Невыведенный кадр устарел: его буфер освобождается, а уже запланированный вывод покажет новый
+            Framebuffer dropped = ready.getAndSet(frame);
+            if (dropped != null) {
+                free.set(dropped);
+            } else {
+                Platform.runLater(this::present);
+            }
+        }
+    }
+
+    private void validate(Validation validation) {
+        try {
+            int mismatches = SimdShading.validate(validation.snapshot, validation.tolerance);
+            Platform.runLater(() -> validation.result.accept(mismatches));
+        } catch (RuntimeException exception) {
+            Platform.runLater(() -> errorHandler.accept(exception));
+        }
+    }
+
+    private void present() {
+        Framebuffer frame = ready.getAndSet(null);
+        if (frame == null) return;
+        presenter.accept(frame);
+        free.set(frame);
+    }
+
+    private Framebuffer render(FrameSnapshot snapshot, Framebuffer frame) {
+        final int width = snapshot.getWidth();
+        final int height = snapshot.getHeight();
+        if (frame == null) {
+            frame = new Framebuffer(width, height);
+        } else {
+            frame.resize(width, height);
+        }
+
+        final int scale = snapshot.getScale();
+        final int renderWidth = (width + scale - 1) / scale;
+        final int renderHeight = (height + scale - 1) / scale;
+        Framebuffer target = frame;
+        if (scale > 1) {
+            if (lowResolution == null) {
+                lowResolution = new Framebuffer(renderWidth, renderHeight);
+            } else {
+                lowResolution.resize(renderWidth, renderHeight);
+            }
+            target = lowResolution;
+        }
+        target.clear(snapshot.getBackgroundArgb());
+
+        if (zBuffer == null) {
+            zBuffer = new ZBuffer(renderWidth, renderHeight);
+        } else {
+            zBuffer.resize(renderWidth, renderHeight);
+        }
+        final RenderSettings settings = snapshot.getSettings();
+        zBuffer.setHierarchyEnabled(settings.hierarchicalZ);
+        zBuffer.clear();
+
+        final long start = System.nanoTime();
+        synchronized (RenderEngine.FRAME_LOCK) {
+            RenderStatistics.begin();
+            RenderSettings.begin(settings);
+            try {
+                renderScene(settings, target, snapshot.getCamera(), snapshot.getModels(), zBuffer);
+            } finally {
+                RenderSettings.end();
+            }
+            RenderStatistics.publish();
+        }
+        resolution.record(scale, System.nanoTime() - start);
+
+        if (scale > 1) {
+            frame.upscaleFrom(lowResolution, scale);
+        }
+        return frame;
+    }
+
+    // Рендер выбирается по настройкам кадра
+    private static void renderScene(RenderSettings settings, Framebuffer framebuffer, Camera camera,
+                                    List<Model> models, ZBuffer zBuffer) {
+        if (settings.deferredShading) {
+            DeferredRenderer.render(framebuffer, camera, models, zBuffer);
+        } else if (settings.useTileRendering) {
+            TileRenderer.render(framebuffer, camera, models, zBuffer);
+        } else {
+            RenderEngine.renderScene(framebuffer, camera, models,
+                    framebuffer.getWidth(), framebuffer.getHeight(), zBuffer);
+        }
+    }
+
+    // Запрос сверки SIMD-заливки
+    private static final class Validation {
+        final FrameSnapshot snapshot;
+        final int tolerance;
+        final IntConsumer result;
+
+        Validation(FrameSnapshot snapshot, int tolerance, IntConsumer result) {
+            this.snapshot = snapshot;
+            this.tolerance = tolerance;
+            this.result = result;
+        }
+    }
+}
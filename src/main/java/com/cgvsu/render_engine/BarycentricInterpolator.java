@@ -0,0 +1,99 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.math.vectors.Vector2f;
+import com.cgvsu.math.vectors.Vector3f;
+import com.cgvsu.modelOperations.Varyings;
+
+/**
+ * Восстанавливает атрибуты пикселя треугольника по его экранным барицентрическим координатам.
+ * Формулы и порядок операций те же, что в Rasterization.rasterizeTriangleCore, поэтому отложенная закраска
+ * получает те же Varyings, что и обычная заливка. Константы треугольника считаются в bind,
+ * экземпляр переиспользуется для следующих треугольников и не потокобезопасен.
+ */
+final class BarycentricInterpolator {
+
+    private ScreenTriangle bound;
+
+    // Атрибуты вершин, заранее поделённые на view-глубину
+    private float iz1, iz2, iz3;
+    private float zp1, zp2, zp3;
+    private float wx1, wy1, wz1, wx2, wy2, wz2, wx3, wy3, wz3;
+    private float nx1, ny1, nz1, nx2, ny2, nz2, nx3, ny3, nz3;
+    private boolean hasTex;
+    private boolean hasTexCoord;
+    private float u1, v1, u2, v2, u3, v3;
+
+    /**
+     * Треугольник, для которого посчитаны константы (null до первого bind)
+     */
+    ScreenTriangle bound() {
+        return bound;
+    }
+
+    void bind(ScreenTriangle triangle) {
+        bound = triangle;
+        final VertexStage vs = triangle.vertices;
+        final int i1 = triangle.i1, i2 = triangle.i2, i3 = triangle.i3;
+
+        iz1 = 1.0f / vs.viewDepth[i1];
+        iz2 = 1.0f / vs.viewDepth[i2];
+        iz3 = 1.0f / vs.viewDepth[i3];
+        // Проекционная глубина заливки - та же view-глубина
+        zp1 = vs.viewDepth[i1] * iz1;
+        zp2 = vs.viewDepth[i2] * iz2;
+        zp3 = vs.viewDepth[i3] * iz3;
+
+        wx1 = vs.worldX[i1] * iz1; wy1 = vs.worldY[i1] * iz1; wz1 = vs.worldZ[i1] * iz1;
+        wx2 = vs.worldX[i2] * iz2; wy2 = vs.worldY[i2] * iz2; wz2 = vs.worldZ[i2] * iz2;
+        wx3 = vs.worldX[i3] * iz3; wy3 = vs.worldY[i3] * iz3; wz3 = vs.worldZ[i3] * iz3;
+
+        nx1 = vs.normalX[i1] * iz1; ny1 = vs.normalY[i1] * iz1; nz1 = vs.normalZ[i1] * iz1;
+        nx2 = vs.normalX[i2] * iz2; ny2 = vs.normalY[i2] * iz2; nz2 = vs.normalZ[i2] * iz2;
+        nx3 = vs.normalX[i3] * iz3; ny3 = vs.normalY[i3] * iz3; nz3 = vs.normalZ[i3] * iz3;
+
+        final Vector2f t1 = triangle.t1, t2 = triangle.t2, t3 = triangle.t3;
+        hasTex = t1 != null && t2 != null && t3 != null;
+        hasTexCoord = hasTex || !(t1 == null && t2 == null && t3 == null);
+        u1 = hasTex ? t1.getX() * iz1 : 0; v1 = hasTex ? t1.getY() * iz1 : 0;
+        u2 = hasTex ? t2.getX() * iz2 : 0; v2 = hasTex ? t2.getY() * iz2 : 0;
+        u3 = hasTex ? t3.getX() * iz3 : 0; v3 = hasTex ? t3.getY() * iz3 : 0;
+    }
+
+    /**
+     * Заполняет out для пикселя (x, y) с экранными барицентрическими координатами alpha, beta
+     */
+    void interpolate(int x, int y, float alpha, float beta, Varyings out) {
+        final float gamma = 1.0f - alpha - beta;
+        out.x = x;
+        out.y = y;
+        out.alpha = alpha;
+        out.beta = beta;
+        out.gamma = gamma;
+
+        final float zView = 1.0f / (alpha * iz1 + beta * iz2 + gamma * iz3);
+        out.depth = zView;
+        out.z = (alpha * zp1 + beta * zp2 + gamma * zp3) * zView;
+
+        out.worldX = (alpha * wx1 + beta * wx2 + gamma * wx3) * zView;
+        out.worldY = (alpha * wy1 + beta * wy2 + gamma * wy3) * zView;
+        out.worldZ = (alpha * wz1 + beta * wz2 + gamma * wz3) * zView;
+
+        out.hasTexCoord = hasTexCoord;
+        out.u = hasTex ? (alpha * u1 + beta * u2 + gamma * u3) * zView : 0;
+        out.v = hasTex ? (alpha * v1 + beta * v2 + gamma * v3) * zView : 0;
+
+        float nx = (alpha * nx1 + beta * nx2 + gamma * nx3) * zView;
+        float ny = (alpha * ny1 + beta * ny2 + gamma * ny3) * zView;
+        float nz = (alpha * nz1 + beta * nz2 + gamma * nz3) * zView;
+        float len = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+        if (len > Vector3f.EPS) {
+            nx /= len;
+            ny /= len;
+            nz /= len;
+        }
+        // Нормали вершин уже в world space
+        out.normalX = out.worldNormalX = nx;
+        out.normalY = out.worldNormalY = ny;
+        out.normalZ = out.worldNormalZ = nz;
+    }
+}
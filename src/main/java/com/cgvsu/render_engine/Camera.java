@@ -3,6 +3,7 @@ package com.cgvsu.render_engine;
 
 import com.cgvsu.math.matrixs.Matrix4f;
 import com.cgvsu.math.vectors.Vector3f;
+import com.cgvsu.sceneview.SceneManager;
 
 
 public class Camera {
@@ -24,17 +25,43 @@ public class Camera {
         cameraId++;
     }
 
+    // Копия для снимка кадра, не считается новой камерой
+    private Camera(final Camera source) {
+        this.position = new Vector3f(source.position.getX(), source.position.getY(), source.position.getZ());
+        this.target = new Vector3f(source.target.getX(), source.target.getY(), source.target.getZ());
+        this.cameraUp = new Vector3f(source.cameraUp.getX(), source.cameraUp.getY(), source.cameraUp.getZ());
+        this.fov = source.fov;
+        this.aspectRatio = source.aspectRatio;
+        this.nearPlane = source.nearPlane;
+        this.farPlane = source.farPlane;
+        this.radius = source.radius;
+        this.pitch = source.pitch;
+        this.yaw = source.yaw;
+        this.cameraName = source.cameraName;
+    }
+
+    /**
+     * Независимая копия камеры для рендера в отдельном потоке: GUI может двигать эту камеру,
+     * не задевая кадр, который уже рендерится
+     */
+    public Camera snapshot() {
+        return new Camera(this);
+    }
+
     public static int cameraId = 0;
     public String cameraName;
 
     public void setPosition(final Vector3f position) {
         this.position = position;
+        SceneManager.markChanged();
     }
 
     public void setTarget(final Vector3f target) {
         this.target = target;
+        SceneManager.markChanged();
     }
 
+    // Берётся из размера канваса перед каждым кадром, изменение сцены отмечает сам канвас
     public void setAspectRatio(final float aspectRatio) {
         this.aspectRatio = aspectRatio;
     }
@@ -73,11 +100,13 @@ public class Camera {
 
         position.add(move);
         target.add(move);
+        SceneManager.markChanged();
     }
 
     public void zoomCamera(float deltaS) {
         radius = clamp(radius - deltaS, 0.5f, Float.MAX_VALUE);
         updatePositionFromAngles();
+        SceneManager.markChanged();
     }
 
     public float getNearPlane() {
@@ -123,7 +152,7 @@ public class Camera {
 
         yaw = (float) Math.toDegrees(Math.atan2(offset.getX(), offset.getZ()));
         pitch = (float) Math.toDegrees(Math.asin(offset.getY() / radius));
-
+        SceneManager.markChanged();
     }
 
     private Vector3f rotateAroundAxis(Vector3f v, Vector3f axis, float angleRad) {
@@ -208,6 +237,7 @@ public class Camera {
         cameraUp = new Vector3f(0f, 1f, 0f);
 
         radius = position.subbed(target).len();
+        SceneManager.markChanged();
     }
 
 
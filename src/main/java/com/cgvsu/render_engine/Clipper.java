@@ -0,0 +1,280 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.math.vectors.Vector2f;
+
+import java.util.Arrays;
+
+/**
+ * Стадия отсечения полигонов.
+ * Сначала полигон целиком (n-угольник из polygonsBoundaries) отсекается в clip space по near-плоскости
+ * и, если нужно, по far-плоскости, затем разбивается веером на треугольники.
+ * Экран окружён защитной полосой (guard band): треугольники, целиком лежащие внутри неё, дальше не отсекаются,
+ * растеризатор просто обрезает их ограничивающий прямоугольник по экрану. Отсекаются только треугольники,
+ * вылезающие за защитную полосу, — у них экранные координаты настолько велики, что рёберные функции
+ * теряют точность, а обход даже обрезанного прямоугольника стоит дорого.
+ * Перед защитной полосой отбрасываются задние грани - треугольники, обход которых на экране
+ * идёт по часовой стрелке (для исходного полигона против часовой).
+ * Новые вершины добавляются в VertexStage модели. Экземпляр хранит буферы многоугольников и не потокобезопасен.
+ */
+public class Clipper {
+
+    // Ширина защитной полосы вокруг экрана в пикселях
+    public static final int GUARD_BAND = 1024;
+
+    // Плоскости отсечения: две в clip space и четыре стороны защитной полосы на экране
+    private static final int PLANE_NEAR = 0;
+    private static final int PLANE_FAR = 1;
+    private static final int PLANE_LEFT = 2;
+    private static final int PLANE_RIGHT = 3;
+    private static final int PLANE_TOP = 4;
+    private static final int PLANE_BOTTOM = 5;
+
+    /**
+     * Приёмник треугольников, получившихся после отсечения
+     */
+    interface TriangleConsumer {
+        /**
+         * @param edgeMask какие рёбра являются рёбрами исходного полигона (ScreenTriangle.EDGE_*),
+         *                 внутренние диагонали веера и рёбра по плоскостям отсечения в сетке рисовать не нужно
+         */
+        void accept(int i1, int i2, int i3, Vector2f t1, Vector2f t2, Vector2f t3, int edgeMask);
+    }
+
+    /**
+     * Выпуклый многоугольник в процессе отсечения: индексы вершин в VertexStage, текстурные координаты углов
+     * и признак того, что ребро из вершины k в вершину k+1 лежит на ребре исходного полигона.
+     */
+    private static final class Polygon {
+        int[] indices = new int[16];
+        Vector2f[] uvs = new Vector2f[16];
+        boolean[] edges = new boolean[16];
+        int count;
+
+        void clear() {
+            count = 0;
+        }
+
+        void add(int index, Vector2f uv, boolean edge) {
+            if (count == indices.length) {
+                int capacity = count * 2;
+                indices = Arrays.copyOf(indices, capacity);
+                uvs = Arrays.copyOf(uvs, capacity);
+                edges = Arrays.copyOf(edges, capacity);
+            }
+            indices[count] = index;
+            uvs[count] = uv;
+            edges[count] = edge;
+            count++;
+        }
+    }
+
+    private final VertexStage vs;
+    private final int width;
+    private final int height;
+    private final int clipPlanes;
+    private final boolean cullBackFaces;
+
+    // Сколько треугольников отброшено как задние грани
+    private int culledBackFaces;
+
+    private final Polygon polygon = new Polygon();
+    private final Polygon polygonScratch = new Polygon();
+    private final Polygon triangle = new Polygon();
+    private final Polygon triangleScratch = new Polygon();
+
+    /**
+     * @param vs вершинная стадия модели, уже обработанная в этом кадре
+     * @param width ширина экрана
+     * @param height высота экрана
+     * @param clipFar отсекать ли по far-плоскости
+     * @param cullBackFaces отбрасывать ли задние грани
+     */
+    public Clipper(VertexStage vs, int width, int height, boolean clipFar, boolean cullBackFaces) {
+        this.vs = vs;
+        this.width = width;
+        this.height = height;
+        this.clipPlanes = clipFar ? VertexStage.CLIP_NEAR | VertexStage.CLIP_FAR : VertexStage.CLIP_NEAR;
+        this.cullBackFaces = cullBackFaces;
+    }
+
+    public int getCulledBackFaces() {
+        return culledBackFaces;
+    }
+
+    /**
+     * Начинает новый полигон
+     */
+    public void beginPolygon() {
+        polygon.clear();
+    }
+
+    /**
+     * Добавляет очередной угол полигона
+     * @param index индекс вершины в VertexStage (вершина не должна быть помечена INVALID)
+     * @param uv текстурная координата угла (может быть null)
+     */
+    public void addVertex(int index, Vector2f uv) {
+        polygon.add(index, uv, true);
+    }
+
+    /**
+     * Отсекает накопленный полигон и отдаёт видимые треугольники в out
+     */
+    void clipPolygon(TriangleConsumer out) {
+        if (polygon.count < 3) return;
+
+        int orFlags = 0;
+        int andFlags = clipPlanes;
+        for (int k = 0; k < polygon.count; k++) {
+            int flags = vs.clipFlags[polygon.indices[k]] & clipPlanes;
+            orFlags |= flags;
+            andFlags &= flags;
+        }
+        // Все вершины за одной плоскостью - полигон не виден
+        if (andFlags != 0) return;
+
+        Polygon clipped = polygon;
+        if ((orFlags & VertexStage.CLIP_NEAR) != 0) {
+            clipped = clipAgainstPlane(clipped, clipped == polygon ? polygonScratch : polygon, PLANE_NEAR);
+        }
+        if ((orFlags & VertexStage.CLIP_FAR) != 0) {
+            clipped = clipAgainstPlane(clipped, clipped == polygon ? polygonScratch : polygon, PLANE_FAR);
+        }
+
+        final int[] indices = clipped.indices;
+        final Vector2f[] uvs = clipped.uvs;
+        final boolean[] edges = clipped.edges;
+        final int count = clipped.count;
+        for (int k = 1; k + 1 < count; k++) {
+            int edgeMask = fanEdgeMask(edges, k, count);
+            submitTriangle(indices[0], indices[k], indices[k + 1], uvs[0], uvs[k], uvs[k + 1], edgeMask, out);
+        }
+    }
+
+    // Рёбра треугольника (0, k, k+1) веера, лежащие на рёбрах многоугольника
+    private static int fanEdgeMask(boolean[] edges, int k, int count) {
+        int edgeMask = 0;
+        if (k == 1 && edges[0]) edgeMask |= ScreenTriangle.EDGE_12;
+        if (edges[k]) edgeMask |= ScreenTriangle.EDGE_23;
+        if (k + 2 == count && edges[count - 1]) edgeMask |= ScreenTriangle.EDGE_31;
+        return edgeMask;
+    }
+
+    private void submitTriangle(
+            int i1, int i2, int i3,
+            Vector2f t1, Vector2f t2, Vector2f t3,
+            int edgeMask,
+            TriangleConsumer out) {
+
+        if (isTriangleOutsideScreen(i1, i2, i3)) return;
+
+        if (cullBackFaces && isBackFacing(i1, i2, i3)) {
+            culledBackFaces++;
+            return;
+        }
+
+        // Треугольники внутри защитной полосы не отсекаем: растеризатор сам обрежет их по экрану
+        if (!exceedsGuardBand(vs, i1, i2, i3, width, height)) {
+            out.accept(i1, i2, i3, t1, t2, t3, edgeMask);
+            return;
+        }
+
+        triangle.clear();
+        triangle.add(i1, t1, (edgeMask & ScreenTriangle.EDGE_12) != 0);
+        triangle.add(i2, t2, (edgeMask & ScreenTriangle.EDGE_23) != 0);
+        triangle.add(i3, t3, (edgeMask & ScreenTriangle.EDGE_31) != 0);
+
+        Polygon clipped = triangle;
+        for (int plane = PLANE_LEFT; plane <= PLANE_BOTTOM && clipped.count > 0; plane++) {
+            clipped = clipAgainstPlane(clipped, clipped == triangle ? triangleScratch : triangle, plane);
+        }
+
+        for (int k = 1; k + 1 < clipped.count; k++) {
+            out.accept(clipped.indices[0], clipped.indices[k], clipped.indices[k + 1],
+                    clipped.uvs[0], clipped.uvs[k], clipped.uvs[k + 1],
+                    fanEdgeMask(clipped.edges, k, clipped.count));
+        }
+    }
+
+    /**
+     * Один шаг алгоритма Сазерленда-Ходжмана: отсекает многоугольник in по плоскости и пишет результат в out
+     * @return out
+     */
+    private Polygon clipAgainstPlane(Polygon in, Polygon out, int plane) {
+        out.clear();
+        final int count = in.count;
+        for (int k = 0; k < count; k++) {
+            int next = k + 1 == count ? 0 : k + 1;
+            int a = in.indices[k];
+            int b = in.indices[next];
+            float da = signedDistance(a, plane);
+            float db = signedDistance(b, plane);
+
+            if (da >= 0) {
+                out.add(a, in.uvs[k], in.edges[k]);
+            }
+            if ((da >= 0) != (db >= 0)) {
+                float t = da / (da - db);
+                int index;
+                Vector2f uv;
+                if (plane <= PLANE_FAR) {
+                    index = vs.addClipSpaceVertex(a, b, t);
+                    uv = lerpUv(in.uvs[k], in.uvs[next], t);
+                } else {
+                    index = vs.addScreenSpaceVertex(a, b, t);
+                    uv = lerpUv(in.uvs[k], in.uvs[next], vs.perspectiveWeight(a, b, t));
+                }
+                // Если входим внутрь, продолжается исходное ребро, если выходим - дальше идёт ребро по плоскости
+                out.add(index, uv, da < 0 && in.edges[k]);
+            }
+        }
+        return out;
+    }
+
+    // Расстояние до плоскости отсечения, положительное внутри
+    private float signedDistance(int i, int plane) {
+        switch (plane) {
+            case PLANE_NEAR: return vs.clipZ[i] + vs.clipW[i];
+            case PLANE_FAR: return vs.clipW[i] - vs.clipZ[i];
+            case PLANE_LEFT: return vs.screenX[i] + GUARD_BAND;
+            case PLANE_RIGHT: return width + GUARD_BAND - vs.screenX[i];
+            case PLANE_TOP: return vs.screenY[i] + GUARD_BAND;
+            default: return height + GUARD_BAND - vs.screenY[i];
+        }
+    }
+
+    /**
+     * Проверяет, выходит ли треугольник за защитную полосу вокруг экрана
+     */
+    public static boolean exceedsGuardBand(VertexStage vs, int i1, int i2, int i3, int width, int height) {
+        float minX = Math.min(Math.min(vs.screenX[i1], vs.screenX[i2]), vs.screenX[i3]);
+        float maxX = Math.max(Math.max(vs.screenX[i1], vs.screenX[i2]), vs.screenX[i3]);
+        float minY = Math.min(Math.min(vs.screenY[i1], vs.screenY[i2]), vs.screenY[i3]);
+        float maxY = Math.max(Math.max(vs.screenY[i1], vs.screenY[i2]), vs.screenY[i3]);
+        return minX < -GUARD_BAND || minY < -GUARD_BAND
+                || maxX > width + GUARD_BAND || maxY > height + GUARD_BAND;
+    }
+
+    // Знак удвоенной площади на экране: у лицевых граней она положительна (ось Y экрана направлена вниз)
+    private boolean isBackFacing(int i1, int i2, int i3) {
+        float area = (vs.screenX[i2] - vs.screenX[i1]) * (vs.screenY[i3] - vs.screenY[i1])
+                - (vs.screenY[i2] - vs.screenY[i1]) * (vs.screenX[i3] - vs.screenX[i1]);
+        return !(area > 0);
+    }
+
+    private boolean isTriangleOutsideScreen(int i1, int i2, int i3) {
+        float minX = Math.min(Math.min(vs.screenX[i1], vs.screenX[i2]), vs.screenX[i3]);
+        float maxX = Math.max(Math.max(vs.screenX[i1], vs.screenX[i2]), vs.screenX[i3]);
+        float minY = Math.min(Math.min(vs.screenY[i1], vs.screenY[i2]), vs.screenY[i3]);
+        float maxY = Math.max(Math.max(vs.screenY[i1], vs.screenY[i2]), vs.screenY[i3]);
+        return (maxX < 0 || minX > width || maxY < 0 || minY > height);
+    }
+
+    private static Vector2f lerpUv(Vector2f a, Vector2f b, float t) {
+        if (a == null || b == null) return null;
+        return new Vector2f(
+                a.getX() + (b.getX() - a.getX()) * t,
+                a.getY() + (b.getY() - a.getY()) * t
+        );
+    }
+}
@@ -0,0 +1,180 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.math.point.Point2f;
+import com.cgvsu.model.Model;
+import com.cgvsu.modelOperations.Rasterization;
+import com.cgvsu.modelOperations.Varyings;
+import com.cgvsu.modelOperations.ZBuffer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Отложенный рендер: альтернатива проходу глубины (SceneManager.depthPrePass).
+ * Геометрический проход растеризует только глубину и пишет в GBuffer номер треугольника и барицентрические
+ * координаты видимого пикселя. Затем один полноэкранный проход разрешения восстанавливает атрибуты пикселя
+ * и вызывает фрагментный шейдер его треугольника ровно один раз, так что стоимость закраски зависит от размера
+ * экрана, а не от сложности сцены. Оба прохода параллельны по полосам в BAND_HEIGHT строк, полосы пишут
+ * в разные строки буферов, поэтому блокировки не нужны.
+ */
+public class DeferredRenderer {
+
+    // Кратна DepthHierarchy.BLOCK_SIZE, чтобы блоки иерархического Z-буфера не делились между полосами
+    public static final int BAND_HEIGHT = TileRenderer.TILE_SIZE;
+
+    private static final GBuffer G_BUFFER = new GBuffer();
+
+    /**
+     * Рендерит все модели сцены в framebuffer через G-буфер (фон должен быть уже очищен)
+     * @param framebuffer буфер цветов кадра
+     * @param camera камера, относительно которой рендерим кадр
+     * @param models модели сцены
+     * @param zBuffer общий z-буфер кадра того же размера, что и framebuffer
+     */
+    public static synchronized void render(
+            final Framebuffer framebuffer,
+            final Camera camera,
+            final List<Model> models,
+            final ZBuffer zBuffer) {
+
+        final int width = framebuffer.getWidth();
+        final int height = framebuffer.getHeight();
+
+        // 1) Проецируем треугольники сцены, номер треугольника в G-буфере - индекс в этом списке
+        final ArrayList<ScreenTriangle> triangles = new ArrayList<>();
+        RenderEngine.projectScene(camera, models, width, height, triangles);
+
+        // 2) Раскладываем закрашиваемые треугольники по полосам
+        final int bands = (height + BAND_HEIGHT - 1) / BAND_HEIGHT;
+        final int[][] bins = binTriangles(triangles, bands, height);
+
+        // 3) Геометрический проход: только глубина и G-буфер
+        G_BUFFER.reset(width, height);
+        TileRenderer.POOL.invoke(new BandTask(0, bands,
+                band -> writeBand(band, bins[band], triangles, width, height, zBuffer)));
+
+        // 4) Разрешение: один вызов шейдера на видимый пиксель
+        TileRenderer.POOL.invoke(new BandTask(0, bands,
+                band -> resolveBand(band, triangles, framebuffer)));
+
+        // 5) Сетка поверх, как и в тайловом рендере
+        WireframeRenderer.draw(triangles, zBuffer, framebuffer);
+        RenderStatistics.current().collectFragments(zBuffer);
+    }
+
+    // Номера треугольников каждой полосы в порядке отрисовки (подсчётом, без списков на каждую полосу)
+    private static int[][] binTriangles(List<ScreenTriangle> triangles, int bands, int height) {
+        final int n = triangles.size();
+        final int[] fromBand = new int[n];
+        final int[] toBand = new int[n];
+        final int[] counts = new int[bands];
+        for (int i = 0; i < n; i++) {
+            ScreenTriangle triangle = triangles.get(i);
+            int minY = Math.max(0, (int) Math.floor(triangle.minY()));
+            int maxY = Math.min(height - 1, (int) Math.ceil(triangle.maxY()));
+            if (!triangle.program.fill || minY > maxY) {
+                fromBand[i] = 0;
+                toBand[i] = -1;
+                continue;
+            }
+            fromBand[i] = minY / BAND_HEIGHT;
+            toBand[i] = maxY / BAND_HEIGHT;
+            for (int band = fromBand[i]; band <= toBand[i]; band++) {
+                counts[band]++;
+            }
+        }
+
+        final int[][] bins = new int[bands][];
+        for (int band = 0; band < bands; band++) {
+            bins[band] = new int[counts[band]];
+            counts[band] = 0;
+        }
+        for (int i = 0; i < n; i++) {
+            for (int band = fromBand[i]; band <= toBand[i]; band++) {
+                bins[band][counts[band]++] = i;
+            }
+        }
+        return bins;
+    }
+
+    private static void writeBand(int band, int[] bin, List<ScreenTriangle> triangles,
+                                  int width, int height, ZBuffer zBuffer) {
+        final int minY = band * BAND_HEIGHT;
+        final int maxY = Math.min(minY + BAND_HEIGHT, height) - 1;
+        for (final int id : bin) {
+            final ScreenTriangle triangle = triangles.get(id);
+            final VertexStage vs = triangle.vertices;
+            final int i1 = triangle.i1, i2 = triangle.i2, i3 = triangle.i3;
+            Rasterization.rasterizeTriangleDepth(
+                    new Point2f(vs.screenX[i1], vs.screenY[i1]),
+                    new Point2f(vs.screenX[i2], vs.screenY[i2]),
+                    new Point2f(vs.screenX[i3], vs.screenY[i3]),
+                    vs.viewDepth[i1], vs.viewDepth[i2], vs.viewDepth[i3],
+                    zBuffer,
+                    (x, y, alpha, beta) -> G_BUFFER.write(x, y, id, alpha, beta),
+                    0, minY, width - 1, maxY);
+        }
+    }
+
+    private static void resolveBand(int band, List<ScreenTriangle> triangles, Framebuffer framebuffer) {
+        final int width = G_BUFFER.getWidth();
+        final int minY = band * BAND_HEIGHT;
+        final int maxY = Math.min(minY + BAND_HEIGHT, G_BUFFER.getHeight()) - 1;
+        final int[] ids = G_BUFFER.getTriangleIds();
+        final float[] alphas = G_BUFFER.getAlphas();
+        final float[] betas = G_BUFFER.getBetas();
+        final int[] pixels = framebuffer.getPixels();
+
+        final BarycentricInterpolator interpolator = new BarycentricInterpolator();
+        final Varyings in = Varyings.forCurrentThread();
+        FragmentShader shader = null;
+
+        for (int y = minY; y <= maxY; y++) {
+            for (int x = 0, index = y * width; x < width; x++, index++) {
+                final int id = ids[index];
+                if (id == GBuffer.EMPTY) continue;
+
+                // Соседние пиксели обычно из одного треугольника - перепривязываем только при смене
+                final ScreenTriangle triangle = triangles.get(id);
+                if (triangle != interpolator.bound()) {
+                    interpolator.bind(triangle);
+                    shader = triangle.program.fragmentShader();
+                    shader.bind(triangle);
+                }
+                interpolator.interpolate(x, y, alphas[index], betas[index], in);
+                pixels[index] = shader.shade(in);
+            }
+        }
+    }
+
+    /**
+     * Задача на диапазон полос [from, to). Делит диапазон пополам, пока не останется одна полоса.
+     */
+    private static class BandTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final IntConsumer action;
+
+        BandTask(int from, int to, IntConsumer action) {
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new BandTask(from, mid, action), new BandTask(mid, to, action));
+                return;
+            }
+            if (from < to) {
+                action.accept(from);
+            }
+        }
+    }
+}
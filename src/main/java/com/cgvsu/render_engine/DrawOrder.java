@@ -0,0 +1,282 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.math.matrixs.Matrix4f;
+import com.cgvsu.math.vectors.Vector3f;
+import com.cgvsu.model.BoundingVolume;
+import com.cgvsu.model.IntArrayList;
+import com.cgvsu.model.Model;
+import com.cgvsu.model.VertexList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Порядок отрисовки спереди назад: ближние фрагменты пишутся первыми, и дальние отбрасываются Z-тестом
+ * (и иерархическим Z) до закраски, вместо того чтобы закрашиваться и перезаписываться.
+ * Модели упорядочиваются по расстоянию от камеры до центра их AABB в мировых координатах.
+ * Полигоны модели упорядочиваются грубо, кластерами: один раз на геометрию полигоны сортируются по коду Мортона
+ * своего центра, так что соседние CLUSTER_POLYGONS полигонов лежат компактно, а потом кластеры сортируются
+ * по расстоянию до камеры.
+ * Порядок кэшируется и пересчитывается, только если камера сдвинулась больше чем на RESORT_DISTANCE расстояния
+ * до объекта или поменялись модели и их положение. Порядок влияет только на скорость: результат отличается
+ * разве что в пикселях с точно равной глубиной.
+ */
+final class DrawOrder {
+
+    // Полигонов в кластере
+    static final int CLUSTER_POLYGONS = 128;
+    // Доля расстояния до объекта, на которую должна сдвинуться камера, чтобы порядок пересчитался
+    static final float RESORT_DISTANCE = 0.05f;
+    // Бит на ось в коде Мортона
+    private static final int MORTON_BITS = 10;
+
+    // Кэш порядка моделей: модели и центры их AABB на момент сортировки, положение камеры и результат.
+    // Модели сравниваются по getRenderSource, поэтому кэш работает и для снимков сцены из фонового рендера
+    private Model[] sceneModels = new Model[0];
+    private float[] sceneCenters = new float[0];
+    private float sceneEyeX, sceneEyeY, sceneEyeZ;
+    private float sceneThreshold;
+    private int[] sortedOrder = new int[0];
+
+    private final Map<Model, Clusters> clusters = new WeakHashMap<>();
+
+    /**
+     * Модели сцены от ближних к дальним. Берёт закэшированный порядок, если ни модели, ни их центры
+     * не поменялись, а камера сдвинулась незначительно.
+     */
+    synchronized List<Model> sortModels(Camera camera, List<Model> models) {
+        final int n = models.size();
+        final float[] centers = new float[n * 3];
+        for (int i = 0; i < n; i++) {
+            Model model = models.get(i);
+            BoundingVolume volume = model.getBoundingVolume();
+            Vector3f center = GraphicConveyor.rotateScaleTranslate(model.currentTransform)
+                    .multiplyOnVector(new Vector3f(volume.centerX, volume.centerY, volume.centerZ));
+            centers[i * 3] = center.getX();
+            centers[i * 3 + 1] = center.getY();
+            centers[i * 3 + 2] = center.getZ();
+        }
+
+        final Vector3f eye = camera.getPosition();
+        if (!isSameScene(models, centers)
+                || hasMoved(eye, sceneEyeX, sceneEyeY, sceneEyeZ, sceneThreshold)) {
+            sortScene(eye, models, centers);
+        }
+
+        final ArrayList<Model> sorted = new ArrayList<>(n);
+        for (int i : sortedOrder) {
+            sorted.add(models.get(i));
+        }
+        return sorted;
+    }
+
+    private void sortScene(Vector3f eye, List<Model> models, float[] centers) {
+        final int n = models.size();
+
+        final float[] distances = new float[n];
+        final Integer[] order = new Integer[n];
+        float nearest = Float.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            distances[i] = distance(eye, centers[i * 3], centers[i * 3 + 1], centers[i * 3 + 2]);
+            nearest = Math.min(nearest, distances[i]);
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Float.compare(distances[a], distances[b]));
+
+        sortedOrder = new int[n];
+        for (int i = 0; i < n; i++) {
+            sortedOrder[i] = order[i];
+        }
+        sceneModels = new Model[n];
+        for (int i = 0; i < n; i++) {
+            sceneModels[i] = models.get(i).getRenderSource();
+        }
+        sceneCenters = centers;
+        sceneEyeX = eye.getX();
+        sceneEyeY = eye.getY();
+        sceneEyeZ = eye.getZ();
+        sceneThreshold = RESORT_DISTANCE * nearest;
+    }
+
+    /**
+     * Индексы полигонов модели в порядке отрисовки: кластеры от ближних к дальним.
+     * @param modelMatrix матрица модели этого кадра
+     * @return массив длины mesh.polygonsBoundaries.size(), его нельзя менять
+     */
+    synchronized int[] sortPolygons(Camera camera, Model mesh, Matrix4f modelMatrix) {
+        final Model source = mesh.getRenderSource();
+        Clusters cached = clusters.get(source);
+        if (cached == null || cached.volume != mesh.getBoundingVolume()
+                || cached.polygonCount != mesh.polygonsBoundaries.size()
+                || cached.cornerCount != mesh.polygons.size()) {
+            cached = new Clusters(mesh);
+            clusters.put(source, cached);
+        }
+        cached.sort(camera.getPosition(), modelMatrix);
+        return cached.order;
+    }
+
+    private boolean isSameScene(List<Model> models, float[] centers) {
+        if (models.size() != sceneModels.length) return false;
+        for (int i = 0; i < sceneModels.length; i++) {
+            if (models.get(i).getRenderSource() != sceneModels[i]) return false;
+        }
+        return Arrays.equals(centers, sceneCenters);
+    }
+
+    private static boolean hasMoved(Vector3f eye, float x, float y, float z, float threshold) {
+        return distance(eye, x, y, z) > threshold;
+    }
+
+    private static float distance(Vector3f eye, float x, float y, float z) {
+        float dx = x - eye.getX(), dy = y - eye.getY(), dz = z - eye.getZ();
+        return (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    /**
+     * Кластеры полигонов одной геометрии и их последний порядок.
+     * Пересоздаётся, когда Model сбрасывает BoundingVolume или меняется число полигонов.
+     */
+    private static final class Clusters {
+        final BoundingVolume volume;
+        final int polygonCount;
+        final int cornerCount;
+        // Полигоны в порядке кода Мортона, кластер - CLUSTER_POLYGONS подряд идущих
+        final int[] polygons;
+        // Центры кластеров в координатах модели
+        final float[] centers;
+        // Результат: полигоны в порядке отрисовки
+        final int[] order;
+
+        // Камера и матрица модели на момент последней сортировки
+        boolean sorted;
+        float eyeX, eyeY, eyeZ;
+        float threshold;
+        final float[] matrix = new float[16];
+
+        Clusters(Model mesh) {
+            volume = mesh.getBoundingVolume();
+            polygonCount = mesh.polygonsBoundaries.size();
+            cornerCount = mesh.polygons.size();
+
+            // Центры полигонов, ключ сортировки - код Мортона центра в AABB модели
+            final float[] polygonCenters = new float[polygonCount * 3];
+            final long[] keys = new long[polygonCount];
+            final float sizeX = Math.max(volume.maxX - volume.minX, Matrix4f.EPS);
+            final float sizeY = Math.max(volume.maxY - volume.minY, Matrix4f.EPS);
+            final float sizeZ = Math.max(volume.maxZ - volume.minZ, Matrix4f.EPS);
+            final int cells = (1 << MORTON_BITS) - 1;
+            final VertexList vertices = VertexList.of(mesh.vertices);
+            final IntArrayList corners = IntArrayList.of(mesh.polygons);
+            final IntArrayList boundaries = IntArrayList.of(mesh.polygonsBoundaries);
+            for (int polygon = 0; polygon < polygonCount; polygon++) {
+                polygonCenter(vertices, corners, boundaries, polygon, polygonCenters);
+                int qx = quantize((polygonCenters[polygon * 3] - volume.minX) / sizeX, cells);
+                int qy = quantize((polygonCenters[polygon * 3 + 1] - volume.minY) / sizeY, cells);
+                int qz = quantize((polygonCenters[polygon * 3 + 2] - volume.minZ) / sizeZ, cells);
+                keys[polygon] = (morton(qx, qy, qz) << 32) | polygon;
+            }
+            Arrays.sort(keys);
+
+            polygons = new int[polygonCount];
+            for (int i = 0; i < polygonCount; i++) {
+                polygons[i] = (int) keys[i];
+            }
+
+            final int clusterCount = (polygonCount + CLUSTER_POLYGONS - 1) / CLUSTER_POLYGONS;
+            centers = new float[clusterCount * 3];
+            for (int cluster = 0; cluster < clusterCount; cluster++) {
+                int from = cluster * CLUSTER_POLYGONS;
+                int to = Math.min(polygonCount, from + CLUSTER_POLYGONS);
+                for (int i = from; i < to; i++) {
+                    for (int axis = 0; axis < 3; axis++) {
+                        centers[cluster * 3 + axis] += polygonCenters[polygons[i] * 3 + axis] / (to - from);
+                    }
+                }
+            }
+            order = polygons.clone();
+        }
+
+        void sort(Vector3f eye, Matrix4f modelMatrix) {
+            boolean sameMatrix = sorted;
+            for (int k = 0; k < 16; k++) {
+                float value = modelMatrix.getValue(k >> 2, k & 3);
+                if (matrix[k] != value) {
+                    matrix[k] = value;
+                    sameMatrix = false;
+                }
+            }
+            if (sameMatrix && !hasMoved(eye, eyeX, eyeY, eyeZ, threshold)) return;
+
+            final int clusterCount = centers.length / 3;
+            final float[] distances = new float[clusterCount];
+            final Integer[] clusterOrder = new Integer[clusterCount];
+            float nearest = Float.MAX_VALUE;
+            for (int cluster = 0; cluster < clusterCount; cluster++) {
+                Vector3f center = modelMatrix.multiplyOnVector(new Vector3f(
+                        centers[cluster * 3], centers[cluster * 3 + 1], centers[cluster * 3 + 2]));
+                distances[cluster] = distance(eye, center.getX(), center.getY(), center.getZ());
+                nearest = Math.min(nearest, distances[cluster]);
+                clusterOrder[cluster] = cluster;
+            }
+            Arrays.sort(clusterOrder, (a, b) -> Float.compare(distances[a], distances[b]));
+
+            int next = 0;
+            for (int cluster : clusterOrder) {
+                int from = cluster * CLUSTER_POLYGONS;
+                int to = Math.min(polygonCount, from + CLUSTER_POLYGONS);
+                System.arraycopy(polygons, from, order, next, to - from);
+                next += to - from;
+            }
+
+            sorted = true;
+            eyeX = eye.getX();
+            eyeY = eye.getY();
+            eyeZ = eye.getZ();
+            threshold = RESORT_DISTANCE * nearest;
+        }
+
+        // Среднее позиций вершин полигона, у полигона без корректных вершин - центр AABB
+        private void polygonCenter(VertexList vertices, IntArrayList corners, IntArrayList boundaries,
+                                   int polygon, float[] out) {
+            final int start = boundaries.getInt(polygon);
+            final int end = polygon + 1 < polygonCount ? boundaries.getInt(polygon + 1) : cornerCount;
+            float x = 0, y = 0, z = 0;
+            int count = 0;
+            for (int corner = Math.max(0, start); corner < Math.min(end, cornerCount); corner++) {
+                int index = corners.getInt(corner);
+                if (index < 0 || index >= vertices.size() || !vertices.hasPosition(index)) continue;
+                x += vertices.getX(index);
+                y += vertices.getY(index);
+                z += vertices.getZ(index);
+                count++;
+            }
+            if (count == 0) {
+                out[polygon * 3] = volume.centerX;
+                out[polygon * 3 + 1] = volume.centerY;
+                out[polygon * 3 + 2] = volume.centerZ;
+                return;
+            }
+            out[polygon * 3] = x / count;
+            out[polygon * 3 + 1] = y / count;
+            out[polygon * 3 + 2] = z / count;
+        }
+
+        private static int quantize(float t, int cells) {
+            return Math.max(0, Math.min(cells, (int) (t * cells)));
+        }
+
+        private static long morton(int x, int y, int z) {
+            long code = 0;
+            for (int bit = 0; bit < MORTON_BITS; bit++) {
+                code |= ((long) (x >> bit & 1) << (3 * bit))
+                        | ((long) (y >> bit & 1) << (3 * bit + 1))
+                        | ((long) (z >> bit & 1) << (3 * bit + 2));
+            }
+            return code;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.cgvsu.render_engine;
+
+/**
+ * Проход заливки треугольника.
+ * Обычно треугольник закрашивается за один проход (FULL). С предварительным проходом глубины
+ * (SceneManager.depthPrePass) сначала все треугольники пишут только глубину (DEPTH), а потом закрашиваются
+ * только пиксели, глубина которых совпала с записанной (SHADE): каждый видимый пиксель закрашивается один раз.
+ */
+enum FillPass {
+    FULL,
+    DEPTH,
+    SHADE
+}
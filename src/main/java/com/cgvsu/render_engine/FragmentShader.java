@@ -0,0 +1,20 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.modelOperations.Varyings;
+
+/**
+ * Фрагментный шейдер: считает цвет пикселя по его интерполированным атрибутам.
+ * Экземпляр хранит данные текущего треугольника и не потокобезопасен, у каждого потока свой (ShaderProgram).
+ */
+interface FragmentShader {
+
+    /**
+     * Готовит шейдер к растеризации треугольника: здесь читается всё, что постоянно в пределах треугольника
+     */
+    void bind(ScreenTriangle triangle);
+
+    /**
+     * @return цвет пикселя в формате ARGB
+     */
+    int shade(Varyings in);
+}
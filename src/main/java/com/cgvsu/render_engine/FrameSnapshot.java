@@ -0,0 +1,87 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.model.Model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Неизменяемый снимок сцены для одного кадра: копия камеры, снимки моделей (Model.renderSnapshot),
+ * размер кадра, масштаб внутреннего разрешения, цвет фона и настройки рендера (RenderSettings). Снимается в потоке JavaFX и рендерится
+ * в потоке BackgroundRenderer, так что GUI может менять камеру и модели, пока кадр рендерится.
+ */
+public final class FrameSnapshot {
+
+    private final Camera camera;
+    private final List<Model> models;
+    private final int width;
+    private final int height;
+    private final int scale;
+    private final int backgroundArgb;
+    private final RenderSettings settings;
+
+    private FrameSnapshot(Camera camera, List<Model> models, int width, int height, int scale, int backgroundArgb,
+                          RenderSettings settings) {
+        this.camera = camera;
+        this.models = models;
+        this.width = width;
+        this.height = height;
+        this.scale = scale;
+        this.backgroundArgb = backgroundArgb;
+        this.settings = settings;
+    }
+
+    /**
+     * Снимает сцену (вызывать в потоке JavaFX)
+     * @param camera камера кадра
+     * @param models модели сцены
+     * @param width ширина кадра
+     * @param height высота кадра
+     * @param scale во сколько раз внутреннее разрешение меньше кадра по каждой оси (ResolutionController.SCALES)
+     * @param backgroundArgb цвет фона в формате ARGB
+     */
+    public static FrameSnapshot capture(Camera camera, List<Model> models, int width, int height, int scale,
+                                        int backgroundArgb) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Width and height must be positive");
+        }
+        if (scale < 1) {
+            throw new IllegalArgumentException("Scale must be positive");
+        }
+        ArrayList<Model> snapshots = new ArrayList<>(models.size());
+        for (Model model : models) {
+            snapshots.add(model.renderSnapshot());
+        }
+        return new FrameSnapshot(camera.snapshot(), Collections.unmodifiableList(snapshots),
+                width, height, scale, backgroundArgb, RenderSettings.capture());
+    }
+
+    public Camera getCamera() {
+        return camera;
+    }
+
+    public List<Model> getModels() {
+        return models;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getScale() {
+        return scale;
+    }
+
+    public int getBackgroundArgb() {
+        return backgroundArgb;
+    }
+
+    RenderSettings getSettings() {
+        return settings;
+    }
+}
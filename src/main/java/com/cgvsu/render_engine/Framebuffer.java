@@ -0,0 +1,132 @@
+package com.cgvsu.render_engine;
+
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.paint.Color;
+
+import java.util.Arrays;
+
+/**
+ * Буфер цветов кадра в формате упакованного ARGB (int на пиксель).
+ * Рендер пишет пиксели сюда, а на канвас готовый кадр выводится один раз вызовом present,
+ * вместо PixelWriter.setColor на каждый пиксель.
+ */
+public class Framebuffer {
+
+    private int width;
+    private int height;
+    private int[] pixels;
+
+    public Framebuffer(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Width and height must be positive");
+        }
+        this.width = width;
+        this.height = height;
+        this.pixels = new int[width * height];
+    }
+
+    /**
+     * Меняет размер буфера. Массив пересоздаётся только если размер действительно изменился.
+     * @return true если размер изменился
+     */
+    public boolean resize(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Width and height must be positive");
+        }
+        if (this.width == width && this.height == height) {
+            return false;
+        }
+        this.width = width;
+        this.height = height;
+        this.pixels = new int[width * height];
+        return true;
+    }
+
+    /**
+     * Заливает весь буфер одним цветом (замена fillRect фона)
+     * @param argb цвет в формате ARGB
+     */
+    public void clear(int argb) {
+        Arrays.fill(pixels, argb);
+    }
+
+    public void clear(Color color) {
+        clear(toArgb(color));
+    }
+
+    /**
+     * Растягивает кадр пониженного разрешения на весь буфер по ближайшему пикселю
+     * @param source кадр размером не меньше width / factor на height / factor (с округлением вверх)
+     * @param factor во сколько раз source меньше этого буфера по каждой оси
+     */
+    public void upscaleFrom(Framebuffer source, int factor) {
+        final int[] sourcePixels = source.pixels;
+        for (int y = 0; y < height; y++) {
+            final int row = y * width;
+            // Строки внутри блока factor x factor одинаковые
+            if (y % factor != 0) {
+                System.arraycopy(pixels, row - width, pixels, row, width);
+                continue;
+            }
+            final int sourceRow = (y / factor) * source.width;
+            for (int x = 0; x < width; x++) {
+                pixels[row + x] = sourcePixels[sourceRow + x / factor];
+            }
+        }
+    }
+
+    /**
+     * Записывает пиксель с проверкой границ
+     * @param x, y координаты пикселя
+     * @param argb цвет в формате ARGB
+     */
+    public void setPixel(int x, int y, int argb) {
+        if (x >= 0 && x < width && y >= 0 && y < height) {
+            pixels[y * width + x] = argb;
+        }
+    }
+
+    public void setColor(int x, int y, Color color) {
+        setPixel(x, y, toArgb(color));
+    }
+
+    public int getPixel(int x, int y) {
+        return pixels[y * width + x];
+    }
+
+    /**
+     * Прямой доступ к массиву пикселей (построчно, width * height)
+     */
+    public int[] getPixels() {
+        return pixels;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Выводит весь кадр на канвас одним вызовом setPixels
+     * @param graphicsContext графический контекст канваса
+     */
+    public void present(GraphicsContext graphicsContext) {
+        graphicsContext.getPixelWriter().setPixels(0, 0, width, height,
+                PixelFormat.getIntArgbInstance(), pixels, 0, width);
+    }
+
+    /**
+     * Упаковка цвета JavaFX в int ARGB
+     */
+    public static int toArgb(Color color) {
+        int a = (int) Math.round(color.getOpacity() * 255.0);
+        int r = (int) Math.round(color.getRed() * 255.0);
+        int g = (int) Math.round(color.getGreen() * 255.0);
+        int b = (int) Math.round(color.getBlue() * 255.0);
+        return (a << 24) | (r << 16) | (g << 8) | b;
+    }
+}
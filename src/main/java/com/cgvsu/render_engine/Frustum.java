@@ -0,0 +1,102 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.math.matrixs.Matrix4f;
+import com.cgvsu.model.BoundingVolume;
+
+/**
+ * Пирамида видимости камеры в world space: шесть плоскостей, извлечённых из матрицы view-projection
+ * (метод Грибба-Хартманна). Нужна, чтобы отбрасывать модели целиком ещё до вершинной стадии.
+ */
+public class Frustum {
+
+    private static final int LEFT = 0, RIGHT = 1, BOTTOM = 2, TOP = 3, NEAR = 4, FAR = 5;
+
+    // Плоскости a*x + b*y + c*z + d >= 0 внутри, нормали нормализованы
+    private final float[] planes = new float[6 * 4];
+    private final int planeCount;
+
+    /**
+     * @param camera камера
+     * @param withFar учитывать ли far-плоскость (без неё пирамида бесконечна вглубь)
+     */
+    public Frustum(Camera camera, boolean withFar) {
+        Matrix4f viewProjection = new Matrix4f(camera.getProjectionMatrix().getMatrix());
+        viewProjection.multiply(camera.getViewMatrix());
+
+        for (int col = 0; col < 4; col++) {
+            float r0 = viewProjection.getValue(0, col);
+            float r1 = viewProjection.getValue(1, col);
+            float r2 = viewProjection.getValue(2, col);
+            float r3 = viewProjection.getValue(3, col);
+            planes[LEFT * 4 + col] = r3 + r0;
+            planes[RIGHT * 4 + col] = r3 - r0;
+            planes[BOTTOM * 4 + col] = r3 + r1;
+            planes[TOP * 4 + col] = r3 - r1;
+            planes[NEAR * 4 + col] = r3 + r2;
+            planes[FAR * 4 + col] = r3 - r2;
+        }
+        for (int p = 0; p < 6; p++) {
+            float a = planes[p * 4], b = planes[p * 4 + 1], c = planes[p * 4 + 2];
+            float len = (float) Math.sqrt(a * a + b * b + c * c);
+            if (len > 1e-12f) {
+                for (int k = 0; k < 4; k++) {
+                    planes[p * 4 + k] /= len;
+                }
+            }
+        }
+        planeCount = withFar ? 6 : 5;
+    }
+
+    /**
+     * Проверяет, может ли модель с такими ограничивающими объёмами попасть в кадр.
+     * Сначала дешёвый тест сферы, затем, если сфера пересекает пирамиду, тест восьми углов AABB.
+     * @param volume ограничивающие объёмы в локальных координатах модели
+     * @param modelMatrix матрица модели
+     * @return false, если модель гарантированно вне пирамиды
+     */
+    public boolean intersects(BoundingVolume volume, Matrix4f modelMatrix) {
+        if (volume.empty) return false;
+
+        final float m00 = modelMatrix.getValue(0, 0), m01 = modelMatrix.getValue(0, 1), m02 = modelMatrix.getValue(0, 2), m03 = modelMatrix.getValue(0, 3);
+        final float m10 = modelMatrix.getValue(1, 0), m11 = modelMatrix.getValue(1, 1), m12 = modelMatrix.getValue(1, 2), m13 = modelMatrix.getValue(1, 3);
+        final float m20 = modelMatrix.getValue(2, 0), m21 = modelMatrix.getValue(2, 1), m22 = modelMatrix.getValue(2, 2), m23 = modelMatrix.getValue(2, 3);
+
+        // Сфера: радиус растягивается на наибольший масштаб по осям
+        float cx = m00 * volume.centerX + m01 * volume.centerY + m02 * volume.centerZ + m03;
+        float cy = m10 * volume.centerX + m11 * volume.centerY + m12 * volume.centerZ + m13;
+        float cz = m20 * volume.centerX + m21 * volume.centerY + m22 * volume.centerZ + m23;
+        float scale = (float) Math.sqrt(Math.max(
+                m00 * m00 + m10 * m10 + m20 * m20, Math.max(
+                m01 * m01 + m11 * m11 + m21 * m21,
+                m02 * m02 + m12 * m12 + m22 * m22)));
+        float radius = volume.radius * scale;
+
+        boolean sphereInside = true;
+        for (int p = 0; p < planeCount; p++) {
+            float distance = planes[p * 4] * cx + planes[p * 4 + 1] * cy + planes[p * 4 + 2] * cz + planes[p * 4 + 3];
+            if (distance < -radius) return false;
+            if (distance < radius) sphereInside = false;
+        }
+        if (sphereInside) return true;
+
+        // AABB: модель вне пирамиды, если все восемь углов лежат за одной плоскостью
+        float[] corners = new float[8 * 3];
+        for (int k = 0; k < 8; k++) {
+            float x = (k & 1) == 0 ? volume.minX : volume.maxX;
+            float y = (k & 2) == 0 ? volume.minY : volume.maxY;
+            float z = (k & 4) == 0 ? volume.minZ : volume.maxZ;
+            corners[k * 3] = m00 * x + m01 * y + m02 * z + m03;
+            corners[k * 3 + 1] = m10 * x + m11 * y + m12 * z + m13;
+            corners[k * 3 + 2] = m20 * x + m21 * y + m22 * z + m23;
+        }
+        for (int p = 0; p < planeCount; p++) {
+            float a = planes[p * 4], b = planes[p * 4 + 1], c = planes[p * 4 + 2], d = planes[p * 4 + 3];
+            boolean allOutside = true;
+            for (int k = 0; k < 8 && allOutside; k++) {
+                allOutside = a * corners[k * 3] + b * corners[k * 3 + 1] + c * corners[k * 3 + 2] + d < 0;
+            }
+            if (allOutside) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,62 @@
+package com.cgvsu.render_engine;
+
+import java.util.Arrays;
+
+/**
+ * Компактный G-буфер отложенного рендера: для каждого пикселя номер видимого треугольника кадра
+ * и его экранные барицентрические координаты alpha, beta (gamma = 1 - alpha - beta), всего 12 байт.
+ * Глубина хранится в ZBuffer, а uv, нормаль и мировая позиция не хранятся вовсе:
+ * их восстанавливает BarycentricInterpolator при разрешении.
+ */
+final class GBuffer {
+
+    // Пиксель не закрыт ни одним треугольником
+    static final int EMPTY = -1;
+
+    private int width;
+    private int height;
+    private int[] triangleIds = new int[0];
+    private float[] alphas = new float[0];
+    private float[] betas = new float[0];
+
+    /**
+     * Подгоняет размер под кадр и очищает буфер
+     */
+    void reset(int width, int height) {
+        if (width != this.width || height != this.height) {
+            this.width = width;
+            this.height = height;
+            triangleIds = new int[width * height];
+            alphas = new float[width * height];
+            betas = new float[width * height];
+        }
+        Arrays.fill(triangleIds, EMPTY);
+    }
+
+    void write(int x, int y, int triangleId, float alpha, float beta) {
+        final int index = y * width + x;
+        triangleIds[index] = triangleId;
+        alphas[index] = alpha;
+        betas[index] = beta;
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    int getHeight() {
+        return height;
+    }
+
+    int[] getTriangleIds() {
+        return triangleIds;
+    }
+
+    float[] getAlphas() {
+        return alphas;
+    }
+
+    float[] getBetas() {
+        return betas;
+    }
+}
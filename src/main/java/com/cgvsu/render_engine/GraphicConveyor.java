@@ -4,6 +4,7 @@ package com.cgvsu.render_engine;
 import com.cgvsu.math.matrixs.Matrix4f;
 import com.cgvsu.math.point.Point2f;
 import com.cgvsu.math.vectors.Vector3f;
+import com.cgvsu.model.Transform;
 
 import java.util.Arrays;
 
@@ -35,6 +36,14 @@ public class GraphicConveyor {
         return translate;
     }
 
+    public static Matrix4f rotateScaleTranslate(Transform transform) {
+        return rotateScaleTranslate(
+                transform.scaleX, transform.scaleY, transform.scaleZ,
+                transform.rotationX, transform.rotationY, transform.rotationZ,
+                transform.positionX, transform.positionY, transform.positionZ
+        );
+    }
+
     public static Matrix4f rotateScaleTranslate() {
         return  rotateScaleTranslate(1, 1, 1, 0, 0,0, 0,0,0);
     }
@@ -0,0 +1,113 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.model.BoundingVolume;
+import com.cgvsu.model.IntArrayList;
+import com.cgvsu.model.Model;
+
+import java.util.Arrays;
+
+/**
+ * Рёбра полигонов модели без повторов: ребро, общее для двух полигонов, хранится один раз.
+ * Строится по polygons и polygonsBoundaries, то есть по контурам самих полигонов модели, а не по треугольникам
+ * веера после отсечения. Для каждого угла полигона хранится номер ребра из этого угла в следующий,
+ * так что по видимым полигонам кадра сразу находятся их рёбра.
+ * Пересоздаётся, когда Model сбрасывает BoundingVolume или меняется число вершин, полигонов или углов.
+ */
+final class MeshEdges {
+
+    // Ребро угла с некорректным индексом вершины
+    static final int NO_EDGE = -1;
+
+    final BoundingVolume volume;
+    final int vertexCount;
+    final int polygonCount;
+    final int cornerCount;
+
+    // Углы полигона p - с polygonStarts[p] по polygonEnds[p] - 1 (у некорректных полигонов углов нет)
+    final int[] polygonStarts;
+    final int[] polygonEnds;
+    // Номер ребра из угла в следующий угол того же полигона (или NO_EDGE)
+    final int[] cornerEdges;
+    // Концы рёбер (индексы вершин модели)
+    final int[] edgeA;
+    final int[] edgeB;
+    final int edgeCount;
+    // Замкнутая сетка: каждое ребро общее ровно для двух полигонов, граничных рёбер нет
+    final boolean closed;
+
+    MeshEdges(Model mesh) {
+        volume = mesh.getBoundingVolume();
+        vertexCount = mesh.vertices.size();
+        polygonCount = mesh.polygonsBoundaries.size();
+        cornerCount = mesh.polygons.size();
+
+        polygonStarts = new int[polygonCount];
+        polygonEnds = new int[polygonCount];
+        cornerEdges = new int[cornerCount];
+        Arrays.fill(cornerEdges, NO_EDGE);
+        int[] a = new int[cornerCount];
+        int[] b = new int[cornerCount];
+        // Сколько раз ребро встретилось в контурах полигонов
+        int[] uses = new int[cornerCount];
+        int count = 0;
+
+        // Открытая адресация: ключ ребра (меньшая вершина << 32 | большая) -> номер ребра
+        int capacity = Integer.highestOneBit(Math.max(4, cornerCount * 2)) << 1;
+        long[] keys = new long[capacity];
+        int[] ids = new int[capacity];
+        Arrays.fill(keys, -1L);
+        final int mask = capacity - 1;
+        final IntArrayList polygons = IntArrayList.of(mesh.polygons);
+        final IntArrayList polygonsBoundaries = IntArrayList.of(mesh.polygonsBoundaries);
+
+        for (int polygon = 0; polygon < polygonCount; polygon++) {
+            final int start = polygonsBoundaries.getInt(polygon);
+            final int end = polygon + 1 < polygonCount ? polygonsBoundaries.getInt(polygon + 1) : cornerCount;
+            // Такие полигоны RenderEngine не рисует
+            if (start < 0 || end - start < 3 || end > cornerCount) continue;
+            polygonStarts[polygon] = start;
+            polygonEnds[polygon] = end;
+
+            for (int corner = start; corner < end; corner++) {
+                final int from = polygons.getInt(corner);
+                final int to = polygons.getInt(corner + 1 < end ? corner + 1 : start);
+                if (from < 0 || to < 0 || from >= vertexCount || to >= vertexCount || from == to) continue;
+
+                final long key = ((long) Math.min(from, to) << 32) | Math.max(from, to);
+                int slot = (int) (key ^ (key >>> 29)) * 0x9E3779B1 & mask;
+                while (keys[slot] != -1L && keys[slot] != key) {
+                    slot = (slot + 1) & mask;
+                }
+                if (keys[slot] == -1L) {
+                    keys[slot] = key;
+                    ids[slot] = count;
+                    a[count] = from;
+                    b[count] = to;
+                    count++;
+                }
+                cornerEdges[corner] = ids[slot];
+                uses[ids[slot]]++;
+            }
+        }
+
+        edgeA = Arrays.copyOf(a, count);
+        edgeB = Arrays.copyOf(b, count);
+        edgeCount = count;
+
+        boolean allShared = count > 0;
+        for (int edge = 0; edge < count && allShared; edge++) {
+            allShared = uses[edge] == 2;
+        }
+        closed = allShared;
+    }
+
+    /**
+     * Совпадает ли топология с текущей геометрией модели
+     */
+    boolean matches(Model mesh) {
+        return volume == mesh.getBoundingVolume()
+                && vertexCount == mesh.vertices.size()
+                && polygonCount == mesh.polygonsBoundaries.size()
+                && cornerCount == mesh.polygons.size();
+    }
+}
@@ -0,0 +1,163 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.math.matrixs.Matrix4f;
+import com.cgvsu.model.BoundingVolume;
+import com.cgvsu.model.Model;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Программное отсечение моделей, целиком закрытых другими моделями.
+ * Модели обходятся от ближних к дальним. Треугольники ближайших крупных закрашиваемых моделей (окклюдеров) растеризуются
+ * в буфер глубины пониженного разрешения (клетка SCALE x SCALE пикселей), а каждая следующая модель до вершинной
+ * стадии проверяется по экранному прямоугольнику своего AABB: если во всех клетках прямоугольника
+ * (с запасом в одну клетку вокруг) записана глубина ближе ближайшего угла AABB, модель не видна.
+ * Запас гарантирует, что у каждой клетки модели закрыты и все соседние центры, поэтому край окклюдера
+ * между центрами не даёт ложного отсечения. Сквозные щели в окклюдере уже одной клетки не учитываются.
+ * Экземпляр живёт один кадр и не потокобезопасен.
+ */
+final class OcclusionCuller {
+
+    // Размер клетки буфера в пикселях экрана
+    static final int SCALE = 4;
+    // Сколько моделей может стать окклюдерами за кадр
+    static final int MAX_OCCLUDERS = 4;
+    // Наименьшая доля экрана, которую должен закрывать прямоугольник окклюдера
+    static final float MIN_OCCLUDER_AREA = 1f / 64;
+
+    private final int width;
+    private final int height;
+    private final int cellsX;
+    private final int cellsY;
+    // View-глубина клетки, Float.MAX_VALUE - не закрыта
+    private final float[] depth;
+    private final Matrix4f viewProjection;
+    private int occluders;
+
+    OcclusionCuller(Camera camera, int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.cellsX = (width + SCALE - 1) / SCALE;
+        this.cellsY = (height + SCALE - 1) / SCALE;
+        this.depth = new float[cellsX * cellsY];
+        Arrays.fill(depth, Float.MAX_VALUE);
+        this.viewProjection = new Matrix4f(camera.getProjectionMatrix().getMatrix());
+        this.viewProjection.multiply(camera.getViewMatrix());
+    }
+
+    /**
+     * Экранный прямоугольник AABB модели и ближайшая view-глубина его углов
+     * @return {minX, minY, maxX, maxY, nearestDepth} в пикселях, или null, если AABB пересекает near-плоскость
+     *         или модель пустая (тогда о перекрытии ничего сказать нельзя)
+     */
+    float[] screenBounds(Model mesh) {
+        BoundingVolume volume = mesh.getBoundingVolume();
+        if (volume.empty) return null;
+
+        Matrix4f mvp = new Matrix4f(viewProjection.getMatrix());
+        mvp.multiply(GraphicConveyor.rotateScaleTranslate(mesh.currentTransform));
+
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+        float nearest = Float.MAX_VALUE;
+        for (int k = 0; k < 8; k++) {
+            float x = (k & 1) == 0 ? volume.minX : volume.maxX;
+            float y = (k & 2) == 0 ? volume.minY : volume.maxY;
+            float z = (k & 4) == 0 ? volume.minZ : volume.maxZ;
+            float cx = mvp.getValue(0, 0) * x + mvp.getValue(0, 1) * y + mvp.getValue(0, 2) * z + mvp.getValue(0, 3);
+            float cy = mvp.getValue(1, 0) * x + mvp.getValue(1, 1) * y + mvp.getValue(1, 2) * z + mvp.getValue(1, 3);
+            float cz = mvp.getValue(2, 0) * x + mvp.getValue(2, 1) * y + mvp.getValue(2, 2) * z + mvp.getValue(2, 3);
+            float cw = mvp.getValue(3, 0) * x + mvp.getValue(3, 1) * y + mvp.getValue(3, 2) * z + mvp.getValue(3, 3);
+            // Угол перед near-плоскостью - проекция прямоугольника не ограничена
+            if (cz + cw < 0 || !(cw > Matrix4f.EPS)) return null;
+
+            // Как VertexStage.projectToScreen
+            float sx = (width - 1) * (cx / cw) / 2 + (width - 1) / 2;
+            float sy = (1 - height) * (cy / cw) / 2 + (height - 1) / 2;
+            minX = Math.min(minX, sx);
+            maxX = Math.max(maxX, sx);
+            minY = Math.min(minY, sy);
+            maxY = Math.max(maxY, sy);
+            nearest = Math.min(nearest, cw);
+        }
+        return new float[]{minX, minY, maxX, maxY, nearest};
+    }
+
+    /**
+     * Проверяет, закрыта ли модель с такими экранными границами уже добавленными окклюдерами
+     */
+    boolean isOccluded(float[] bounds) {
+        if (bounds == null || occluders == 0) return false;
+
+        // Запас в одну клетку: буфер опрашивается только в центрах клеток
+        int minCx = Math.max(0, (int) Math.floor(bounds[0] / SCALE) - 1);
+        int minCy = Math.max(0, (int) Math.floor(bounds[1] / SCALE) - 1);
+        int maxCx = Math.min(cellsX - 1, (int) Math.floor(bounds[2] / SCALE) + 1);
+        int maxCy = Math.min(cellsY - 1, (int) Math.floor(bounds[3] / SCALE) + 1);
+        if (minCx > maxCx || minCy > maxCy) return false;
+
+        final float nearest = bounds[4];
+        for (int cy = minCy; cy <= maxCy; cy++) {
+            int row = cy * cellsX;
+            for (int cx = minCx; cx <= maxCx; cx++) {
+                if (!(depth[row + cx] < nearest)) return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Добавляет уже спроецированную модель в окклюдеры, если она достаточно крупная, закрашивается
+     * и лимит не исчерпан. Модель, от которой рисуется только сетка, ничего не закрывает.
+     * @param bounds экранные границы модели (screenBounds)
+     * @param triangles треугольники модели после отсечения
+     */
+    void addOccluder(float[] bounds, List<ScreenTriangle> triangles) {
+        if (bounds == null || occluders >= MAX_OCCLUDERS || triangles.isEmpty()) return;
+        // Программа одна на всю модель
+        if (!triangles.get(0).program.fill) return;
+        float area = (Math.min(bounds[2], width) - Math.max(bounds[0], 0))
+                * (Math.min(bounds[3], height) - Math.max(bounds[1], 0));
+        if (!(area >= MIN_OCCLUDER_AREA * width * height)) return;
+
+        occluders++;
+        for (ScreenTriangle triangle : triangles) {
+            rasterize(triangle);
+        }
+    }
+
+    // Растеризация треугольника по центрам клеток с перспективно-корректной view-глубиной
+    private void rasterize(ScreenTriangle triangle) {
+        final VertexStage vs = triangle.vertices;
+        final int i1 = triangle.i1, i2 = triangle.i2, i3 = triangle.i3;
+        final float x1 = vs.screenX[i1] / SCALE, y1 = vs.screenY[i1] / SCALE;
+        final float x2 = vs.screenX[i2] / SCALE, y2 = vs.screenY[i2] / SCALE;
+        final float x3 = vs.screenX[i3] / SCALE, y3 = vs.screenY[i3] / SCALE;
+
+        float area = (y2 - y3) * (x1 - x3) + (x3 - x2) * (y1 - y3);
+        if (Math.abs(area) < 1e-10f) return;
+        final float invArea = 1.0f / area;
+        final float iz1 = 1.0f / vs.viewDepth[i1], iz2 = 1.0f / vs.viewDepth[i2], iz3 = 1.0f / vs.viewDepth[i3];
+
+        int minCx = Math.max(0, (int) Math.ceil(Math.min(Math.min(x1, x2), x3) - 0.5f));
+        int minCy = Math.max(0, (int) Math.ceil(Math.min(Math.min(y1, y2), y3) - 0.5f));
+        int maxCx = Math.min(cellsX - 1, (int) Math.floor(Math.max(Math.max(x1, x2), x3) - 0.5f));
+        int maxCy = Math.min(cellsY - 1, (int) Math.floor(Math.max(Math.max(y1, y2), y3) - 0.5f));
+
+        for (int cy = minCy; cy <= maxCy; cy++) {
+            final float py = cy + 0.5f;
+            for (int cx = minCx; cx <= maxCx; cx++) {
+                final float px = cx + 0.5f;
+                float alpha = ((y2 - y3) * (px - x3) + (x3 - x2) * (py - y3)) * invArea;
+                float beta = ((y3 - y1) * (px - x3) + (x1 - x3) * (py - y3)) * invArea;
+                float gamma = 1.0f - alpha - beta;
+                if (alpha < 0 || beta < 0 || gamma < 0) continue;
+
+                float z = 1.0f / (alpha * iz1 + beta * iz2 + gamma * iz3);
+                int index = cy * cellsX + cx;
+                if (z < depth[index]) depth[index] = z;
+            }
+        }
+    }
+}
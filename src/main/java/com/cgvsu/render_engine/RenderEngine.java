@@ -4,27 +4,27 @@ import com.cgvsu.math.matrixs.Matrix4f;
 import com.cgvsu.math.point.Point2f;
 import com.cgvsu.math.vectors.Vector2f;
 import com.cgvsu.math.vectors.Vector3f;
+import com.cgvsu.model.IntArrayList;
 import com.cgvsu.model.Model;
-import com.cgvsu.model.Vertex;
+import com.cgvsu.model.VertexList;
+import com.cgvsu.modelOperations.DepthHierarchy;
 import com.cgvsu.modelOperations.Rasterization;
-import com.cgvsu.modelOperations.TextureMapping;
+import com.cgvsu.modelOperations.Texture;
 import com.cgvsu.modelOperations.ZBuffer;
-import com.cgvsu.sceneview.SceneManager;
-import com.cgvsu.service.ThemeSettings;
-import javafx.scene.canvas.GraphicsContext;
-import javafx.scene.image.Image;
-import javafx.scene.paint.Color;
 
 import java.util.ArrayList;
-
-import static com.cgvsu.math.matrixs.Matrix4f.buildNormalMatrix3x3;
-import static com.cgvsu.modelOperations.Rasterization.perspectiveCorrectInterpolate3;
-import static com.cgvsu.render_engine.GraphicConveyor.*;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 public class RenderEngine {
+
     /**
      * Метод, который рендерит каждый кадр с учётом режимов отрисовки
-     * @param graphicsContext графический контекст для наложения цвета на пиксель
+     * @param framebuffer буфер цветов кадра, в который пишутся пиксели
      * @param camera камера, относительно который рендерим кадр(в нашем случае это ActiveCamera)
      * @param mesh сама модель, которую нужно отрендерить
      * @param width ширина экрана
@@ -33,299 +33,404 @@ public class RenderEngine {
      *                (сетка отсекается при цвете или текстуре)
      */
     public static void renderWithRenderingMods(
-            final GraphicsContext graphicsContext,
+            final Framebuffer framebuffer,
             final Camera camera,
             final Model mesh,
             final int width,
             final int height,
             ZBuffer zBuffer) {
 
-        Matrix4f modelMatrix = rotateScaleTranslate(
-                mesh.currentTransform.scaleX, mesh.currentTransform.scaleY, mesh.currentTransform.scaleZ,
-                mesh.currentTransform.rotationX, mesh.currentTransform.rotationY, mesh.currentTransform.rotationZ,
-                mesh.currentTransform.positionX, mesh.currentTransform.positionY, mesh.currentTransform.positionZ
-        );
+        ArrayList<ScreenTriangle> triangles = new ArrayList<>();
+        projectTriangles(camera, mesh, width, height, triangles);
 
-        Matrix4f viewMatrix = camera.getViewMatrix();
-        Matrix4f projectionMatrix = camera.getProjectionMatrix();
+        for (ScreenTriangle triangle : triangles) {
+            if (triangle.program.fill) {
+                rasterizeFill(triangle, zBuffer, framebuffer, 0, 0, width - 1, height - 1, FillPass.FULL);
+            }
+        }
+        WireframeRenderer.draw(triangles, zBuffer, framebuffer);
+    }
 
-        Matrix4f modelViewMatrix = new Matrix4f(viewMatrix.getMatrix());
-        modelViewMatrix.multiply(modelMatrix);
+    /**
+     * Рендерит все модели сцены последовательно, в порядке и с отсечением по настройкам projectScene
+     * @param framebuffer буфер цветов кадра
+     * @param camera камера
+     * @param models модели сцены
+     * @param width ширина экрана
+     * @param height высота экрана
+     * @param zBuffer z-буфер кадра
+     */
+    public static void renderScene(
+            final Framebuffer framebuffer,
+            final Camera camera,
+            final List<Model> models,
+            final int width,
+            final int height,
+            ZBuffer zBuffer) {
 
-        float near = camera.getNearPlane();
-        Vector3f targetView = viewMatrix.multiplyOnVector(camera.getTarget());
-        boolean forwardMinusZ = targetView.getZ() < 0;
+        ArrayList<ScreenTriangle> triangles = new ArrayList<>();
+        projectScene(camera, models, width, height, triangles);
 
-        // Нормаль-матрица (inverse-transpose верхней 3x3 modelMatrix)
-        final float[] normalMatrix = buildNormalMatrix3x3(modelMatrix);
+        // С проходом глубины сначала пишется только глубина всей сцены, а закрашиваются потом только видимые пиксели
+        FillPass shadePass = FillPass.FULL;
+        if (RenderSettings.current().depthPrePass) {
+            for (ScreenTriangle triangle : triangles) {
+                if (triangle.program.fill) {
+                    rasterizeFill(triangle, zBuffer, framebuffer, 0, 0, width - 1, height - 1, FillPass.DEPTH);
+                }
+            }
+            shadePass = FillPass.SHADE;
+        }
 
-        Color baseColor = Color.GREEN;
-        final int nPolygons = mesh.polygonsBoundaries.size();
+        for (ScreenTriangle triangle : triangles) {
+            if (triangle.program.fill) {
+                rasterizeFill(triangle, zBuffer, framebuffer, 0, 0, width - 1, height - 1, shadePass);
+            }
+        }
+        // Сетка рисуется после всей заливки, как и в тайловом рендере
+        WireframeRenderer.draw(triangles, zBuffer, framebuffer);
+        RenderStatistics.current().collectFragments(zBuffer);
+    }
 
-        for (int polygonInd = 0; polygonInd < nPolygons; ++polygonInd) {
-            final int startIndex = mesh.polygonsBoundaries.get(polygonInd);
-            final int endIndex = (polygonInd + 1 < nPolygons)
-                    ? mesh.polygonsBoundaries.get(polygonInd + 1)
-                    : mesh.polygons.size();
+    /**
+     * Проецирует все модели сцены и складывает треугольники в out в порядке отрисовки:
+     * в порядке моделей, или спереди назад, если включено SceneManager.frontToBack (DrawOrder).
+     * Если включено SceneManager.occlusionCulling, модели обрабатываются от ближних к дальним,
+     * и модели, целиком закрытые ближними, отбрасываются до вершинной стадии (OcclusionCuller).
+     */
+    static void projectScene(
+            final Camera camera,
+            final List<Model> models,
+            final int width,
+            final int height,
+            final ArrayList<ScreenTriangle> out) {
 
-            // Этот рендерер работает по треугольникам (берём первые 3 индекса полигона).
-            if (endIndex - startIndex < 3) continue;
+        final RenderSettings settings = RenderSettings.current();
+        final List<Model> ordered = settings.frontToBack ? drawOrder.sortModels(camera, models) : models;
+        if (!settings.occlusionCulling || ordered.size() < 2) {
+            for (Model model : ordered) {
+                projectTriangles(camera, model, width, height, out);
+            }
+            return;
+        }
 
-            Point2f p1 = null, p2 = null, p3 = null;
+        final OcclusionCuller culler = new OcclusionCuller(camera, width, height);
+        final int n = ordered.size();
+        final float[][] bounds = new float[n][];
+        final Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            bounds[i] = culler.screenBounds(ordered.get(i));
+            order[i] = i;
+        }
+        // От ближних к дальним, модели без границ (пересекают near-плоскость) - первыми
+        Arrays.sort(order, Comparator.comparingDouble(i -> bounds[i] == null ? -1 : bounds[i][4]));
+
+        final List<ArrayList<ScreenTriangle>> perModel = new ArrayList<>(Collections.nCopies(n, null));
+        for (int i : order) {
+            if (culler.isOccluded(bounds[i])) {
+                RenderStatistics.current().occludedModels++;
+                continue;
+            }
+            ArrayList<ScreenTriangle> triangles = new ArrayList<>();
+            projectTriangles(camera, ordered.get(i), width, height, triangles);
+            culler.addOccluder(bounds[i], triangles);
+            perModel.set(i, triangles);
+        }
 
-            // view-depth (положительный), меньше = ближе.
-            float zD1 = 0, zD2 = 0, zD3 = 0;
+        for (ArrayList<ScreenTriangle> triangles : perModel) {
+            if (triangles != null) {
+                out.addAll(triangles);
+            }
+        }
+    }
 
-            Vertex v1 = null, v2 = null, v3 = null;
+    /**
+     * Проецирует все полигоны модели на экран и складывает готовые к растеризации треугольники в out.
+     * Вершины трансформируются один раз вершинной стадией, треугольники только индексируют её результат.
+     * Модель целиком вне пирамиды видимости отбрасывается до вершинной стадии.
+     * Полигоны, пересекающие near-плоскость, отсекаются в clip space, полигоны с некорректными данными отбрасываются.
+     */
+    static void projectTriangles(
+            final Camera camera,
+            final Model mesh,
+            final int width,
+            final int height,
+            final ArrayList<ScreenTriangle> out) {
+
+        final RenderSettings settings = RenderSettings.current();
+        final Matrix4f modelMatrix = GraphicConveyor.rotateScaleTranslate(mesh.currentTransform);
+        Frustum frustum = new Frustum(camera, settings.clipFarPlane);
+        if (!frustum.intersects(mesh.getBoundingVolume(), modelMatrix)) {
+            RenderStatistics.current().culledModels++;
+            return;
+        }
 
-            // Оригинальные world позиции
-            Vector3f w1Orig = null, w2Orig = null, w3Orig = null;
+        // Режим отрисовки выбирается один раз на модель, дальше работают шейдеры этого режима
+        final boolean textured = settings.useTexture && mesh.texture != null;
+        final ShaderProgram program = ShaderFactory.select(settings.drawMesh, textured, settings.useLight);
+        final Texture texture = textured ? mesh.getDecodedTexture() : null;
+        final Vector3f eye = camera.getPosition();
+
+        final VertexStage stage = getVertexStage(mesh);
+        program.vertexShader.process(stage, camera, mesh, width, height);
+
+        // Сетка модели рисуется по её рёбрам, а не по треугольникам
+        final WireframeRenderer.ModelWireframe wireframe = program.wireframe
+                ? new WireframeRenderer.ModelWireframe(stage, getMeshEdges(mesh))
+                : null;
+
+        // Без заливки задние грани видны как сетка. Общая настройка не трогает незамкнутые сетки (сканы, срезы),
+        // у них через дыры видна внутренняя сторона
+        final boolean cullBackFaces = program.fill && (mesh.backFaceCulling != null
+                ? mesh.backFaceCulling
+                : settings.backFaceCulling && getMeshEdges(mesh).closed);
+        final Clipper clipper = new Clipper(stage, width, height, settings.clipFarPlane, cullBackFaces);
+        final Clipper.TriangleConsumer emit = (i1, i2, i3, t1, t2, t3, edgeMask) ->
+                out.add(createTriangle(stage, i1, i2, i3, t1, t2, t3, texture, program, eye, wireframe));
+        final int firstTriangle = out.size();
 
-            // Копии worldPos для Rasterization (чтобы она их не мутировала)
-            Vector3f w1Work = null, w2Work = null, w3Work = null;
+        final int nPolygons = mesh.polygonsBoundaries.size();
+        final int nCorners = mesh.polygons.size();
+        // Кластеры полигонов спереди назад, иначе порядок файла
+        final int[] polygonOrder = settings.frontToBack ? drawOrder.sortPolygons(camera, mesh, modelMatrix) : null;
+        // Есть ли UV у всех углов, проверяется один раз на модель, а не на каждый угол
+        final boolean cornerUvs = textured && mesh.getHasTextureVertex();
+        final VertexList vertices = VertexList.of(mesh.vertices);
+        final IntArrayList polygons = IntArrayList.of(mesh.polygons);
+        final IntArrayList polygonsBoundaries = IntArrayList.of(mesh.polygonsBoundaries);
+        final IntArrayList uvIndices = IntArrayList.of(mesh.polygonsTextureCoordinateIndices);
+
+        for (int k = 0; k < nPolygons; ++k) {
+            final int polygonInd = polygonOrder != null ? polygonOrder[k] : k;
+            final int startIndex = polygonsBoundaries.getInt(polygonInd);
+            final int endIndex = (polygonInd + 1 < nPolygons)
+                    ? polygonsBoundaries.getInt(polygonInd + 1)
+                    : nCorners;
+            if (endIndex - startIndex < 3 || endIndex > nCorners) continue;
+
+            clipper.beginPolygon();
+            boolean usable = true;
+            for (int corner = startIndex; corner < endIndex; corner++) {
+                final int index = polygons.getInt(corner);
+                if (!isVertexUsable(stage, index)) {
+                    usable = false;
+                    break;
+                }
+                clipper.addVertex(index, cornerUvs ? vertices.getTextureCoordinate(index, uvIndices.getInt(corner)) : null);
+            }
+            if (!usable) continue;
 
-            Vector2f t1 = null, t2 = null, t3 = null;
+            final int before = out.size();
+            clipper.clipPolygon(emit);
+            if (wireframe != null && out.size() > before) {
+                wireframe.visiblePolygons[polygonInd] = true;
+            }
+        }
 
-            boolean shouldSkipPolygon = false;
+        final RenderStatistics statistics = RenderStatistics.current();
+        statistics.submittedTriangles += out.size() - firstTriangle;
+        statistics.culledBackFaces += clipper.getCulledBackFaces();
+    }
 
-            for (int local = 0; local < 3; ++local) {
-                int polyIndex = startIndex + local;
-                if (polyIndex >= mesh.polygons.size()) {
-                    shouldSkipPolygon = true;
-                    break;
-                }
+    private static ScreenTriangle createTriangle(
+            VertexStage stage,
+            int i1, int i2, int i3,
+            Vector2f t1, Vector2f t2, Vector2f t3,
+            Texture texture, ShaderProgram program, Vector3f eye,
+            WireframeRenderer.ModelWireframe wireframe) {
+
+        ScreenTriangle triangle = new ScreenTriangle();
+        triangle.vertices = stage;
+        triangle.i1 = i1;
+        triangle.i2 = i2;
+        triangle.i3 = i3;
+        triangle.t1 = t1;
+        triangle.t2 = t2;
+        triangle.t3 = t3;
+
+        // фолбэк face normal (world)
+        triangle.faceNormalWorld = computeFaceNormalWorld(stage, i1, i2, i3);
+
+        triangle.texture = texture;
+        triangle.program = program;
+        triangle.eye = eye;
+        triangle.wireframe = wireframe;
+        return triangle;
+    }
 
-                int vertexIndex = mesh.polygons.get(polyIndex);
-                if (vertexIndex < 0 || vertexIndex >= mesh.vertices.size()) {
-                    shouldSkipPolygon = true;
-                    break;
-                }
+    /**
+     * Закрашивает треугольник фрагментным шейдером программы модели в пределах прямоугольника отсечения.
+     * Прямоугольник нужен тайловому рендеру: каждый тайл пишет только в свою часть z-буфера и буфера цветов.
+     * Прямоугольник должен лежать внутри framebuffer, поэтому запись идёт прямо в массив без проверки границ.
+     * С иерархическим Z-буфером треугольник, закрытый во всех своих тайлах 8x8, отбрасывается до растеризации,
+     * а у остальных растеризуются только строки незакрытых тайлов.
+     * @param pass проход: обычная заливка, только глубина или закраска по уже записанной глубине
+     */
+    static void rasterizeFill(
+            final ScreenTriangle triangle,
+            final ZBuffer zBuffer,
+            final Framebuffer framebuffer,
+            final int clipMinX, final int clipMinY,
+            final int clipMaxX, final int clipMaxY,
+            final FillPass pass) {
+
+        if (!RenderSettings.current().hierarchicalZ) {
+            prepareFill(triangle, zBuffer, framebuffer, pass).rasterize(clipMinX, clipMinY, clipMaxX, clipMaxY);
+            return;
+        }
 
-                Vertex vertex = mesh.vertices.get(vertexIndex);
-                Vector3f pos = vertex.position;
-                Vector3f posVec = new Vector3f(pos.getX(), pos.getY(), pos.getZ());
-
-                // world pos (для освещения)
-                Vector3f worldPos = modelMatrix.multiplyOnVector(posVec);
-
-                // view pos (для глубины)
-                Vector3f viewPos = modelViewMatrix.multiplyOnVector(posVec);
-
-                // Near-plane check в view-space
-                if (forwardMinusZ) {
-                    if (viewPos.getZ() > -near) { // камера смотрит вдоль -Z
-                        shouldSkipPolygon = true;
-                        break;
-                    }
-                } else {
-                    if (viewPos.getZ() < near) {  // камера смотрит вдоль +Z
-                        shouldSkipPolygon = true;
-                        break;
-                    }
+        final int minX = Math.max(clipMinX, (int) Math.floor(triangle.minX()));
+        final int minY = Math.max(clipMinY, (int) Math.floor(triangle.minY()));
+        final int maxX = Math.min(clipMaxX, (int) Math.ceil(triangle.maxX()));
+        final int maxY = Math.min(clipMaxY, (int) Math.ceil(triangle.maxY()));
+        if (minX > maxX || minY > maxY) return;
+
+        // Ближайшая точка треугольника: view-глубина вдоль плоского треугольника не меньше минимума по вершинам.
+        // Небольшой запас покрывает погрешность перспективно-корректной интерполяции.
+        final VertexStage vs = triangle.vertices;
+        final float nearestDepth = Math.min(Math.min(vs.viewDepth[triangle.i1], vs.viewDepth[triangle.i2]),
+                vs.viewDepth[triangle.i3]) * (1 - 1e-5f);
+        if (!(nearestDepth > 0)) {
+            prepareFill(triangle, zBuffer, framebuffer, pass).rasterize(minX, minY, maxX, maxY);
+            return;
+        }
+        final DepthHierarchy hierarchy = zBuffer.getHierarchy();
+        if (hierarchy.isOccluded(minX, minY, maxX, maxY, nearestDepth)) return;
+
+        final TriangleFill fill = prepareFill(triangle, zBuffer, framebuffer, pass);
+        final int shift = DepthHierarchy.TILE_SHIFT;
+        // Маленький треугольник дешевле растеризовать целиком, чем резать по тайлам
+        if (((maxX >> shift) - (minX >> shift) + 1) * ((maxY >> shift) - (minY >> shift) + 1) <= 4) {
+            fill.rasterize(minX, minY, maxX, maxY);
+            return;
+        }
+        for (int ty = minY >> shift; ty <= maxY >> shift; ty++) {
+            final int rowMinY = Math.max(minY, ty << shift);
+            final int rowMaxY = Math.min(maxY, ((ty + 1) << shift) - 1);
+
+            // Склеиваем соседние незакрытые тайлы строки в один прямоугольник
+            int runStart = -1;
+            for (int tx = minX >> shift; tx <= (maxX >> shift) + 1; tx++) {
+                boolean visible = tx <= maxX >> shift && !hierarchy.isTileOccluded(tx, ty, nearestDepth);
+                if (visible && runStart < 0) {
+                    runStart = tx;
+                } else if (!visible && runStart >= 0) {
+                    final int runMinX = Math.max(minX, runStart << shift);
+                    final int runMaxX = Math.min(maxX, (tx << shift) - 1);
+                    fill.rasterize(runMinX, rowMinY, runMaxX, rowMaxY);
+                    runStart = -1;
                 }
+            }
+        }
+    }
 
-                // Проекция
-                Vector3f projected = projectionMatrix.multiplyOnVector(viewPos);
-                Point2f screenPoint = vertexToPoint(projected, width, height);
+    private static TriangleFill prepareFill(ScreenTriangle triangle, ZBuffer zBuffer, Framebuffer framebuffer,
+                                           FillPass pass) {
+        if (SimdShading.isEnabled()) {
+            return SimdRasterizer.prepare(triangle, zBuffer, framebuffer, pass);
+        }
 
-                if (!Float.isFinite(screenPoint.getX()) || !Float.isFinite(screenPoint.getY())) {
-                    shouldSkipPolygon = true;
-                    break;
-                }
+        final VertexStage vs = triangle.vertices;
+        final int i1 = triangle.i1, i2 = triangle.i2, i3 = triangle.i3;
+
+        if (pass == FillPass.DEPTH) {
+            final Point2f p1 = screenPoint(vs, i1), p2 = screenPoint(vs, i2), p3 = screenPoint(vs, i3);
+            return (clipMinX, clipMinY, clipMaxX, clipMaxY) -> Rasterization.rasterizeTriangleDepth(
+                    p1, p2, p3,
+                    vs.viewDepth[i1], vs.viewDepth[i2], vs.viewDepth[i3],
+                    zBuffer, null,
+                    clipMinX, clipMinY, clipMaxX, clipMaxY
+            );
+        }
 
-                // Положительная глубина вдоль направления взгляда
-                float zViewDepth = forwardMinusZ ? -viewPos.getZ() : viewPos.getZ();
-                if (!Float.isFinite(zViewDepth) || zViewDepth <= 1e-6f) {
-                    shouldSkipPolygon = true;
-                    break;
-                }
+        // Шейдер программы этой модели, свой у каждого потока
+        final FragmentShader shader = triangle.program.fragmentShader();
+        shader.bind(triangle);
 
-                Vector2f texCoord = null;
-                if (SceneManager.useTexture && mesh.texture != null) {
-                    texCoord = mesh.getTextureCoordinateForPolygonVertex(polyIndex);
-                }
+        final int[] pixels = framebuffer.getPixels();
+        final int stride = framebuffer.getWidth();
 
-                if (local == 0) {
-                    p1 = screenPoint;
-                    zD1 = zViewDepth;
-                    v1 = vertex;
-                    w1Orig = worldPos;
-                    w1Work = new Vector3f(worldPos.getX(), worldPos.getY(), worldPos.getZ());
-                    t1 = texCoord;
-                } else if (local == 1) {
-                    p2 = screenPoint;
-                    zD2 = zViewDepth;
-                    v2 = vertex;
-                    w2Orig = worldPos;
-                    w2Work = new Vector3f(worldPos.getX(), worldPos.getY(), worldPos.getZ());
-                    t2 = texCoord;
-                } else {
-                    p3 = screenPoint;
-                    zD3 = zViewDepth;
-                    v3 = vertex;
-                    w3Orig = worldPos;
-                    w3Work = new Vector3f(worldPos.getX(), worldPos.getY(), worldPos.getZ());
-                    t3 = texCoord;
-                }
-            }
+        // Атрибуты пикселя приходят в примитивных полях Varyings, в цикле ничего не выделяется
+        final Rasterization.FragmentCallback callback = in -> {
+            // Перспективно-корректная глубина для ZBuffer (view-depth)
+            float depth = in.depth;
+            if (!Float.isFinite(depth)) return;
 
-            if (shouldSkipPolygon) continue;
-            if (p1 == null || p2 == null || p3 == null) continue;
-            if (isTriangleOutsideScreen(p1, p2, p3, width, height)) continue;
-
-            // фолбэк face normal (world)
-            final Vector3f faceNormalWorld = computeFaceNormalWorld(w1Orig, w2Orig, w3Orig);
-
-            boolean shouldRenderFill = !SceneManager.drawMesh
-                    || (SceneManager.useTexture && mesh.texture != null)
-                    || SceneManager.useLight;
-
-            if (shouldRenderFill) {
-                //Делаем констант копии переменных, чтобы передать их в lambda функцию
-                final float fZ1 = zD1, fZ2 = zD2, fZ3 = zD3;
-                final Vector3f fW1 = w1Orig, fW2 = w2Orig, fW3 = w3Orig;
-                final Vector3f fFaceN = faceNormalWorld;
-
-                final boolean fTextured = SceneManager.useTexture && mesh.texture != null;
-                final Image fTexture = mesh.texture;
-                final Color fBaseColor = baseColor;
-
-                final float[] fNormalMatrix = normalMatrix;
-                final Matrix4f fModelMatrix = modelMatrix;
-
-                Rasterization.PixelCallback callback = (x, y, zIgnored, barycentric, texCoord, normal, worldNormalIgnored, worldPosIgnored) -> {
-                    if (barycentric == null || barycentric.length < 3) return;
-
-                    float alpha = barycentric[0];
-                    float beta = barycentric[1];
-                    float gamma = barycentric[2];
-
-                    // 1) Перспективно-корректная глубина для ZBuffer (view-depth)
-                    float depth = perspectiveCorrectDepth(fZ1, fZ2, fZ3, alpha, beta, gamma);
-                    if (!Float.isFinite(depth)) return;
-
-                    if (!zBuffer.testAndSet(x, y, depth)) return;
-
-                    // 2) Базовый цвет
-                    Color color = fTextured ? TextureMapping.getTextureColor(fTexture, texCoord) : fBaseColor;
-
-                    // 3) Освещение
-                    if (SceneManager.useLight) {
-                        Vector3f n = normal;
-                        if (n == null || n.len() < 1e-6f) {
-                            n = fFaceN;
-                        }
-
-                        Vector3f worldN = transformNormal(fNormalMatrix, fModelMatrix, n);
-
-                        // мировая позиция пикселя (перспективно-корректно, из ОРИГИНАЛЬНЫХ worldPos)
-                        Vector3f worldP = perspectiveCorrectInterpolate3(
-                                fW1, fW2, fW3,
-                                fZ1, fZ2, fZ3,
-                                alpha, beta, gamma
-                        );
-
-                        color = TextureMapping.getModifiedColorWithLighting(
-                                worldN,
-                                worldP,
-                                color,
-                                SceneManager.lightIntensity
-                        );
-                    }
-
-                    graphicsContext.getPixelWriter().setColor(x, y, color);
-                };
-
-                // В Rasterization отдаём копии worldPos, чтобы её multiply() не портили оригиналы
-                Rasterization.rasterizeTriangleWithWorldPos(
-                        p1, p2, p3,
-                        zD1, zD2, zD3,
-                        v1, v2, v3,
-                        t1, t2, t3,
-                        w1Work, w2Work, w3Work,
-                        callback,
-                        modelMatrix
-                );
+            // Во втором проходе закрашивается только пиксель с глубиной, записанной проходом глубины
+            if (!(pass == FillPass.SHADE ? zBuffer.testEqual(in.x, in.y, depth) : zBuffer.testAndSet(in.x, in.y, depth))) {
+                return;
             }
 
-            // Wireframe
-            if (SceneManager.drawMesh) {
-                float bias = 0.0001f;
-                Color lineColor = Color.web(ThemeSettings.wireframeColor);
-                int lineWidth = (int) ThemeSettings.wireframeWidth;
-
-                Rasterization.rasterizeThickLine(p1, p2, zD1 - bias, zD2 - bias, lineWidth, (x, y, zLine) -> {
-                    if (zBuffer.testAndSet(x, y, zLine)) {
-                        graphicsContext.getPixelWriter().setColor(x, y, lineColor);
-                    }
-                });
-
-                Rasterization.rasterizeThickLine(p2, p3, zD2 - bias, zD3 - bias, lineWidth, (x, y, zLine) -> {
-                    if (zBuffer.testAndSet(x, y, zLine)) {
-                        graphicsContext.getPixelWriter().setColor(x, y, lineColor);
-                    }
-                });
-
-                Rasterization.rasterizeThickLine(p1, p3, zD1 - bias, zD3 - bias, lineWidth, (x, y, zLine) -> {
-                    if (zBuffer.testAndSet(x, y, zLine)) {
-                        graphicsContext.getPixelWriter().setColor(x, y, lineColor);
-                    }
-                });
-            }
-        }
+            pixels[in.y * stride + in.x] = shader.shade(in);
+        };
+
+        final Point2f p1 = screenPoint(vs, i1), p2 = screenPoint(vs, i2), p3 = screenPoint(vs, i3);
+        final Vector3f n1 = worldNormal(vs, i1), n2 = worldNormal(vs, i2), n3 = worldNormal(vs, i3);
+        final Vector3f w1 = worldPosition(vs, i1), w2 = worldPosition(vs, i2), w3 = worldPosition(vs, i3);
+        return (clipMinX, clipMinY, clipMaxX, clipMaxY) -> Rasterization.rasterizeTriangleFragments(
+                p1, p2, p3,
+                vs.viewDepth[i1], vs.viewDepth[i2], vs.viewDepth[i3],
+                n1, n2, n3,
+                triangle.t1, triangle.t2, triangle.t3,
+                w1, w2, w3,
+                callback,
+                clipMinX, clipMinY, clipMaxX, clipMaxY
+        );
     }
 
-    private static boolean isTriangleOutsideScreen(Point2f p1, Point2f p2, Point2f p3, int width, int height) {
-        float minX = Math.min(Math.min(p1.getX(), p2.getX()), p3.getX());
-        float maxX = Math.max(Math.max(p1.getX(), p2.getX()), p3.getX());
-        float minY = Math.min(Math.min(p1.getY(), p2.getY()), p3.getY());
-        float maxY = Math.max(Math.max(p1.getY(), p2.getY()), p3.getY());
-        return (maxX < 0 || minX > width || maxY < 0 || minY > height);
+    // Кадры рендерятся по одному под этой блокировкой: вершинные стадии, порядок отрисовки, G-буфер
+    // и статистика общие для всех кадров (фоновый рендер и проверка SIMD-заливки)
+    static final Object FRAME_LOCK = new Object();
+
+    // Порядок отрисовки спереди назад, кэшируется между кадрами
+    private static final DrawOrder drawOrder = new DrawOrder();
+
+    // Вершинная стадия переиспользуется между кадрами, чтобы не выделять массивы заново
+    private static final Map<Model, VertexStage> vertexStages = new WeakHashMap<>();
+
+    private static synchronized VertexStage getVertexStage(Model mesh) {
+        return vertexStages.computeIfAbsent(mesh.getRenderSource(), m -> new VertexStage());
     }
 
-    // Перспективно-корректная глубина (если используем viewDepth > 0)
-    private static float perspectiveCorrectDepth(float z1, float z2, float z3,
-                                                 float a, float b, float c) {
-        float denom = a / z1 + b / z2 + c / z3;
-        if (Math.abs(denom) < 1e-12f) return Float.POSITIVE_INFINITY;
-        return 1.0f / denom;
+    // Рёбра для сетки строятся один раз на геометрию модели
+    private static final Map<Model, MeshEdges> meshEdges = new WeakHashMap<>();
+
+    private static synchronized MeshEdges getMeshEdges(Model mesh) {
+        MeshEdges edges = meshEdges.get(mesh.getRenderSource());
+        if (edges == null || !edges.matches(mesh)) {
+            edges = new MeshEdges(mesh);
+            meshEdges.put(mesh.getRenderSource(), edges);
+        }
+        return edges;
     }
 
+    private static boolean isVertexUsable(VertexStage stage, int index) {
+        return index >= 0 && index < stage.vertexCount && (stage.clipFlags[index] & VertexStage.INVALID) == 0;
+    }
 
-    // Face normal в world space (на случай битых вершинных нормалей)
-    private static Vector3f computeFaceNormalWorld(Vector3f w1, Vector3f w2, Vector3f w3) {
-        if (w1 == null || w2 == null || w3 == null) return new Vector3f(0, 1, 0);
-        Vector3f e1 = w2.subbed(w1);
-        Vector3f e2 = w3.subbed(w1);
-        Vector3f n = e1.crossed(e2);
-        if (n.len() < 1e-8f) return new Vector3f(0, 1, 0);
-        return n.normalized();
+    private static Point2f screenPoint(VertexStage vs, int i) {
+        return new Point2f(vs.screenX[i], vs.screenY[i]);
     }
 
-    // Трансформация нормали: inverse-transpose, без translation
-    private static Vector3f transformNormal(float[] normalMatrix, Matrix4f modelMatrix, Vector3f n) {
-        Vector3f nn = (n == null) ? new Vector3f(0, 1, 0) : n.normalized();
-
-        Vector3f out;
-        if (normalMatrix != null) {
-            float x = normalMatrix[0] * nn.getX() + normalMatrix[1] * nn.getY() + normalMatrix[2] * nn.getZ();
-            float y = normalMatrix[3] * nn.getX() + normalMatrix[4] * nn.getY() + normalMatrix[5] * nn.getZ();
-            float z = normalMatrix[6] * nn.getX() + normalMatrix[7] * nn.getY() + normalMatrix[8] * nn.getZ();
-            out = new Vector3f(x, y, z);
-        } else {
-            out = transformDirection(modelMatrix, nn);
-        }
+    private static Vector3f worldPosition(VertexStage vs, int i) {
+        return new Vector3f(vs.worldX[i], vs.worldY[i], vs.worldZ[i]);
+    }
 
-        if (out.len() < 1e-8f) return new Vector3f(0, 1, 0);
-        return out.normalized();
+    private static Vector3f worldNormal(VertexStage vs, int i) {
+        return new Vector3f(vs.normalX[i], vs.normalY[i], vs.normalZ[i]);
     }
 
-    // Умножение направления на верхнюю 3x3 без translation и без деления на w
-    private static Vector3f transformDirection(Matrix4f m, Vector3f v) {
-        float x = v.getX() * m.getValue(0, 0) + v.getY() * m.getValue(0, 1) + v.getZ() * m.getValue(0, 2);
-        float y = v.getX() * m.getValue(1, 0) + v.getY() * m.getValue(1, 1) + v.getZ() * m.getValue(1, 2);
-        float z = v.getX() * m.getValue(2, 0) + v.getY() * m.getValue(2, 1) + v.getZ() * m.getValue(2, 2);
-        return new Vector3f(x, y, z);
+    // Face normal в world space (на случай битых вершинных нормалей)
+    private static Vector3f computeFaceNormalWorld(VertexStage vs, int i1, int i2, int i3) {
+        float e1x = vs.worldX[i2] - vs.worldX[i1], e1y = vs.worldY[i2] - vs.worldY[i1], e1z = vs.worldZ[i2] - vs.worldZ[i1];
+        float e2x = vs.worldX[i3] - vs.worldX[i1], e2y = vs.worldY[i3] - vs.worldY[i1], e2z = vs.worldZ[i3] - vs.worldZ[i1];
+        Vector3f n = new Vector3f(
+                e1y * e2z - e1z * e2y,
+                e1z * e2x - e1x * e2z,
+                e1x * e2y - e1y * e2x
+        );
+        if (n.len() < 1e-8f) return new Vector3f(0, 1, 0);
+        return n.normalized();
     }
 
 }
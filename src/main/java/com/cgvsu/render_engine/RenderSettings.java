@@ -0,0 +1,104 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.sceneview.SceneManager;
+import com.cgvsu.service.ThemeSettings;
+
+/**
+ * Неизменяемая копия настроек рендера из SceneManager и ThemeSettings.
+ * Снимается в потоке JavaFX вместе с FrameSnapshot: статические поля меняются из GUI без синхронизации,
+ * и поток рендера с рабочими потоками тайлов читают не их, а копию кадра (current).
+ */
+final class RenderSettings {
+
+    // Настройки кадра, который сейчас рендерится (ставятся под RenderEngine.FRAME_LOCK)
+    private static volatile RenderSettings frame;
+
+    final boolean drawMesh;
+    final boolean useTexture;
+    final boolean useLight;
+    final float lightIntensity;
+    final boolean backFaceCulling;
+    final boolean clipFarPlane;
+    final boolean trilinearFiltering;
+    final boolean useSimdShading;
+    final boolean hierarchicalZ;
+    final boolean occlusionCulling;
+    final boolean frontToBack;
+    final boolean depthPrePass;
+    final boolean deferredShading;
+    final boolean useTileRendering;
+    final String wireframeColor;
+    final double wireframeWidth;
+
+    private RenderSettings(boolean useSimdShading) {
+        drawMesh = SceneManager.drawMesh;
+        useTexture = SceneManager.useTexture;
+        useLight = SceneManager.useLight;
+        lightIntensity = SceneManager.lightIntensity;
+        backFaceCulling = SceneManager.backFaceCulling;
+        clipFarPlane = SceneManager.clipFarPlane;
+        trilinearFiltering = SceneManager.trilinearFiltering;
+        this.useSimdShading = useSimdShading;
+        hierarchicalZ = SceneManager.hierarchicalZ;
+        occlusionCulling = SceneManager.occlusionCulling;
+        frontToBack = SceneManager.frontToBack;
+        depthPrePass = SceneManager.depthPrePass;
+        deferredShading = SceneManager.deferredShading;
+        useTileRendering = SceneManager.useTileRendering;
+        wireframeColor = ThemeSettings.wireframeColor;
+        wireframeWidth = ThemeSettings.wireframeWidth;
+    }
+
+    private RenderSettings(RenderSettings source, boolean useSimdShading) {
+        drawMesh = source.drawMesh;
+        useTexture = source.useTexture;
+        useLight = source.useLight;
+        lightIntensity = source.lightIntensity;
+        backFaceCulling = source.backFaceCulling;
+        clipFarPlane = source.clipFarPlane;
+        trilinearFiltering = source.trilinearFiltering;
+        this.useSimdShading = useSimdShading;
+        hierarchicalZ = source.hierarchicalZ;
+        occlusionCulling = source.occlusionCulling;
+        frontToBack = source.frontToBack;
+        depthPrePass = source.depthPrePass;
+        deferredShading = source.deferredShading;
+        useTileRendering = source.useTileRendering;
+        wireframeColor = source.wireframeColor;
+        wireframeWidth = source.wireframeWidth;
+    }
+
+    /**
+     * Снимает текущие настройки (вызывать в потоке JavaFX)
+     */
+    static RenderSettings capture() {
+        return new RenderSettings(SceneManager.useSimdShading);
+    }
+
+    /**
+     * Те же настройки с другим путём заливки
+     */
+    RenderSettings withSimdShading(boolean useSimdShading) {
+        return useSimdShading == this.useSimdShading ? this : new RenderSettings(this, useSimdShading);
+    }
+
+    /**
+     * Настройки рендерящегося кадра. Вне кадра (рендер вызван напрямую, например из тестов)
+     * настройки снимаются из SceneManager при каждом вызове.
+     */
+    static RenderSettings current() {
+        RenderSettings settings = frame;
+        return settings != null ? settings : capture();
+    }
+
+    /**
+     * Делает настройки текущими на время кадра, вызывать под RenderEngine.FRAME_LOCK и парно с end
+     */
+    static void begin(RenderSettings settings) {
+        frame = settings;
+    }
+
+    static void end() {
+        frame = null;
+    }
+}
@@ -0,0 +1,87 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.modelOperations.ZBuffer;
+
+/**
+ * Счётчики одного кадра.
+ * Кадр пишет в свой экземпляр (current) только в потоке рендера: модели и треугольники считаются
+ * на однопоточной стадии проекции, счётчики фрагментов забираются из z-буфера после растеризации.
+ * Готовый кадр публикуется (publish) и дальше не меняется, GUI читает его через getLast из своего потока.
+ */
+public final class RenderStatistics {
+
+    // Кадр, который сейчас рендерится (BackgroundRenderer под RenderEngine.FRAME_LOCK)
+    private static RenderStatistics current = new RenderStatistics();
+    // Последний отрендеренный кадр
+    private static volatile RenderStatistics last = new RenderStatistics();
+
+    // Модели, отброшенные целиком пирамидой видимости
+    int culledModels;
+    // Модели, целиком закрытые другими моделями (OcclusionCuller)
+    int occludedModels;
+    // Треугольники, отправленные в растеризатор
+    int submittedTriangles;
+    // Треугольники, отброшенные как задние грани
+    int culledBackFaces;
+    // Считались ли фрагменты: их считает иерархический Z-буфер, без него счётчики фрагментов пустые
+    boolean fragmentsCounted;
+    // Записанные фрагменты, которые затем перезаписал более близкий (перерисовка)
+    long overdrawnFragments;
+
+    /**
+     * Начинает новый кадр
+     */
+    static void begin() {
+        current = new RenderStatistics();
+    }
+
+    /**
+     * Счётчики рендерящегося кадра (вне BackgroundRenderer кадр не начинается и счётчики накапливаются)
+     */
+    static RenderStatistics current() {
+        return current;
+    }
+
+    /**
+     * Отдаёт счётчики кадра GUI, после этого они не меняются
+     */
+    static void publish() {
+        last = current;
+    }
+
+    /**
+     * Счётчики последнего отрендеренного кадра
+     */
+    public static RenderStatistics getLast() {
+        return last;
+    }
+
+    void collectFragments(ZBuffer zBuffer) {
+        fragmentsCounted = zBuffer.isHierarchyEnabled();
+        overdrawnFragments = zBuffer.getHierarchy().getOverdrawnFragments();
+    }
+
+    public int getCulledModels() {
+        return culledModels;
+    }
+
+    public int getOccludedModels() {
+        return occludedModels;
+    }
+
+    public int getSubmittedTriangles() {
+        return submittedTriangles;
+    }
+
+    public int getCulledBackFaces() {
+        return culledBackFaces;
+    }
+
+    public boolean isFragmentsCounted() {
+        return fragmentsCounted;
+    }
+
+    public long getOverdrawnFragments() {
+        return overdrawnFragments;
+    }
+}
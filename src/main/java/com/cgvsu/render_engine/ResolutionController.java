@@ -0,0 +1,63 @@
+package com.cgvsu.render_engine;
+
+/**
+ * Выбирает внутреннее разрешение кадров, пока камера движется: масштаб 1, 2 или 4 (во сколько раз
+ * кадр меньше канваса по каждой оси), при котором время кадра укладывается в бюджет.
+ * Время кадра на каждом масштабе - скользящее среднее измерений BackgroundRenderer. Для масштаба без измерений
+ * оно оценивается по ближайшему измеренному: стоимость кадра считается пропорциональной числу пикселей.
+ */
+public final class ResolutionController {
+
+    // Допустимые масштабы от полного разрешения к самому грубому
+    static final int[] SCALES = {1, 2, 4};
+    // Вес нового измерения в скользящем среднем
+    private static final double SMOOTHING = 0.3;
+
+    // Среднее время кадра на каждом масштабе в наносекундах, 0 - ещё не измерено
+    private final double[] averageNanos = new double[SCALES.length];
+
+    /**
+     * Учитывает время отрендеренного кадра (вызывается в потоке рендера)
+     * @param scale масштаб кадра
+     * @param nanos время рендера
+     */
+    synchronized void record(int scale, long nanos) {
+        int index = indexOf(scale);
+        averageNanos[index] = averageNanos[index] == 0
+                ? nanos
+                : averageNanos[index] + SMOOTHING * (nanos - averageNanos[index]);
+    }
+
+    /**
+     * Самое высокое разрешение, которое по оценке укладывается в бюджет, иначе самое грубое
+     * @param budgetMillis бюджет времени кадра
+     */
+    public synchronized int chooseScale(float budgetMillis) {
+        final double budgetNanos = budgetMillis * 1e6;
+        for (int i = 0; i < SCALES.length; i++) {
+            if (estimate(i) <= budgetNanos) {
+                return SCALES[i];
+            }
+        }
+        return SCALES[SCALES.length - 1];
+    }
+
+    // Оценка по ближайшему измеренному масштабу, 0 - измерений ещё нет
+    private double estimate(int index) {
+        for (int distance = 0; distance < SCALES.length; distance++) {
+            for (int measured : new int[]{index - distance, index + distance}) {
+                if (measured < 0 || measured >= SCALES.length || averageNanos[measured] == 0) continue;
+                double ratio = (double) SCALES[measured] / SCALES[index];
+                return averageNanos[measured] * ratio * ratio;
+            }
+        }
+        return 0;
+    }
+
+    private static int indexOf(int scale) {
+        for (int i = 0; i < SCALES.length; i++) {
+            if (SCALES[i] == scale) return i;
+        }
+        throw new IllegalArgumentException("Unsupported scale: " + scale);
+    }
+}
@@ -0,0 +1,53 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.math.vectors.Vector2f;
+import com.cgvsu.math.vectors.Vector3f;
+import com.cgvsu.modelOperations.Texture;
+
+/**
+ * Спроецированный на экран треугольник со всеми данными, нужными для его растеризации.
+ * Сами вершины хранятся в VertexStage, треугольник хранит только их индексы.
+ * Строится в RenderEngine один раз и затем может растеризоваться как целиком, так и по тайлам.
+ */
+final class ScreenTriangle {
+    // Рёбра треугольника в маске Clipper.TriangleConsumer
+    static final int EDGE_12 = 1;
+    static final int EDGE_23 = 2;
+    static final int EDGE_31 = 4;
+
+    // Результат вершинной стадии модели и индексы вершин треугольника в нём
+    VertexStage vertices;
+    int i1, i2, i3;
+    // Текстурные координаты углов (могут быть null)
+    Vector2f t1, t2, t3;
+    // Нормаль грани в world space, используется если у вершин битые нормали
+    Vector3f faceNormalWorld;
+
+    // Общие для всей модели данные
+    Texture texture;
+    ShaderProgram program;
+    // Положение камеры кадра, источник света освещения
+    Vector3f eye;
+    // Сетка модели (null, если сетку не рисуем)
+    WireframeRenderer.ModelWireframe wireframe;
+
+    float minX() {
+        float[] x = vertices.screenX;
+        return Math.min(Math.min(x[i1], x[i2]), x[i3]);
+    }
+
+    float maxX() {
+        float[] x = vertices.screenX;
+        return Math.max(Math.max(x[i1], x[i2]), x[i3]);
+    }
+
+    float minY() {
+        float[] y = vertices.screenY;
+        return Math.min(Math.min(y[i1], y[i2]), y[i3]);
+    }
+
+    float maxY() {
+        float[] y = vertices.screenY;
+        return Math.max(Math.max(y[i1], y[i2]), y[i3]);
+    }
+}
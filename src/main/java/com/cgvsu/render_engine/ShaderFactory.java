@@ -0,0 +1,181 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.modelOperations.Texture;
+import com.cgvsu.modelOperations.TextureMapping;
+import com.cgvsu.modelOperations.Varyings;
+import javafx.scene.paint.Color;
+
+import java.util.function.Supplier;
+
+/**
+ * Фабрика шейдеров. Для каждой комбинации сетки, текстуры и освещения есть своя программа
+ * со своим классом фрагментного шейдера, так что в горячем цикле вызывается один мономорфный shade без ветвлений
+ * по режимам. Новый режим отрисовки - это новый FragmentShader и строчка в select, Rasterization не меняется.
+ */
+final class ShaderFactory {
+
+    private static final int WHITE = 0xFFFFFFFF;
+    private static final int BASE_ARGB = Framebuffer.toArgb(Color.GREEN);
+
+    // Стандартная вершинная стадия
+    static final VertexShader TRANSFORM = VertexStage::process;
+
+    // Программы по индексу (wireframe, textured, lit)
+    private static final ShaderProgram[] PROGRAMS = new ShaderProgram[8];
+
+    static {
+        for (int mode = 0; mode < PROGRAMS.length; mode++) {
+            boolean wireframe = (mode & 1) != 0;
+            boolean textured = (mode & 2) != 0;
+            boolean lit = (mode & 4) != 0;
+            PROGRAMS[mode] = new ShaderProgram(TRANSFORM, fragmentShader(wireframe, textured, lit), wireframe, textured, lit);
+        }
+    }
+
+    private ShaderFactory() {
+    }
+
+    /**
+     * Программа для режима отрисовки
+     * @param wireframe рисовать сетку
+     * @param textured накладывать текстуру (у модели она должна быть)
+     * @param lit считать освещение
+     */
+    static ShaderProgram select(boolean wireframe, boolean textured, boolean lit) {
+        return PROGRAMS[(wireframe ? 1 : 0) | (textured ? 2 : 0) | (lit ? 4 : 0)];
+    }
+
+    // Только сетка без текстуры и света - заливки нет
+    private static Supplier<FragmentShader> fragmentShader(boolean wireframe, boolean textured, boolean lit) {
+        if (textured) {
+            return lit ? TextureLitShader::new : TextureShader::new;
+        }
+        if (lit) {
+            return ColorLitShader::new;
+        }
+        return wireframe ? null : ColorShader::new;
+    }
+
+    /**
+     * Сплошной цвет
+     */
+    private static final class ColorShader implements FragmentShader {
+        @Override
+        public void bind(ScreenTriangle triangle) {
+        }
+
+        @Override
+        public int shade(Varyings in) {
+            return BASE_ARGB;
+        }
+    }
+
+    /**
+     * Сплошной цвет с освещением
+     */
+    private static final class ColorLitShader implements FragmentShader {
+        private final Lighting lighting = new Lighting();
+
+        @Override
+        public void bind(ScreenTriangle triangle) {
+            lighting.bind(triangle);
+        }
+
+        @Override
+        public int shade(Varyings in) {
+            return lighting.apply(in, BASE_ARGB);
+        }
+    }
+
+    /**
+     * Текстура (мип-уровень по производным uv, если они есть)
+     */
+    private static final class TextureShader implements FragmentShader {
+        private final TextureSampler sampler = new TextureSampler();
+
+        @Override
+        public void bind(ScreenTriangle triangle) {
+            sampler.bind(triangle);
+        }
+
+        @Override
+        public int shade(Varyings in) {
+            return sampler.sample(in);
+        }
+    }
+
+    /**
+     * Текстура с освещением
+     */
+    private static final class TextureLitShader implements FragmentShader {
+        private final TextureSampler sampler = new TextureSampler();
+        private final Lighting lighting = new Lighting();
+
+        @Override
+        public void bind(ScreenTriangle triangle) {
+            sampler.bind(triangle);
+            lighting.bind(triangle);
+        }
+
+        @Override
+        public int shade(Varyings in) {
+            return lighting.apply(in, sampler.sample(in));
+        }
+    }
+
+    /**
+     * Выборка из текстуры треугольника
+     */
+    private static final class TextureSampler {
+        private Texture texture;
+        private TextureLod lod;
+        private boolean trilinear;
+
+        void bind(ScreenTriangle triangle) {
+            final VertexStage vs = triangle.vertices;
+            texture = triangle.texture;
+            lod = TextureLod.create(vs, triangle.i1, triangle.i2, triangle.i3,
+                    triangle.t1, triangle.t2, triangle.t3, texture);
+            trilinear = RenderSettings.current().trilinearFiltering;
+        }
+
+        int sample(Varyings in) {
+            if (!in.hasTexCoord) return WHITE;
+            if (lod != null) {
+                return TextureMapping.getTextureArgb(texture, in.u, in.v, lod.lod(in.x, in.y), trilinear);
+            }
+            return TextureMapping.getTextureArgb(texture, in.u, in.v);
+        }
+    }
+
+    /**
+     * Освещение ambient + diffuse с источником в камере
+     */
+    private static final class Lighting {
+        private float faceX, faceY, faceZ;
+        private float eyeX, eyeY, eyeZ;
+        private float intensity;
+
+        void bind(ScreenTriangle triangle) {
+            faceX = triangle.faceNormalWorld.getX();
+            faceY = triangle.faceNormalWorld.getY();
+            faceZ = triangle.faceNormalWorld.getZ();
+            eyeX = triangle.eye.getX();
+            eyeY = triangle.eye.getY();
+            eyeZ = triangle.eye.getZ();
+            intensity = RenderSettings.current().lightIntensity;
+        }
+
+        int apply(Varyings in, int argb) {
+            // Нормали уже в world space после вершинной стадии, битую заменяем нормалью грани
+            float nx = in.worldNormalX, ny = in.worldNormalY, nz = in.worldNormalZ;
+            if (nx * nx + ny * ny + nz * nz < 1e-12f) {
+                nx = faceX;
+                ny = faceY;
+                nz = faceZ;
+            }
+            return TextureMapping.getModifiedArgbWithLighting(nx, ny, nz, in.worldX, in.worldY, in.worldZ,
+                    eyeX, eyeY, eyeZ, argb, intensity);
+        }
+    }
+}
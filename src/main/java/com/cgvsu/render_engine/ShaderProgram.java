@@ -0,0 +1,36 @@
+package com.cgvsu.render_engine;
+
+import java.util.function.Supplier;
+
+/**
+ * Набор шейдеров для одного режима отрисовки (сетка / текстура / освещение).
+ * Выбирается один раз на модель в ShaderFactory, поэтому в цикле по пикселям нет проверок флагов SceneManager.
+ */
+final class ShaderProgram {
+
+    final VertexShader vertexShader;
+    // Заливать ли треугольники и рисовать ли сетку поверх
+    final boolean fill;
+    final boolean wireframe;
+    final boolean textured;
+    final boolean lit;
+
+    private final ThreadLocal<FragmentShader> fragmentShaders;
+
+    ShaderProgram(VertexShader vertexShader, Supplier<FragmentShader> fragmentShader,
+                  boolean wireframe, boolean textured, boolean lit) {
+        this.vertexShader = vertexShader;
+        this.fill = fragmentShader != null;
+        this.wireframe = wireframe;
+        this.textured = textured;
+        this.lit = lit;
+        this.fragmentShaders = fragmentShader != null ? ThreadLocal.withInitial(fragmentShader) : null;
+    }
+
+    /**
+     * Фрагментный шейдер текущего потока (null, если заливки нет)
+     */
+    FragmentShader fragmentShader() {
+        return fragmentShaders != null ? fragmentShaders.get() : null;
+    }
+}
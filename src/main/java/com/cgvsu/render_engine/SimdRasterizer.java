@@ -0,0 +1,387 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.math.point.Point2f;
+import com.cgvsu.math.vectors.Vector2f;
+import com.cgvsu.math.vectors.Vector3f;
+import com.cgvsu.modelOperations.Rasterization;
+import com.cgvsu.modelOperations.Texture;
+import com.cgvsu.modelOperations.ZBuffer;
+import javafx.scene.paint.Color;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Заливка треугольника на JDK Vector API.
+ * Строка треугольника обходится блоками по LANES пикселей (8 для AVX2, 16 для AVX-512). Рёберные функции целые,
+ * как в Rasterization, и шагаются по пикселям сложением. Если все пиксели блока строго внутри треугольника,
+ * перспективно-корректная интерполяция и освещение считаются сразу для всего блока. Блоки на рёбрах и хвост строки считаются скалярно по тем же формулам.
+ * Z-тест и выборка из текстуры остаются поэлементными (это gather по памяти).
+ * Глубина в блоке и в скалярном пути считается одними и теми же операциями, что и в Rasterization,
+ * поэтому проходы FillPass.DEPTH и FillPass.SHADE получают одну и ту же глубину пикселя.
+ * Класс ссылается на модуль jdk.incubator.vector, поэтому загружается только через SimdShading,
+ * когда модуль доступен.
+ */
+final class SimdRasterizer {
+
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    static final int LANES = FLOATS.length();
+
+    private static final FloatVector ONE = FloatVector.broadcast(FLOATS, 1f);
+
+    private static final int WHITE = 0xFFFFFFFF;
+
+    private SimdRasterizer() {
+    }
+
+    /**
+     * То же, что заливка RenderEngine, но блоками по LANES пикселей
+     */
+    static TriangleFill prepare(final ScreenTriangle triangle, final ZBuffer zBuffer, final Framebuffer framebuffer,
+                                final FillPass pass) {
+        return new TriangleSetup(triangle, zBuffer, framebuffer, pass);
+    }
+
+    /**
+     * Все константы треугольника и буферы одного блока. Создаётся на один треугольник.
+     */
+    private static final class TriangleSetup implements TriangleFill {
+        final ScreenTriangle triangle;
+        final ZBuffer zBuffer;
+        final FillPass fillPass;
+        final int[] pixels;
+        final int stride;
+
+        // Рёберные функции w = a * x + b * y + c в фиксированной точке, внутренность при w > 0
+        long a1, b1, c1, a2, b2, c2, a3, b3, c3;
+        float invArea;
+        boolean topLeft1, topLeft2, topLeft3;
+        boolean degenerate;
+
+        // Атрибуты вершин, заранее поделённые на глубину
+        final float iz1, iz2, iz3;
+        final float wx1, wy1, wz1, wx2, wy2, wz2, wx3, wy3, wz3;
+        final float nx1, ny1, nz1, nx2, ny2, nz2, nx3, ny3, nz3;
+        final float u1, v1, u2, v2, u3, v3;
+
+        // Шейдинг
+        final boolean textured;
+        final boolean hasTex;
+        final boolean partialTex;
+        final Texture texture;
+        final TextureLod lod;
+        final boolean trilinear;
+        final int baseArgb;
+        final boolean useLight;
+        final float k;
+        final float camX, camY, camZ;
+        final float faceX, faceY, faceZ;
+
+        // Буферы одного блока
+        final float[] w1Lanes = new float[LANES];
+        final float[] w2Lanes = new float[LANES];
+        final float[] w3Lanes = new float[LANES];
+        final float[] depthLanes = new float[LANES];
+        final float[] uLanes = new float[LANES];
+        final float[] vLanes = new float[LANES];
+        final int[] colorLanes = new int[LANES];
+        final boolean[] passLanes = new boolean[LANES];
+
+        TriangleSetup(ScreenTriangle triangle, ZBuffer zBuffer, Framebuffer framebuffer, FillPass fillPass) {
+            this.triangle = triangle;
+            this.zBuffer = zBuffer;
+            this.fillPass = fillPass;
+            this.pixels = framebuffer.getPixels();
+            this.stride = framebuffer.getWidth();
+
+            final VertexStage vs = triangle.vertices;
+            final int i1 = triangle.i1, i2 = triangle.i2, i3 = triangle.i3;
+            final long x1 = Rasterization.toFixed(vs.screenX[i1]), y1 = Rasterization.toFixed(vs.screenY[i1]);
+            final long x2 = Rasterization.toFixed(vs.screenX[i2]), y2 = Rasterization.toFixed(vs.screenY[i2]);
+            final long x3 = Rasterization.toFixed(vs.screenX[i3]), y3 = Rasterization.toFixed(vs.screenY[i3]);
+
+            // Та же постановка, что в Rasterization.rasterizeTriangleCore
+            a1 = y2 - y3;
+            b1 = x3 - x2;
+            a2 = y3 - y1;
+            b2 = x1 - x3;
+            a3 = y1 - y2;
+            b3 = x2 - x1;
+            c1 = -(a1 * x3 + b1 * y3);
+            c2 = -(a2 * x3 + b2 * y3);
+            c3 = -(a3 * x1 + b3 * y1);
+            long area = a1 * x1 + b1 * y1 + c1;
+            degenerate = area == 0;
+            if (area < 0) {
+                area = -area;
+                a1 = -a1; b1 = -b1; c1 = -c1;
+                a2 = -a2; b2 = -b2; c2 = -c2;
+                a3 = -a3; b3 = -b3; c3 = -c3;
+            }
+            invArea = 1.0f / area;
+            topLeft1 = a1 > 0 || (a1 == 0 && b1 > 0);
+            topLeft2 = a2 > 0 || (a2 == 0 && b2 > 0);
+            topLeft3 = a3 > 0 || (a3 == 0 && b3 > 0);
+
+            iz1 = 1.0f / vs.viewDepth[i1];
+            iz2 = 1.0f / vs.viewDepth[i2];
+            iz3 = 1.0f / vs.viewDepth[i3];
+
+            wx1 = vs.worldX[i1] * iz1; wy1 = vs.worldY[i1] * iz1; wz1 = vs.worldZ[i1] * iz1;
+            wx2 = vs.worldX[i2] * iz2; wy2 = vs.worldY[i2] * iz2; wz2 = vs.worldZ[i2] * iz2;
+            wx3 = vs.worldX[i3] * iz3; wy3 = vs.worldY[i3] * iz3; wz3 = vs.worldZ[i3] * iz3;
+
+            nx1 = vs.normalX[i1] * iz1; ny1 = vs.normalY[i1] * iz1; nz1 = vs.normalZ[i1] * iz1;
+            nx2 = vs.normalX[i2] * iz2; ny2 = vs.normalY[i2] * iz2; nz2 = vs.normalZ[i2] * iz2;
+            nx3 = vs.normalX[i3] * iz3; ny3 = vs.normalY[i3] * iz3; nz3 = vs.normalZ[i3] * iz3;
+
+            final Vector2f t1 = triangle.t1, t2 = triangle.t2, t3 = triangle.t3;
+            hasTex = t1 != null && t2 != null && t3 != null;
+            partialTex = !hasTex && !(t1 == null && t2 == null && t3 == null);
+            u1 = hasTex ? t1.getX() * iz1 : 0; v1 = hasTex ? t1.getY() * iz1 : 0;
+            u2 = hasTex ? t2.getX() * iz2 : 0; v2 = hasTex ? t2.getY() * iz2 : 0;
+            u3 = hasTex ? t3.getX() * iz3 : 0; v3 = hasTex ? t3.getY() * iz3 : 0;
+
+            textured = triangle.program.textured;
+            texture = triangle.texture;
+            lod = textured && fillPass != FillPass.DEPTH ? TextureLod.create(vs, i1, i2, i3, t1, t2, t3, texture) : null;
+            final RenderSettings settings = RenderSettings.current();
+            trilinear = settings.trilinearFiltering;
+            baseArgb = Framebuffer.toArgb(Color.GREEN);
+
+            useLight = triangle.program.lit;
+            k = Math.max(0f, Math.min(1f, settings.lightIntensity));
+            Vector3f cameraPos = triangle.eye;
+            camX = cameraPos.getX();
+            camY = cameraPos.getY();
+            camZ = cameraPos.getZ();
+            faceX = triangle.faceNormalWorld.getX();
+            faceY = triangle.faceNormalWorld.getY();
+            faceZ = triangle.faceNormalWorld.getZ();
+        }
+
+        @Override
+        public void rasterize(int clipMinX, int clipMinY, int clipMaxX, int clipMaxY) {
+            if (degenerate) return;
+
+            final VertexStage vs = triangle.vertices;
+            int[] bbox = Rasterization.getBoundingBox(
+                    new Point2f(vs.screenX[triangle.i1], vs.screenY[triangle.i1]),
+                    new Point2f(vs.screenX[triangle.i2], vs.screenY[triangle.i2]),
+                    new Point2f(vs.screenX[triangle.i3], vs.screenY[triangle.i3]),
+                    clipMinX, clipMinY, clipMaxX, clipMaxY);
+            final int minX = bbox[0], minY = bbox[1], maxX = bbox[2], maxY = bbox[3];
+            if (minX > maxX || minY > maxY) return;
+
+            final int sub = Rasterization.SUBPIXEL_BITS;
+            final long dx1 = a1 << sub, dx2 = a2 << sub, dx3 = a3 << sub;
+            final long dy1 = b1 << sub, dy2 = b2 << sub, dy3 = b3 << sub;
+            long row1 = a1 * ((long) minX << sub) + b1 * ((long) minY << sub) + c1;
+            long row2 = a2 * ((long) minX << sub) + b2 * ((long) minY << sub) + c2;
+            long row3 = a3 * ((long) minX << sub) + b3 * ((long) minY << sub) + c3;
+
+            for (int y = minY; y <= maxY; y++, row1 += dy1, row2 += dy2, row3 += dy3) {
+                long w1 = row1, w2 = row2, w3 = row3;
+                int x = minX;
+                for (; x + LANES - 1 <= maxX; x += LANES) {
+                    // Значения блока шагаются так же, как в скалярном пути; знак при переводе во float сохраняется
+                    final long blockW1 = w1, blockW2 = w2, blockW3 = w3;
+                    for (int lane = 0; lane < LANES; lane++, w1 += dx1, w2 += dx2, w3 += dx3) {
+                        w1Lanes[lane] = w1;
+                        w2Lanes[lane] = w2;
+                        w3Lanes[lane] = w3;
+                    }
+                    FloatVector lanes1 = FloatVector.fromArray(FLOATS, w1Lanes, 0);
+                    FloatVector lanes2 = FloatVector.fromArray(FLOATS, w2Lanes, 0);
+                    FloatVector lanes3 = FloatVector.fromArray(FLOATS, w3Lanes, 0);
+                    VectorMask<Float> inside = lanes1.compare(VectorOperators.GT, 0f)
+                            .and(lanes2.compare(VectorOperators.GT, 0f))
+                            .and(lanes3.compare(VectorOperators.GT, 0f));
+                    if (inside.allTrue()) {
+                        shadeBlock(x, y, lanes1, lanes2);
+                    } else if (inside.anyTrue() || mayTouchEdge(lanes1, lanes2, lanes3)) {
+                        long e1 = blockW1, e2 = blockW2, e3 = blockW3;
+                        for (int lane = 0; lane < LANES; lane++, e1 += dx1, e2 += dx2, e3 += dx3) {
+                            shadeScalar(x + lane, y, e1, e2, e3);
+                        }
+                    }
+                }
+                // Хвост строки
+                for (; x <= maxX; x++, w1 += dx1, w2 += dx2, w3 += dx3) {
+                    shadeScalar(x, y, w1, w2, w3);
+                }
+            }
+        }
+
+        // Пиксели ровно на ребре (w == 0) могут принадлежать треугольнику по правилу top-left
+        private boolean mayTouchEdge(FloatVector w1, FloatVector w2, FloatVector w3) {
+            return w1.compare(VectorOperators.GE, 0f)
+                    .and(w2.compare(VectorOperators.GE, 0f))
+                    .and(w3.compare(VectorOperators.GE, 0f))
+                    .anyTrue();
+        }
+
+        private void shadeBlock(int x, int y, FloatVector w1, FloatVector w2) {
+            FloatVector alpha = w1.mul(invArea);
+            FloatVector beta = w2.mul(invArea);
+            FloatVector gamma = ONE.sub(alpha).sub(beta);
+
+            FloatVector iz = alpha.mul(iz1).add(beta.mul(iz2)).add(gamma.mul(iz3));
+            FloatVector zView = ONE.div(iz);
+            zView.intoArray(depthLanes, 0);
+
+            int passed = 0;
+            for (int lane = 0; lane < LANES; lane++) {
+                float depth = depthLanes[lane];
+                boolean pass = Float.isFinite(depth) && depthTest(x + lane, y, depth);
+                passLanes[lane] = pass;
+                if (pass) passed++;
+            }
+            if (passed == 0 || fillPass == FillPass.DEPTH) return;
+
+            // Базовый цвет
+            if (textured) {
+                if (hasTex) {
+                    interpolate(alpha, beta, gamma, zView, u1, u2, u3).intoArray(uLanes, 0);
+                    interpolate(alpha, beta, gamma, zView, v1, v2, v3).intoArray(vLanes, 0);
+                }
+                for (int lane = 0; lane < LANES; lane++) {
+                    if (!passLanes[lane]) continue;
+                    colorLanes[lane] = sampleTexture(x + lane, y,
+                            hasTex ? uLanes[lane] : 0, hasTex ? vLanes[lane] : 0);
+                }
+            } else {
+                for (int lane = 0; lane < LANES; lane++) {
+                    colorLanes[lane] = baseArgb;
+                }
+            }
+
+            if (useLight) {
+                // Нормаль
+                FloatVector nx = interpolate(alpha, beta, gamma, zView, nx1, nx2, nx3);
+                FloatVector ny = interpolate(alpha, beta, gamma, zView, ny1, ny2, ny3);
+                FloatVector nz = interpolate(alpha, beta, gamma, zView, nz1, nz2, nz3);
+                FloatVector len = nx.mul(nx).add(ny.mul(ny)).add(nz.mul(nz)).sqrt();
+                VectorMask<Float> normalizable = len.compare(VectorOperators.GT, Vector3f.EPS);
+                FloatVector safeLen = len.blend(1f, normalizable.not());
+                nx = nx.div(safeLen);
+                ny = ny.div(safeLen);
+                nz = nz.div(safeLen);
+                // Битая нормаль - берём нормаль грани
+                VectorMask<Float> broken = len.compare(VectorOperators.LT, 1e-6f);
+                nx = nx.blend(faceX, broken);
+                ny = ny.blend(faceY, broken);
+                nz = nz.blend(faceZ, broken);
+
+                // Луч к камере (источник света в камере)
+                FloatVector rx = interpolate(alpha, beta, gamma, zView, wx1, wx2, wx3).neg().add(camX);
+                FloatVector ry = interpolate(alpha, beta, gamma, zView, wy1, wy2, wy3).neg().add(camY);
+                FloatVector rz = interpolate(alpha, beta, gamma, zView, wz1, wz2, wz3).neg().add(camZ);
+                FloatVector rayLen = rx.mul(rx).add(ry.mul(ry)).add(rz.mul(rz)).sqrt();
+                FloatVector safeRayLen = rayLen.blend(1f, rayLen.compare(VectorOperators.GT, Vector3f.EPS).not());
+
+                FloatVector l = nx.mul(rx).add(ny.mul(ry)).add(nz.mul(rz)).div(safeRayLen).max(0f);
+                FloatVector intensity = l.mul(k).add(1f - k);
+
+                IntVector color = IntVector.fromArray(INTS, colorLanes, 0);
+                IntVector r = scaleChannel(color, 16, intensity);
+                IntVector g = scaleChannel(color, 8, intensity);
+                IntVector b = scaleChannel(color, 0, intensity);
+                color.and(0xFF000000)
+                        .or(r.lanewise(VectorOperators.LSHL, 16))
+                        .or(g.lanewise(VectorOperators.LSHL, 8))
+                        .or(b)
+                        .intoArray(colorLanes, 0);
+            }
+
+            final int rowOffset = y * stride + x;
+            for (int lane = 0; lane < LANES; lane++) {
+                if (passLanes[lane]) {
+                    pixels[rowOffset + lane] = colorLanes[lane];
+                }
+            }
+        }
+
+        private static FloatVector interpolate(FloatVector alpha, FloatVector beta, FloatVector gamma,
+                                               FloatVector zView, float a1, float a2, float a3) {
+            return alpha.mul(a1).add(beta.mul(a2)).add(gamma.mul(a3)).mul(zView);
+        }
+
+        // min(255, round(channel * intensity))
+        private static IntVector scaleChannel(IntVector color, int shift, FloatVector intensity) {
+            IntVector channel = color.lanewise(VectorOperators.ASHR, shift).and(0xFF);
+            FloatVector scaled = ((FloatVector) channel.convert(VectorOperators.I2F, 0)).mul(intensity).add(0.5f);
+            return ((IntVector) scaled.convert(VectorOperators.F2I, 0)).min(255);
+        }
+
+        // Скалярный путь для пикселей на рёбрах: те же формулы, что и в блоке
+        private void shadeScalar(int x, int y, long w1, long w2, long w3) {
+            if (w1 < 0 || w2 < 0 || w3 < 0) return;
+            if ((w1 == 0 && !topLeft1) || (w2 == 0 && !topLeft2) || (w3 == 0 && !topLeft3)) return;
+
+            final float alpha = w1 * invArea;
+            final float beta = w2 * invArea;
+            final float gamma = 1.0f - alpha - beta;
+            final float zView = 1.0f / (alpha * iz1 + beta * iz2 + gamma * iz3);
+            if (!Float.isFinite(zView) || !depthTest(x, y, zView) || fillPass == FillPass.DEPTH) return;
+
+            int argb;
+            if (textured) {
+                float u = hasTex ? (alpha * u1 + beta * u2 + gamma * u3) * zView : 0;
+                float v = hasTex ? (alpha * v1 + beta * v2 + gamma * v3) * zView : 0;
+                argb = sampleTexture(x, y, u, v);
+            } else {
+                argb = baseArgb;
+            }
+
+            if (useLight) {
+                float nx = (alpha * nx1 + beta * nx2 + gamma * nx3) * zView;
+                float ny = (alpha * ny1 + beta * ny2 + gamma * ny3) * zView;
+                float nz = (alpha * nz1 + beta * nz2 + gamma * nz3) * zView;
+                float len = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+                if (len > Vector3f.EPS) {
+                    nx /= len;
+                    ny /= len;
+                    nz /= len;
+                }
+                if (len < 1e-6f) {
+                    nx = faceX;
+                    ny = faceY;
+                    nz = faceZ;
+                }
+
+                float rx = camX - (alpha * wx1 + beta * wx2 + gamma * wx3) * zView;
+                float ry = camY - (alpha * wy1 + beta * wy2 + gamma * wy3) * zView;
+                float rz = camZ - (alpha * wz1 + beta * wz2 + gamma * wz3) * zView;
+                float rayLen = (float) Math.sqrt(rx * rx + ry * ry + rz * rz);
+                if (!(rayLen > Vector3f.EPS)) rayLen = 1f;
+
+                float l = Math.max(0f, (nx * rx + ny * ry + nz * rz) / rayLen);
+                float intensity = (1f - k) + k * l;
+
+                int r = Math.min(255, (int) (((argb >> 16) & 0xFF) * intensity + 0.5f));
+                int g = Math.min(255, (int) (((argb >> 8) & 0xFF) * intensity + 0.5f));
+                int b = Math.min(255, (int) ((argb & 0xFF) * intensity + 0.5f));
+                argb = (argb & 0xFF000000) | (r << 16) | (g << 8) | b;
+            }
+
+            pixels[y * stride + x] = argb;
+        }
+
+        // В проходе SHADE глубина только сравнивается с записанной проходом DEPTH
+        private boolean depthTest(int x, int y, float depth) {
+            return fillPass == FillPass.SHADE ? zBuffer.testEqual(x, y, depth) : zBuffer.testAndSet(x, y, depth);
+        }
+
+        private int sampleTexture(int x, int y, float u, float v) {
+            if (texture == null || !(hasTex || partialTex)) return WHITE;
+            if (lod != null) {
+                return texture.sample(u, v, lod.lod(x, y), trilinear);
+            }
+            return texture.sample(u, v);
+        }
+    }
+}
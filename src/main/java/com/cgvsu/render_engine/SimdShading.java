@@ -0,0 +1,116 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.model.Model;
+import com.cgvsu.modelOperations.ZBuffer;
+import javafx.scene.paint.Color;
+
+import java.util.List;
+
+/**
+ * Векторный (SIMD) путь заливки треугольников на JDK Vector API.
+ * Модуль jdk.incubator.vector инкубаторный и подключается только флагом JVM --add-modules jdk.incubator.vector,
+ * поэтому путь включается во время работы и только если модуль действительно загружен.
+ * Сам векторный код лежит в SimdRasterizer, этот класс на Vector API не ссылается.
+ */
+public final class SimdShading {
+
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+    private static Boolean available;
+
+    private SimdShading() {
+    }
+
+    /**
+     * Загружен ли модуль Vector API
+     */
+    public static synchronized boolean isAvailable() {
+        if (available == null) {
+            try {
+                available = ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent();
+            } catch (RuntimeException | LinkageError e) {
+                available = false;
+            }
+        }
+        return available;
+    }
+
+    /**
+     * Включён ли векторный путь в настройках кадра и доступен ли он
+     */
+    static boolean isEnabled() {
+        return RenderSettings.current().useSimdShading && isAvailable();
+    }
+
+    /**
+     * Сколько пикселей обрабатывается за раз (0, если Vector API недоступен)
+     */
+    public static int getLaneCount() {
+        return isAvailable() ? SimdRasterizer.LANES : 0;
+    }
+
+    /**
+     * Рендерит сцену скалярным и векторным путём и сравнивает кадры попиксельно.
+     * Рендерит два полных кадра, поэтому GUI вызывает проверку через BackgroundRenderer.requestValidation
+     * @param tolerance допустимое отличие каждого канала цвета
+     * @return сколько пикселей отличаются больше чем на tolerance
+     * @throws IllegalStateException если Vector API недоступен
+     */
+    public static int validate(Camera camera, List<Model> models, int width, int height, int tolerance) {
+        return validate(camera, models, width, height, RenderSettings.capture(), tolerance);
+    }
+
+    /**
+     * Проверка на снимке сцены: сравниваются кадры с настройками снимка
+     */
+    static int validate(FrameSnapshot snapshot, int tolerance) {
+        return validate(snapshot.getCamera(), snapshot.getModels(), snapshot.getWidth(), snapshot.getHeight(),
+                snapshot.getSettings(), tolerance);
+    }
+
+    private static int validate(Camera camera, List<Model> models, int width, int height,
+                                RenderSettings settings, int tolerance) {
+        if (!isAvailable()) {
+            throw new IllegalStateException("Модуль " + VECTOR_MODULE + " не загружен");
+        }
+
+        // Настройки кадра общие для рабочих потоков, поэтому фоновый кадр не должен рендериться параллельно
+        synchronized (RenderEngine.FRAME_LOCK) {
+            int[] scalar = renderScene(camera, models, width, height, settings.withSimdShading(false));
+            int[] simd = renderScene(camera, models, width, height, settings.withSimdShading(true));
+
+            int mismatches = 0;
+            for (int i = 0; i < scalar.length; i++) {
+                if (channelDifference(scalar[i], simd[i]) > tolerance) {
+                    mismatches++;
+                }
+            }
+            return mismatches;
+        }
+    }
+
+    private static int[] renderScene(Camera camera, List<Model> models, int width, int height,
+                                     RenderSettings settings) {
+        Framebuffer framebuffer = new Framebuffer(width, height);
+        framebuffer.clear(Color.BLACK);
+        ZBuffer zBuffer = new ZBuffer(width, height);
+        RenderSettings.begin(settings);
+        try {
+            for (Model model : models) {
+                RenderEngine.renderWithRenderingMods(framebuffer, camera, model, width, height, zBuffer);
+            }
+        } finally {
+            RenderSettings.end();
+        }
+        return framebuffer.getPixels();
+    }
+
+    private static int channelDifference(int a, int b) {
+        int max = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            int diff = Math.abs(((a >> shift) & 0xFF) - ((b >> shift) & 0xFF));
+            if (diff > max) max = diff;
+        }
+        return max;
+    }
+}
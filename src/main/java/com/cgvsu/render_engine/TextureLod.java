@@ -0,0 +1,115 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.math.vectors.Vector2f;
+import com.cgvsu.modelOperations.Texture;
+
+/**
+ * Выбор мип-уровня по экранным производным текстурных координат.
+ * u/z, v/z и 1/z линейны в экранном пространстве, поэтому производные u и v по x и y считаются
+ * аналитически из плоскостей этих величин. Как и на GPU, уровень один на квадрат пикселей 2x2:
+ * производные берутся в центре квадрата, в который попал пиксель.
+ * Объект создаётся на один вызов растеризации треугольника и не потокобезопасен.
+ */
+final class TextureLod {
+
+    // Плоскости A(x, y) = a0 + ax * x + ay * y для 1/z, u/z и v/z
+    private final float q0, qx, qy;
+    private final float u0, ux, uy;
+    private final float v0, vx, vy;
+    private final float texWidth, texHeight;
+
+    // Последний посчитанный квадрат
+    private int cachedQuadX = Integer.MIN_VALUE;
+    private int cachedQuadY = Integer.MIN_VALUE;
+    private float cachedLod;
+
+    private TextureLod(float q0, float qx, float qy, float u0, float ux, float uy,
+                       float v0, float vx, float vy, float texWidth, float texHeight) {
+        this.q0 = q0;
+        this.qx = qx;
+        this.qy = qy;
+        this.u0 = u0;
+        this.ux = ux;
+        this.uy = uy;
+        this.v0 = v0;
+        this.vx = vx;
+        this.vy = vy;
+        this.texWidth = texWidth;
+        this.texHeight = texHeight;
+    }
+
+    /**
+     * @return объект для треугольника или null, если у треугольника нет текстурных координат или он вырожден
+     */
+    static TextureLod create(VertexStage vs, int i1, int i2, int i3,
+                             Vector2f t1, Vector2f t2, Vector2f t3, Texture texture) {
+        if (texture == null || t1 == null || t2 == null || t3 == null) return null;
+
+        final float x1 = vs.screenX[i1], y1 = vs.screenY[i1];
+        final float x2 = vs.screenX[i2], y2 = vs.screenY[i2];
+        final float x3 = vs.screenX[i3], y3 = vs.screenY[i3];
+        final float area = (x2 - x1) * (y3 - y1) - (x3 - x1) * (y2 - y1);
+        if (Math.abs(area) < 1e-10f) return null;
+        final float invArea = 1.0f / area;
+
+        final float iz1 = 1.0f / vs.viewDepth[i1];
+        final float iz2 = 1.0f / vs.viewDepth[i2];
+        final float iz3 = 1.0f / vs.viewDepth[i3];
+
+        float[] q = plane(x1, y1, x2, y2, x3, y3, iz1, iz2, iz3, invArea);
+        float[] u = plane(x1, y1, x2, y2, x3, y3, t1.getX() * iz1, t2.getX() * iz2, t3.getX() * iz3, invArea);
+        float[] v = plane(x1, y1, x2, y2, x3, y3, t1.getY() * iz1, t2.getY() * iz2, t3.getY() * iz3, invArea);
+
+        return new TextureLod(q[0], q[1], q[2], u[0], u[1], u[2], v[0], v[1], v[2],
+                texture.getWidth(), texture.getHeight());
+    }
+
+    // Плоскость через три точки (xi, yi, ai): {a0, ax, ay}
+    private static float[] plane(float x1, float y1, float x2, float y2, float x3, float y3,
+                                 float a1, float a2, float a3, float invArea) {
+        float ax = ((a2 - a1) * (y3 - y1) - (a3 - a1) * (y2 - y1)) * invArea;
+        float ay = ((a3 - a1) * (x2 - x1) - (a2 - a1) * (x3 - x1)) * invArea;
+        return new float[]{a1 - ax * x1 - ay * y1, ax, ay};
+    }
+
+    /**
+     * Уровень детализации для пикселя: log2 числа текселей нулевого уровня на пиксель экрана
+     */
+    float lod(int x, int y) {
+        int quadX = x >> 1;
+        int quadY = y >> 1;
+        if (quadX == cachedQuadX && quadY == cachedQuadY) {
+            return cachedLod;
+        }
+
+        // Центр квадрата 2x2 (пиксели берутся в целых координатах)
+        float px = (quadX << 1) + 0.5f;
+        float py = (quadY << 1) + 0.5f;
+        float iq = 1.0f / (q0 + qx * px + qy * py);
+        float u = (u0 + ux * px + uy * py) * iq;
+        float v = (v0 + vx * px + vy * py) * iq;
+
+        // d(A/q) = (dA - (A/q) * dq) / q
+        float dudx = (ux - u * qx) * iq * texWidth;
+        float dvdx = (vx - v * qx) * iq * texHeight;
+        float dudy = (uy - u * qy) * iq * texWidth;
+        float dvdy = (vy - v * qy) * iq * texHeight;
+        float rho2 = Math.max(dudx * dudx + dvdx * dvdx, dudy * dudy + dvdy * dvdy);
+
+        cachedQuadX = quadX;
+        cachedQuadY = quadY;
+        cachedLod = 0.5f * fastLog2(rho2);
+        return cachedLod;
+    }
+
+    // Приближённый log2 по битам float (погрешность меньше 0.09, для выбора уровня достаточно)
+    private static float fastLog2(float value) {
+        if (!(value > 0) || Float.isInfinite(value)) {
+            return value > 0 ? Float.MAX_VALUE : -Float.MAX_VALUE;
+        }
+        int bits = Float.floatToRawIntBits(value);
+        int exponent = ((bits >>> 23) & 0xFF) - 127;
+        float mantissa = Float.intBitsToFloat((bits & 0x007FFFFF) | 0x3F800000);
+        return exponent + (mantissa - 1.0f);
+    }
+}
@@ -0,0 +1,150 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.model.Model;
+import com.cgvsu.modelOperations.DepthHierarchy;
+import com.cgvsu.modelOperations.ZBuffer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Тайловый многопоточный рендер.
+ * Все треугольники сцены сначала проецируются на экран и раскладываются по тайлам (корзинам) размера TILE_SIZE,
+ * после чего тайлы растеризуются параллельно в ForkJoinPool. Каждый тайл пишет только в свой прямоугольник
+ * z-буфера и Framebuffer, поэтому никаких блокировок не нужно.
+ */
+public class TileRenderer {
+
+    // Равен блоку иерархического Z-буфера, чтобы блоки не делились между потоками
+    public static final int TILE_SIZE = DepthHierarchy.BLOCK_SIZE;
+
+    static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Рендерит все модели сцены по тайлам в framebuffer (фон должен быть уже очищен)
+     * @param framebuffer буфер цветов кадра
+     * @param camera камера, относительно которой рендерим кадр
+     * @param models модели сцены
+     * @param zBuffer общий z-буфер кадра того же размера, что и framebuffer
+     */
+    public static void render(
+            final Framebuffer framebuffer,
+            final Camera camera,
+            final List<Model> models,
+            final ZBuffer zBuffer) {
+
+        final int width = framebuffer.getWidth();
+        final int height = framebuffer.getHeight();
+
+        // 1) Проецируем все треугольники всех моделей (в том же порядке, что и в последовательном рендере)
+        ArrayList<ScreenTriangle> triangles = new ArrayList<>();
+        RenderEngine.projectScene(camera, models, width, height, triangles);
+
+        // 2) Раскладываем треугольники по тайлам
+        final int tilesX = (width + TILE_SIZE - 1) / TILE_SIZE;
+        final int tilesY = (height + TILE_SIZE - 1) / TILE_SIZE;
+        final ArrayList<ArrayList<ScreenTriangle>> bins = binTriangles(triangles, tilesX, tilesY, width, height);
+
+        // 3) Растеризуем тайлы параллельно
+        POOL.invoke(new TileTask(bins, 0, bins.size(), tilesX, width, height, zBuffer, framebuffer));
+
+        // 4) Сетка рисуется после заливки одним проходом: линии тонкие и плохо ложатся на тайлы
+        WireframeRenderer.draw(triangles, zBuffer, framebuffer);
+        RenderStatistics.current().collectFragments(zBuffer);
+    }
+
+    private static ArrayList<ArrayList<ScreenTriangle>> binTriangles(
+            List<ScreenTriangle> triangles, int tilesX, int tilesY, int width, int height) {
+
+        ArrayList<ArrayList<ScreenTriangle>> bins = new ArrayList<>(tilesX * tilesY);
+        for (int i = 0; i < tilesX * tilesY; i++) {
+            bins.add(null);
+        }
+
+        for (ScreenTriangle triangle : triangles) {
+            if (!triangle.program.fill) continue;
+
+            int minX = Math.max(0, (int) Math.floor(triangle.minX()));
+            int minY = Math.max(0, (int) Math.floor(triangle.minY()));
+            int maxX = Math.min(width - 1, (int) Math.ceil(triangle.maxX()));
+            int maxY = Math.min(height - 1, (int) Math.ceil(triangle.maxY()));
+            if (minX > maxX || minY > maxY) continue;
+
+            for (int ty = minY / TILE_SIZE; ty <= maxY / TILE_SIZE; ty++) {
+                for (int tx = minX / TILE_SIZE; tx <= maxX / TILE_SIZE; tx++) {
+                    int tileIndex = ty * tilesX + tx;
+                    ArrayList<ScreenTriangle> bin = bins.get(tileIndex);
+                    if (bin == null) {
+                        bin = new ArrayList<>();
+                        bins.set(tileIndex, bin);
+                    }
+                    bin.add(triangle);
+                }
+            }
+        }
+        return bins;
+    }
+
+    /**
+     * Задача на диапазон тайлов [from, to). Делит диапазон пополам, пока не останется один тайл.
+     */
+    private static class TileTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<ArrayList<ScreenTriangle>> bins;
+        private final int from;
+        private final int to;
+        private final int tilesX;
+        private final int width;
+        private final int height;
+        private final ZBuffer zBuffer;
+        private final Framebuffer framebuffer;
+
+        TileTask(List<ArrayList<ScreenTriangle>> bins, int from, int to, int tilesX,
+                 int width, int height, ZBuffer zBuffer, Framebuffer framebuffer) {
+            this.bins = bins;
+            this.from = from;
+            this.to = to;
+            this.tilesX = tilesX;
+            this.width = width;
+            this.height = height;
+            this.zBuffer = zBuffer;
+            this.framebuffer = framebuffer;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(
+                        new TileTask(bins, from, mid, tilesX, width, height, zBuffer, framebuffer),
+                        new TileTask(bins, mid, to, tilesX, width, height, zBuffer, framebuffer)
+                );
+                return;
+            }
+
+            ArrayList<ScreenTriangle> bin = bins.get(from);
+            if (bin == null) return;
+
+            int tileMinX = (from % tilesX) * TILE_SIZE;
+            int tileMinY = (from / tilesX) * TILE_SIZE;
+            int tileMaxX = Math.min(tileMinX + TILE_SIZE, width) - 1;
+            int tileMaxY = Math.min(tileMinY + TILE_SIZE, height) - 1;
+
+            FillPass shadePass = FillPass.FULL;
+            if (RenderSettings.current().depthPrePass) {
+                for (ScreenTriangle triangle : bin) {
+                    RenderEngine.rasterizeFill(triangle, zBuffer, framebuffer,
+                            tileMinX, tileMinY, tileMaxX, tileMaxY, FillPass.DEPTH);
+                }
+                shadePass = FillPass.SHADE;
+            }
+            for (ScreenTriangle triangle : bin) {
+                RenderEngine.rasterizeFill(triangle, zBuffer, framebuffer,
+                        tileMinX, tileMinY, tileMaxX, tileMaxY, shadePass);
+            }
+        }
+    }
+}
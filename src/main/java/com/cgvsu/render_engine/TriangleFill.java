@@ -0,0 +1,13 @@
+package com.cgvsu.render_engine;
+
+/**
+ * Заливка треугольника, подготовленная один раз (шейдер, константы треугольника).
+ * rasterize можно вызывать несколько раз для разных прямоугольников, например для незакрытых участков
+ * иерархического Z-буфера.
+ */
+interface TriangleFill {
+    /**
+     * Растеризует часть треугольника внутри прямоугольника (включительно)
+     */
+    void rasterize(int clipMinX, int clipMinY, int clipMaxX, int clipMaxY);
+}
@@ -0,0 +1,10 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.model.Model;
+
+/**
+ * Вершинный шейдер: переводит все вершины модели в VertexStage (clip space, экран, мировые позиции и нормали)
+ */
+interface VertexShader {
+    void process(VertexStage stage, Camera camera, Model mesh, int width, int height);
+}
@@ -0,0 +1,301 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.math.matrixs.Matrix4f;
+import com.cgvsu.model.Model;
+import com.cgvsu.model.VertexList;
+
+import java.util.Arrays;
+
+import static com.cgvsu.math.matrixs.Matrix4f.buildNormalMatrix3x3;
+import static com.cgvsu.render_engine.GraphicConveyor.rotateScaleTranslate;
+
+/**
+ * Вершинная стадия конвейера.
+ * Каждая вершина модели трансформируется ровно один раз за кадр, результат складывается в примитивные массивы.
+ * Дальше треугольники только индексируют эти массивы через Model.polygons, поэтому вершина,
+ * общая для шести треугольников, больше не трансформируется шесть раз.
+ * Массивы переиспользуются между кадрами и растут только при увеличении числа вершин.
+ */
+public class VertexStage {
+
+    // Флаги отсечения вершины
+    public static final int CLIP_NEAR = 1;  // за near-плоскостью
+    public static final int CLIP_FAR = 2;   // за far-плоскостью
+    public static final int INVALID = 4;    // нет позиции или значения не конечны
+
+    // Мировая позиция (для освещения)
+    public float[] worldX = new float[0];
+    public float[] worldY = new float[0];
+    public float[] worldZ = new float[0];
+
+    // Координаты в clip space (до деления на w)
+    public float[] clipX = new float[0];
+    public float[] clipY = new float[0];
+    public float[] clipZ = new float[0];
+    public float[] clipW = new float[0];
+
+    // Положительная глубина вдоль направления взгляда, меньше = ближе
+    public float[] viewDepth = new float[0];
+
+    // Экранные координаты
+    public float[] screenX = new float[0];
+    public float[] screenY = new float[0];
+
+    // Нормаль в world space (нормализованная, нулевая если у вершины нет нормали)
+    public float[] normalX = new float[0];
+    public float[] normalY = new float[0];
+    public float[] normalZ = new float[0];
+
+    // Флаги CLIP_NEAR, CLIP_FAR, INVALID. Экранные координаты имеют смысл только у вершин без CLIP_NEAR и INVALID
+    public int[] clipFlags = new int[0];
+
+    // Число вершин модели
+    public int vertexCount;
+    // Общее число вершин вместе с добавленными при отсечении (они идут после вершин модели)
+    public int size;
+
+    private int width;
+    private int height;
+
+    /**
+     * Трансформирует все вершины модели для текущего кадра
+     * @param camera камера, относительно которой рендерим кадр
+     * @param mesh модель
+     * @param width ширина экрана
+     * @param height высота экрана
+     */
+    public void process(final Camera camera, final Model mesh, final int width, final int height) {
+        Matrix4f modelMatrix = rotateScaleTranslate(mesh.currentTransform);
+
+        Matrix4f viewMatrix = camera.getViewMatrix();
+        Matrix4f projectionMatrix = camera.getProjectionMatrix();
+
+        Matrix4f modelViewMatrix = new Matrix4f(viewMatrix.getMatrix());
+        modelViewMatrix.multiply(modelMatrix);
+
+        // Нормаль-матрица (inverse-transpose верхней 3x3 modelMatrix)
+        float[] normalMatrix = buildNormalMatrix3x3(modelMatrix);
+        if (normalMatrix == null) {
+            normalMatrix = new float[]{
+                    modelMatrix.getValue(0, 0), modelMatrix.getValue(0, 1), modelMatrix.getValue(0, 2),
+                    modelMatrix.getValue(1, 0), modelMatrix.getValue(1, 1), modelMatrix.getValue(1, 2),
+                    modelMatrix.getValue(2, 0), modelMatrix.getValue(2, 1), modelMatrix.getValue(2, 2)
+            };
+        }
+
+        // Разворачиваем матрицы в локальные переменные, чтобы не дёргать getValue в цикле
+        final float m00 = modelMatrix.getValue(0, 0), m01 = modelMatrix.getValue(0, 1), m02 = modelMatrix.getValue(0, 2), m03 = modelMatrix.getValue(0, 3);
+        final float m10 = modelMatrix.getValue(1, 0), m11 = modelMatrix.getValue(1, 1), m12 = modelMatrix.getValue(1, 2), m13 = modelMatrix.getValue(1, 3);
+        final float m20 = modelMatrix.getValue(2, 0), m21 = modelMatrix.getValue(2, 1), m22 = modelMatrix.getValue(2, 2), m23 = modelMatrix.getValue(2, 3);
+
+        final float v00 = modelViewMatrix.getValue(0, 0), v01 = modelViewMatrix.getValue(0, 1), v02 = modelViewMatrix.getValue(0, 2), v03 = modelViewMatrix.getValue(0, 3);
+        final float v10 = modelViewMatrix.getValue(1, 0), v11 = modelViewMatrix.getValue(1, 1), v12 = modelViewMatrix.getValue(1, 2), v13 = modelViewMatrix.getValue(1, 3);
+        final float v20 = modelViewMatrix.getValue(2, 0), v21 = modelViewMatrix.getValue(2, 1), v22 = modelViewMatrix.getValue(2, 2), v23 = modelViewMatrix.getValue(2, 3);
+
+        final float p00 = projectionMatrix.getValue(0, 0), p01 = projectionMatrix.getValue(0, 1), p02 = projectionMatrix.getValue(0, 2), p03 = projectionMatrix.getValue(0, 3);
+        final float p10 = projectionMatrix.getValue(1, 0), p11 = projectionMatrix.getValue(1, 1), p12 = projectionMatrix.getValue(1, 2), p13 = projectionMatrix.getValue(1, 3);
+        final float p20 = projectionMatrix.getValue(2, 0), p21 = projectionMatrix.getValue(2, 1), p22 = projectionMatrix.getValue(2, 2), p23 = projectionMatrix.getValue(2, 3);
+        final float p30 = projectionMatrix.getValue(3, 0), p31 = projectionMatrix.getValue(3, 1), p32 = projectionMatrix.getValue(3, 2), p33 = projectionMatrix.getValue(3, 3);
+
+        final float[] nm = normalMatrix;
+
+        final VertexList vertices = VertexList.of(mesh.vertices);
+        final int n = vertices.size();
+        ensureCapacity(n);
+        vertexCount = n;
+        size = n;
+        this.width = width;
+        this.height = height;
+
+        for (int i = 0; i < n; i++) {
+            if (!vertices.hasPosition(i)) {
+                clipFlags[i] = INVALID;
+                continue;
+            }
+
+            float x = vertices.getX(i);
+            float y = vertices.getY(i);
+            float z = vertices.getZ(i);
+
+            // world pos
+            worldX[i] = m00 * x + m01 * y + m02 * z + m03;
+            worldY[i] = m10 * x + m11 * y + m12 * z + m13;
+            worldZ[i] = m20 * x + m21 * y + m22 * z + m23;
+
+            // view pos
+            float vx = v00 * x + v01 * y + v02 * z + v03;
+            float vy = v10 * x + v11 * y + v12 * z + v13;
+            float vz = v20 * x + v21 * y + v22 * z + v23;
+
+            // clip space
+            float cx = p00 * vx + p01 * vy + p02 * vz + p03;
+            float cy = p10 * vx + p11 * vy + p12 * vz + p13;
+            float cz = p20 * vx + p21 * vy + p22 * vz + p23;
+            float cw = p30 * vx + p31 * vy + p32 * vz + p33;
+            clipX[i] = cx;
+            clipY[i] = cy;
+            clipZ[i] = cz;
+            clipW[i] = cw;
+
+            // Видимый объём: -w <= z <= w
+            int flags = 0;
+            if (cz + cw < 0) flags |= CLIP_NEAR;
+            if (cw - cz < 0) flags |= CLIP_FAR;
+            if (!Float.isFinite(cx) || !Float.isFinite(cy) || !Float.isFinite(cz) || !Float.isFinite(cw)) {
+                flags |= INVALID;
+            }
+            clipFlags[i] = flags;
+
+            // w у перспективной матрицы равен глубине вдоль взгляда
+            viewDepth[i] = cw;
+            // Перед near-плоскостью w > 0, деление корректно (отсечение по far необязательно)
+            if ((flags & (CLIP_NEAR | INVALID)) == 0) {
+                projectToScreen(i);
+            }
+
+            // Нормаль сразу переводим в world space
+            if (!vertices.hasNormal(i)) {
+                normalX[i] = 0;
+                normalY[i] = 0;
+                normalZ[i] = 0;
+            } else {
+                float ox = vertices.getNormalX(i), oy = vertices.getNormalY(i), oz = vertices.getNormalZ(i);
+                float nx = nm[0] * ox + nm[1] * oy + nm[2] * oz;
+                float ny = nm[3] * ox + nm[4] * oy + nm[5] * oz;
+                float nz = nm[6] * ox + nm[7] * oy + nm[8] * oz;
+                float len = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+                if (len > 1e-8f) {
+                    nx /= len;
+                    ny /= len;
+                    nz /= len;
+                }
+                normalX[i] = nx;
+                normalY[i] = ny;
+                normalZ[i] = nz;
+            }
+        }
+    }
+
+    /**
+     * Добавляет вершину на отрезке между вершинами a и b, заданную параметром t в clip space.
+     * В clip space все атрибуты интерполируются линейно, экранные координаты получаются делением на w.
+     * Вершина a или b может лежать за near-плоскостью, новая вершина должна лежать перед ней.
+     * @return индекс новой вершины
+     */
+    public int addClipSpaceVertex(int a, int b, float t) {
+        int index = size;
+        ensureCapacity(index + 1);
+        size++;
+
+        float ta = 1 - t;
+        clipX[index] = clipX[a] * ta + clipX[b] * t;
+        clipY[index] = clipY[a] * ta + clipY[b] * t;
+        clipZ[index] = clipZ[a] * ta + clipZ[b] * t;
+        clipW[index] = clipW[a] * ta + clipW[b] * t;
+        viewDepth[index] = clipW[index];
+        worldX[index] = worldX[a] * ta + worldX[b] * t;
+        worldY[index] = worldY[a] * ta + worldY[b] * t;
+        worldZ[index] = worldZ[a] * ta + worldZ[b] * t;
+        setInterpolatedNormal(index, a, b, ta, t);
+        clipFlags[index] = 0;
+        projectToScreen(index);
+        return index;
+    }
+
+    /**
+     * Добавляет вершину на отрезке между вершинами a и b, заданную параметром t в экранном пространстве.
+     * Экранные координаты интерполируются линейно, а все остальные атрибуты перспективно-корректно через 1/z,
+     * поэтому новая вершина лежит ровно на исходном ребре треугольника.
+     * @return индекс новой вершины
+     */
+    public int addScreenSpaceVertex(int a, int b, float t) {
+        int index = size;
+        ensureCapacity(index + 1);
+        size++;
+
+        float iza = 1.0f / viewDepth[a];
+        float izb = 1.0f / viewDepth[b];
+        float iz = iza + (izb - iza) * t;
+        float depth = 1.0f / iz;
+        float ta = (1 - t) * iza * depth;
+        float tb = t * izb * depth;
+
+        screenX[index] = screenX[a] + (screenX[b] - screenX[a]) * t;
+        screenY[index] = screenY[a] + (screenY[b] - screenY[a]) * t;
+        clipX[index] = clipX[a] * ta + clipX[b] * tb;
+        clipY[index] = clipY[a] * ta + clipY[b] * tb;
+        clipZ[index] = clipZ[a] * ta + clipZ[b] * tb;
+        clipW[index] = clipW[a] * ta + clipW[b] * tb;
+        viewDepth[index] = depth;
+        worldX[index] = worldX[a] * ta + worldX[b] * tb;
+        worldY[index] = worldY[a] * ta + worldY[b] * tb;
+        worldZ[index] = worldZ[a] * ta + worldZ[b] * tb;
+        setInterpolatedNormal(index, a, b, ta, tb);
+        clipFlags[index] = 0;
+        return index;
+    }
+
+    /**
+     * Доля перспективно-корректной интерполяции вершины b для точки с экранным параметром t на ребре a-b.
+     * Нужна, чтобы так же интерполировать атрибуты углов, которые хранятся вне VertexStage (текстурные координаты).
+     */
+    public float perspectiveWeight(int a, int b, float t) {
+        float iza = 1.0f / viewDepth[a];
+        float izb = 1.0f / viewDepth[b];
+        return t * izb / (iza + (izb - iza) * t);
+    }
+
+    private void projectToScreen(int i) {
+        screenX[i] = toScreenX(clipX[i], clipW[i]);
+        screenY[i] = toScreenY(clipY[i], clipW[i]);
+    }
+
+    // Перспективное деление и перевод в экранные координаты (то же, что и GraphicConveyor.vertexToPoint)
+    float toScreenX(float x, float w) {
+        if (Math.abs(w) >= Matrix4f.EPS) {
+            x /= w;
+        }
+        return (width - 1) * x / 2 + (width - 1) / 2;
+    }
+
+    float toScreenY(float y, float w) {
+        if (Math.abs(w) >= Matrix4f.EPS) {
+            y /= w;
+        }
+        return (1 - height) * y / 2 + (height - 1) / 2;
+    }
+
+    private void setInterpolatedNormal(int index, int a, int b, float ta, float tb) {
+        float nx = normalX[a] * ta + normalX[b] * tb;
+        float ny = normalY[a] * ta + normalY[b] * tb;
+        float nz = normalZ[a] * ta + normalZ[b] * tb;
+        float len = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+        if (len > 1e-8f) {
+            nx /= len;
+            ny /= len;
+            nz /= len;
+        }
+        normalX[index] = nx;
+        normalY[index] = ny;
+        normalZ[index] = nz;
+    }
+
+    private void ensureCapacity(int n) {
+        if (worldX.length >= n) return;
+        int capacity = Math.max(n, worldX.length + (worldX.length >> 1) + 16);
+        worldX = Arrays.copyOf(worldX, capacity);
+        worldY = Arrays.copyOf(worldY, capacity);
+        worldZ = Arrays.copyOf(worldZ, capacity);
+        clipX = Arrays.copyOf(clipX, capacity);
+        clipY = Arrays.copyOf(clipY, capacity);
+        clipZ = Arrays.copyOf(clipZ, capacity);
+        clipW = Arrays.copyOf(clipW, capacity);
+        viewDepth = Arrays.copyOf(viewDepth, capacity);
+        screenX = Arrays.copyOf(screenX, capacity);
+        screenY = Arrays.copyOf(screenY, capacity);
+        normalX = Arrays.copyOf(normalX, capacity);
+        normalY = Arrays.copyOf(normalY, capacity);
+        normalZ = Arrays.copyOf(normalZ, capacity);
+        clipFlags = Arrays.copyOf(clipFlags, capacity);
+    }
+}
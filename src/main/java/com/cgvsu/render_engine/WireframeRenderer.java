@@ -0,0 +1,183 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.math.point.Point2f;
+import com.cgvsu.modelOperations.Rasterization;
+import com.cgvsu.modelOperations.ZBuffer;
+import javafx.scene.paint.Color;
+
+import java.util.List;
+
+/**
+ * Сетка кадра поверх уже закрашенной геометрии. Рёбра каждой модели берутся из MeshEdges и рисуются
+ * ровно по одному разу, а не по разу на каждый из двух соседних треугольников.
+ * Рисуются только рёбра видимых полигонов - тех, от которых после отсечения и отбрасывания задних граней
+ * остался хоть один треугольник. Ребро, пересекающее near-плоскость (и far, если по ней отсекаем),
+ * обрезается в clip space, а вылезающее за защитную полосу экрана - на экране, как полигоны в Clipper.
+ * Цвет и толщина линий берутся из темы один раз за кадр. Толстые линии рисуются полосами
+ * (Rasterization.rasterizeThickLine), так что каждый пиксель ребра проходит Z-тест один раз.
+ */
+final class WireframeRenderer {
+
+    // Смещение линий к камере, чтобы они не тонули в своих же полигонах
+    private static final float DEPTH_BIAS = 0.0001f;
+    // С какой толщины скруглять концы рёбер: у более тонких линий щели в вершинах не видны,
+    // а скругления почти удваивают число пикселей на коротких рёбрах плотной сетки
+    private static final int ROUND_CAPS_MIN_WIDTH = 4;
+
+    /**
+     * Сетка одной модели в кадре: вершинная стадия, рёбра и полигоны, оставшиеся после отсечения
+     */
+    static final class ModelWireframe {
+        final VertexStage vertices;
+        final MeshEdges edges;
+        final boolean[] visiblePolygons;
+
+        ModelWireframe(VertexStage vertices, MeshEdges edges) {
+            this.vertices = vertices;
+            this.edges = edges;
+            this.visiblePolygons = new boolean[edges.polygonCount];
+        }
+    }
+
+    /**
+     * Рисует сетки всех моделей кадра
+     * @param triangles треугольники кадра, треугольники одной модели идут подряд
+     */
+    static void draw(List<ScreenTriangle> triangles, ZBuffer zBuffer, Framebuffer framebuffer) {
+        if (!hasWireframe(triangles)) return;
+
+        final RenderSettings settings = RenderSettings.current();
+        final int lineArgb = Framebuffer.toArgb(Color.web(settings.wireframeColor));
+        final int lineWidth = (int) settings.wireframeWidth;
+        final boolean clipFar = settings.clipFarPlane;
+
+        // testAndSet проверяет границы, так что после него можно писать без проверки
+        final int[] pixels = framebuffer.getPixels();
+        final int stride = framebuffer.getWidth();
+        final Rasterization.LinePixelCallback callback = (x, y, z) -> {
+            if (zBuffer.testAndSet(x, y, z)) {
+                pixels[y * stride + x] = lineArgb;
+            }
+        };
+
+        ModelWireframe previous = null;
+        for (ScreenTriangle triangle : triangles) {
+            final ModelWireframe wireframe = triangle.wireframe;
+            if (wireframe == null || wireframe == previous) continue;
+            previous = wireframe;
+            drawModel(wireframe, framebuffer.getWidth(), framebuffer.getHeight(), clipFar, lineWidth, callback);
+        }
+    }
+
+    private static boolean hasWireframe(List<ScreenTriangle> triangles) {
+        for (ScreenTriangle triangle : triangles) {
+            if (triangle.wireframe != null) return true;
+        }
+        return false;
+    }
+
+    private static void drawModel(ModelWireframe wireframe, int width, int height, boolean clipFar,
+                                  int lineWidth, Rasterization.LinePixelCallback callback) {
+        final MeshEdges edges = wireframe.edges;
+        final boolean[] drawn = new boolean[edges.edgeCount];
+        for (int polygon = 0; polygon < edges.polygonCount; polygon++) {
+            if (!wireframe.visiblePolygons[polygon]) continue;
+            for (int corner = edges.polygonStarts[polygon]; corner < edges.polygonEnds[polygon]; corner++) {
+                final int edge = edges.cornerEdges[corner];
+                if (edge == MeshEdges.NO_EDGE || drawn[edge]) continue;
+                drawn[edge] = true;
+                drawEdge(wireframe.vertices, edges.edgeA[edge], edges.edgeB[edge],
+                        width, height, clipFar, lineWidth, callback);
+            }
+        }
+    }
+
+    private static void drawEdge(VertexStage vs, int a, int b, int width, int height, boolean clipFar,
+                                 int lineWidth, Rasterization.LinePixelCallback callback) {
+        if (((vs.clipFlags[a] | vs.clipFlags[b]) & VertexStage.INVALID) != 0) return;
+
+        // 1) Отсечение в clip space: часть ребра [from, to] перед near-плоскостью (и перед far)
+        float from = 0, to = 1;
+        final float nearA = vs.clipZ[a] + vs.clipW[a];
+        final float nearB = vs.clipZ[b] + vs.clipW[b];
+        if (nearA < 0 && nearB < 0) return;
+        if (nearA < 0) from = nearA / (nearA - nearB);
+        if (nearB < 0) to = nearA / (nearA - nearB);
+        if (clipFar) {
+            final float farA = vs.clipW[a] - vs.clipZ[a];
+            final float farB = vs.clipW[b] - vs.clipZ[b];
+            if (farA < 0 && farB < 0) return;
+            if (farA < 0) from = Math.max(from, farA / (farA - farB));
+            if (farB < 0) to = Math.min(to, farA / (farA - farB));
+            if (from > to) return;
+        }
+
+        float x1, y1, z1, x2, y2, z2;
+        if (from == 0) {
+            x1 = vs.screenX[a];
+            y1 = vs.screenY[a];
+            z1 = vs.viewDepth[a];
+        } else {
+            final float w = lerp(vs.clipW[a], vs.clipW[b], from);
+            x1 = vs.toScreenX(lerp(vs.clipX[a], vs.clipX[b], from), w);
+            y1 = vs.toScreenY(lerp(vs.clipY[a], vs.clipY[b], from), w);
+            z1 = w;
+        }
+        if (to == 1) {
+            x2 = vs.screenX[b];
+            y2 = vs.screenY[b];
+            z2 = vs.viewDepth[b];
+        } else {
+            final float w = lerp(vs.clipW[a], vs.clipW[b], to);
+            x2 = vs.toScreenX(lerp(vs.clipX[a], vs.clipX[b], to), w);
+            y2 = vs.toScreenY(lerp(vs.clipY[a], vs.clipY[b], to), w);
+            z2 = w;
+        }
+
+        // 2) Отсечение по защитной полосе на экране (Лянг-Барски), глубина интерполируется через 1/z
+        final float dx = x2 - x1;
+        final float dy = y2 - y1;
+        final float[] range = {0, 1};
+        if (!clipRange(-dx, x1 + Clipper.GUARD_BAND, range)
+                || !clipRange(dx, width + Clipper.GUARD_BAND - x1, range)
+                || !clipRange(-dy, y1 + Clipper.GUARD_BAND, range)
+                || !clipRange(dy, height + Clipper.GUARD_BAND - y1, range)) {
+            return;
+        }
+        if (range[0] > 0 || range[1] < 1) {
+            final float iz1 = 1.0f / z1;
+            final float iz2 = 1.0f / z2;
+            final float start = range[0], end = range[1];
+            x2 = x1 + dx * end;
+            y2 = y1 + dy * end;
+            z2 = 1.0f / lerp(iz1, iz2, end);
+            x1 = x1 + dx * start;
+            y1 = y1 + dy * start;
+            z1 = 1.0f / lerp(iz1, iz2, start);
+        }
+
+        Rasterization.rasterizeThickLine(new Point2f(x1, y1), new Point2f(x2, y2),
+                z1 - DEPTH_BIAS, z2 - DEPTH_BIAS, lineWidth, lineWidth >= ROUND_CAPS_MIN_WIDTH, callback,
+                0, 0, width - 1, height - 1);
+    }
+
+    // Одна граница Лянга-Барски: оставляет в range часть отрезка, где p * t <= q
+    private static boolean clipRange(float p, float q, float[] range) {
+        if (p == 0) {
+            return q >= 0;
+        }
+        final float t = q / p;
+        if (p < 0) {
+            if (t > range[1]) return false;
+            if (t > range[0]) range[0] = t;
+        } else {
+            if (t < range[0]) return false;
+            if (t < range[1]) range[1] = t;
+        }
+        return true;
+    }
+
+    private static float lerp(float a, float b, float t) {
+        return a + (b - a) * t;
+    }
+}
@@ -0,0 +1,98 @@
+package com.cgvsu.sceneview;
+
+import javafx.animation.AnimationTimer;
+
+/**
+ * Планировщик кадров на импульсах AnimationTimer (вместо Timeline с фиксированным шагом).
+ * Сколько бы событий ни запросило кадр между импульсами, за импульс рендерится не больше одного кадра.
+ * Таймер работает, только пока есть запрошенный кадр, в простое нет ни рендера, ни импульсов.
+ * В режиме RenderMode.EVERY_FRAME кадр запрашивают сами изменения сцены: камера, модели и настройки
+ * вызывают SceneManager.markChanged, а тот - sceneChanged.
+ * Кадр можно запросить и на будущее (requestFrameAt): так кадр полного разрешения рендерится
+ * после остановки камеры, и таймер работает только до него.
+ */
+final class FrameScheduler {
+
+    private final Runnable render;
+
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            pulse();
+        }
+    };
+    private boolean running;
+
+    // Кадр запрошен явно или изменением сцены
+    private boolean dirty;
+    // Кадр, запрошенный на момент deferredAt (System.nanoTime)
+    private boolean deferred;
+    private long deferredAt;
+    // Рендерить каждое изменение сцены (RenderMode.EVERY_FRAME)
+    private boolean watching;
+
+    /**
+     * @param render рендерит кадр, вызывается в потоке JavaFX
+     */
+    FrameScheduler(Runnable render) {
+        this.render = render;
+    }
+
+    /**
+     * Запрашивает кадр на ближайшем импульсе
+     */
+    void requestFrame() {
+        dirty = true;
+        start();
+    }
+
+    /**
+     * Запрашивает кадр на первом импульсе не раньше момента time (System.nanoTime), заменяет прежний такой запрос
+     */
+    void requestFrameAt(long time) {
+        deferred = true;
+        deferredAt = time;
+        start();
+    }
+
+    /**
+     * Отметка об изменении сцены: в режиме слежения запрашивает кадр, иначе кадр рисуется только по запросу
+     */
+    void sceneChanged() {
+        if (watching) {
+            requestFrame();
+        }
+    }
+
+    /**
+     * Включает или выключает рендер каждого изменения сцены
+     */
+    void setWatching(boolean watching) {
+        this.watching = watching;
+        if (watching) {
+            requestFrame();
+        }
+    }
+
+    private void start() {
+        if (!running) {
+            running = true;
+            timer.start();
+        }
+    }
+
+    private void pulse() {
+        if (deferred && System.nanoTime() - deferredAt >= 0) {
+            deferred = false;
+            dirty = true;
+        }
+        if (dirty) {
+            dirty = false;
+            render.run();
+        }
+        if (!dirty && !deferred) {
+            running = false;
+            timer.stop();
+        }
+    }
+}
@@ -1,20 +1,20 @@
 package com.cgvsu.sceneview;
 
 import com.cgvsu.model.Vertex;
-import com.cgvsu.modelOperations.ZBuffer;
 import com.cgvsu.objreader.ObjReaderException;
 import com.cgvsu.objwriter.ObjWriter;
 import com.cgvsu.math.vectors.Vector3f;
+import com.cgvsu.render_engine.BackgroundRenderer;
 import com.cgvsu.render_engine.Camera;
+import com.cgvsu.render_engine.FrameSnapshot;
+import com.cgvsu.render_engine.Framebuffer;
 import com.cgvsu.render_engine.GraphicConveyor;
-import com.cgvsu.render_engine.RenderEngine;
+import com.cgvsu.render_engine.RenderStatistics;
+import com.cgvsu.render_engine.SimdShading;
 import com.cgvsu.service.ShortcutsSettings;
 import com.cgvsu.service.ThemeSettings;
 import javafx.beans.binding.Bindings;
 import javafx.fxml.FXML;
-import javafx.animation.Animation;
-import javafx.animation.KeyFrame;
-import javafx.animation.Timeline;
 import javafx.event.ActionEvent;
 import javafx.scene.Scene;
 import javafx.scene.canvas.Canvas;
@@ -31,7 +31,6 @@ import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
 import javafx.stage.Stage;
 import javafx.stage.FileChooser;
-import javafx.util.Duration;
 import javafx.scene.control.TextField;
 import javafx.scene.control.TextFormatter;
 
@@ -138,6 +137,8 @@ public class GuiController {
     @FXML
     private Button deleteTextureButton;
     @FXML
+    private CheckBox modelBackFaceCullingCheckBox;
+    @FXML
     private Button renderButton;
     @FXML
     private RadioMenuItem oneFrameMenuItem;
@@ -150,6 +151,26 @@ public class GuiController {
     @FXML
     private RadioMenuItem everyFrameMenuItem;
     @FXML
+    private CheckMenuItem tileRenderingMenuItem;
+    @FXML
+    private CheckMenuItem backFaceCullingMenuItem;
+    @FXML
+    private CheckMenuItem trilinearFilteringMenuItem;
+    @FXML
+    private CheckMenuItem simdShadingMenuItem;
+    @FXML
+    private CheckMenuItem hierarchicalZMenuItem;
+    @FXML
+    private CheckMenuItem occlusionCullingMenuItem;
+    @FXML
+    private CheckMenuItem frontToBackMenuItem;
+    @FXML
+    private CheckMenuItem depthPrePassMenuItem;
+    @FXML
+    private CheckMenuItem deferredShadingMenuItem;
+    @FXML
+    private CheckMenuItem progressiveRenderingMenuItem;
+    @FXML
     private AnchorPane logAnchorPane;
     @FXML
     private SplitPane canvasSplitPane;
@@ -179,7 +200,15 @@ public class GuiController {
 
     private RenderMode currentRenderMode;
 
-    private Timeline timeline;
+    private FrameScheduler frameScheduler; //Не больше одного кадра за импульс, в простое ничего не рендерит
+    private long lastCameraMotion = Long.MIN_VALUE; //Когда последний раз двигали камеру (System.nanoTime)
+
+    //Рендерит кадры в отдельном потоке и выводит готовые на канвас
+    private final BackgroundRenderer backgroundRenderer = new BackgroundRenderer(
+            frame -> frame.present(sceneCanvas.getGraphicsContext2D()),
+            exception -> logError("Ошибка рендера кадра: " + exception.getMessage()));
+
+    private static final int SIMD_TOLERANCE = 2; //Допустимое отличие канала цвета SIMD-заливки от скалярной
 
     private enum SaveVariant {
         ORIGINAL("Исходная модель"),
@@ -199,6 +228,8 @@ public class GuiController {
             );
             Model.defaultTexture = img;
             currentRenderMode = RenderMode.ONE_FRAME;
+            frameScheduler = new FrameScheduler(this::drawFrame);
+            SceneManager.setChangeListener(frameScheduler::sceneChanged);
             lightIntensityLabel.textProperty().bind(
                     Bindings.format(
                             "Интенсивность освещения: %.2f",
@@ -208,6 +239,7 @@ public class GuiController {
 
             lightIntensitySlider.valueProperty().addListener((obs, oldV, newV) -> {
                 SceneManager.lightIntensity = newV.floatValue();
+                SceneManager.markChanged();
                 if(currentRenderMode == RenderMode.EVERY_CAMERA_MOTION_FRAME ||
                         currentRenderMode == RenderMode.EVERY_TRANSFORM_FRAME ||
                         currentRenderMode == RenderMode.EVERY_CAMERA_MOTION_TRANSFORM_FRAME){
@@ -277,6 +309,8 @@ public class GuiController {
 
             sceneCanvas.widthProperty().bind(canvasParentAnchorPane.widthProperty());
             sceneCanvas.heightProperty().bind(canvasParentAnchorPane.heightProperty());
+            sceneCanvas.widthProperty().addListener((obs, oldVal, newVal) -> SceneManager.markChanged());
+            sceneCanvas.heightProperty().addListener((obs, oldVal, newVal) -> SceneManager.markChanged());
             deleteActiveEntityButton.setVisible(false);
             transformationTitledPane.setVisible(false);
             drawMeshCheckBox.setSelected(SceneManager.drawMesh);
@@ -296,22 +330,6 @@ public class GuiController {
                 SceneManager.useLight = newVal;
                 renderFrame();
             });
-
-
-
-
-            timeline = new Timeline();
-            timeline.setCycleCount(Animation.INDEFINITE);
-
-            KeyFrame frame = new KeyFrame(Duration.millis(30), e -> {
-                if (currentRenderMode == RenderMode.EVERY_FRAME) {
-                    renderFrame();
-                }
-            });
-
-
-            timeline.getKeyFrames().add(frame);
-            timeline.play();
         }
         catch(Exception exception){
             logError("Ошибка инициализации сцены");
@@ -319,28 +337,35 @@ public class GuiController {
         }
     }
 
+    //Запрашивает кадр: все запросы до ближайшего импульса дают один кадр
     private void renderFrame() {
+        frameScheduler.requestFrame();
+    }
+
+    private void drawFrame() {
         double width = sceneCanvas.getWidth();
         double height = sceneCanvas.getHeight();
+        if ((int) width <= 0 || (int) height <= 0) return;
 
-        var gc = sceneCanvas.getGraphicsContext2D();
-        gc.setFill(javafx.scene.paint.Color.web(ThemeSettings.canvasBackgroundColor));
-        gc.fillRect(0, 0, width, height);
         SceneManager.activeCamera.setAspectRatio((float) (width / height));
 
-        ZBuffer zBuffer = new ZBuffer((int) width, (int) height);
-        zBuffer.clear();
-        for (Model model : SceneManager.models) {
-
-            RenderEngine.renderWithRenderingMods(sceneCanvas.getGraphicsContext2D(), SceneManager.activeCamera, model, (int) width, (int) height, zBuffer);
-            //RenderEngine.render(sceneCanvas.getGraphicsContext2D(), SceneManager.activeCamera, model, (int) width, (int) height);
-
+        //Пока камера движется, разрешение подбирается под бюджет кадра, после остановки - полное
+        int scale = 1;
+        if (SceneManager.progressiveRendering && lastCameraMotion != Long.MIN_VALUE) {
+            long refineAt = lastCameraMotion + SceneManager.refineDelayMillis * 1_000_000L;
+            if (System.nanoTime() - refineAt < 0) {
+                scale = backgroundRenderer.getResolution().chooseScale(SceneManager.frameBudgetMillis);
+                if (scale > 1) {
+                    frameScheduler.requestFrameAt(refineAt);
+                }
+            }
         }
-        //ВАРИАНТ рендерить только активную модель
-        /*if (SceneManager.acti
-        veModel != null) {
-            RenderEngine.render(sceneCanvas.getGraphicsContext2D(), SceneManager.activeCamera, SceneManager.activeModel, (int) width, (int) height);
-        }*/
+
+        //Снимаем сцену и отдаём её потоку рендера, готовый кадр он выведет на канвас сам
+        FrameSnapshot snapshot = FrameSnapshot.capture(
+                SceneManager.activeCamera, SceneManager.models, (int) width, (int) height, scale,
+                Framebuffer.toArgb(javafx.scene.paint.Color.web(ThemeSettings.canvasBackgroundColor)));
+        backgroundRenderer.requestFrame(snapshot);
     }
 
     private void generateCameraButtons(){
@@ -380,6 +405,7 @@ public class GuiController {
                 for (Camera camera : SceneManager.cameras) {
                     if (camera.cameraName.equals("Начальная камера")) {
                         SceneManager.activeCamera = camera;
+                        SceneManager.markChanged();
                         break;
                     }
                 }
@@ -409,6 +435,7 @@ public class GuiController {
             String cameraName = button.getText();
             Camera targetCamera = SceneManager.cacheNameCameras.get(cameraName);
             SceneManager.activeCamera = targetCamera;
+            SceneManager.markChanged();
             if (activeCameraButton != null) {
                 activeCameraButton.setStyle(ThemeSettings.buttonStyle);
             }
@@ -489,18 +516,14 @@ public class GuiController {
     private void onLightThemeMenuItemClick() {
         ThemeSettings.setLightTheme();
         applyTheme();
-        if(currentRenderMode != RenderMode.EVERY_FRAME){
-            renderFrame();
-        }
+        renderFrame();
     }
 
     @FXML
     private void onDarkThemeMenuItemClick() {
         ThemeSettings.setDarkTheme();
         applyTheme();
-        if(currentRenderMode != RenderMode.EVERY_FRAME){
-            renderFrame();
-        }
+        renderFrame();
     }
 
     private void applyTheme() {
@@ -576,27 +599,113 @@ public class GuiController {
 
     @FXML private void oneFrameMenuItemClick(ActionEvent event){
         currentRenderMode = RenderMode.ONE_FRAME;
+        frameScheduler.setWatching(false);
         renderButton.setDisable(false);
     }
     @FXML private void transformFrameMenuItemClick(ActionEvent event){
         currentRenderMode = RenderMode.EVERY_TRANSFORM_FRAME;
+        frameScheduler.setWatching(false);
         renderFrame();
         renderButton.setDisable(true);
     }
     @FXML private void cameraFrameMenuItemClick(ActionEvent event){
         currentRenderMode = RenderMode.EVERY_CAMERA_MOTION_FRAME;
+        frameScheduler.setWatching(false);
         renderFrame();
         renderButton.setDisable(true);
     }
     @FXML private void cameraTransformFrameMenuItemClick(ActionEvent event){
         currentRenderMode = RenderMode.EVERY_CAMERA_MOTION_TRANSFORM_FRAME;
+        frameScheduler.setWatching(false);
         renderFrame();
         renderButton.setDisable(true);
     }
     @FXML private void everyFrameMenuItemClick(ActionEvent event){
         currentRenderMode = RenderMode.EVERY_FRAME;
+        frameScheduler.setWatching(true);
         renderButton.setDisable(true);
     }
+    @FXML private void tileRenderingMenuItemClick(ActionEvent event){
+        SceneManager.useTileRendering = tileRenderingMenuItem.isSelected();
+        renderFrame();
+    }
+    @FXML private void backFaceCullingMenuItemClick(ActionEvent event){
+        SceneManager.backFaceCulling = backFaceCullingMenuItem.isSelected();
+        renderFrame();
+    }
+    @FXML private void onModelBackFaceCullingCheckBoxClick(ActionEvent event){
+        if (SceneManager.activeModel == null) return;
+        SceneManager.activeModel.backFaceCulling = modelBackFaceCullingCheckBox.isIndeterminate()
+                ? null
+                : modelBackFaceCullingCheckBox.isSelected();
+        renderFrame();
+    }
+    @FXML private void trilinearFilteringMenuItemClick(ActionEvent event){
+        SceneManager.trilinearFiltering = trilinearFilteringMenuItem.isSelected();
+        renderFrame();
+    }
+    @FXML private void hierarchicalZMenuItemClick(ActionEvent event){
+        SceneManager.hierarchicalZ = hierarchicalZMenuItem.isSelected();
+        renderFrame();
+    }
+    @FXML private void occlusionCullingMenuItemClick(ActionEvent event){
+        SceneManager.occlusionCulling = occlusionCullingMenuItem.isSelected();
+        renderFrame();
+    }
+    @FXML private void frontToBackMenuItemClick(ActionEvent event){
+        SceneManager.frontToBack = frontToBackMenuItem.isSelected();
+        renderFrame();
+    }
+    @FXML private void depthPrePassMenuItemClick(ActionEvent event){
+        SceneManager.depthPrePass = depthPrePassMenuItem.isSelected();
+        renderFrame();
+    }
+    @FXML private void deferredShadingMenuItemClick(ActionEvent event){
+        SceneManager.deferredShading = deferredShadingMenuItem.isSelected();
+        renderFrame();
+    }
+    @FXML private void progressiveRenderingMenuItemClick(ActionEvent event){
+        SceneManager.progressiveRendering = progressiveRenderingMenuItem.isSelected();
+        renderFrame();
+    }
+    @FXML private void renderStatisticsMenuItemClick(ActionEvent event){
+        RenderStatistics statistics = RenderStatistics.getLast();
+        String fragments = statistics.isFragmentsCounted()
+                ? String.format("перерисовано фрагментов: %d", statistics.getOverdrawnFragments())
+                : "фрагменты считаются только с иерархическим Z-буфером";
+        logInfo(String.format("Кадр: треугольников %d, задних граней отброшено %d, моделей вне камеры %d, закрытых %d; %s",
+                statistics.getSubmittedTriangles(), statistics.getCulledBackFaces(),
+                statistics.getCulledModels(), statistics.getOccludedModels(), fragments));
+    }
+    @FXML private void simdShadingMenuItemClick(ActionEvent event){
+        if (!simdShadingMenuItem.isSelected()) {
+            SceneManager.useSimdShading = false;
+        } else if (!SimdShading.isAvailable()) {
+            simdShadingMenuItem.setSelected(false);
+            logError("Vector API недоступен: запустите JVM с флагом --add-modules jdk.incubator.vector");
+        } else {
+            // Прежде чем включить, сверяем векторный путь со скалярным на текущей сцене.
+            // Сверка рендерит два кадра, поэтому идёт в потоке рендера, а флаг ставится по её результату
+            int width = Math.max(1, (int) sceneCanvas.getWidth());
+            int height = Math.max(1, (int) sceneCanvas.getHeight());
+            FrameSnapshot snapshot = FrameSnapshot.capture(SceneManager.activeCamera, SceneManager.models,
+                    width, height, 1, Framebuffer.toArgb(javafx.scene.paint.Color.BLACK));
+            int allowed = width * height / 1000;
+            backgroundRenderer.requestValidation(snapshot, SIMD_TOLERANCE, mismatches -> {
+                if (!simdShadingMenuItem.isSelected()) return; //Пока шла сверка, SIMD выключили
+                if (mismatches <= allowed) {
+                    SceneManager.useSimdShading = true;
+                    logInfo(String.format("SIMD-заливка включена (%d линий), отличий от скалярной: %d пикс.",
+                            SimdShading.getLaneCount(), mismatches));
+                    renderFrame();
+                } else {
+                    simdShadingMenuItem.setSelected(false);
+                    logError(String.format("SIMD-заливка отличается от скалярной в %d пикс., оставлена скалярная", mismatches));
+                }
+            });
+        }
+        renderFrame();
+    }
 
     private Optional<SaveVariant> askSaveVariant() {
         ChoiceDialog<SaveVariant> dialog = new ChoiceDialog<>(
@@ -614,6 +723,7 @@ public class GuiController {
     private void onPositionXChanged() {
         if(SceneManager.activeModel != null){
             SceneManager.activeModel.currentTransform.positionX = parseFloat(positionXTextField);
+            SceneManager.markChanged();
             if(currentRenderMode == RenderMode.EVERY_TRANSFORM_FRAME ||
                     currentRenderMode == RenderMode.EVERY_CAMERA_MOTION_TRANSFORM_FRAME){
                 renderFrame();
@@ -626,6 +736,7 @@ public class GuiController {
     private void onPositionYChanged() {
         if(SceneManager.activeModel != null) {
             SceneManager.activeModel.currentTransform.positionY = parseFloat(positionYTextField);
+            SceneManager.markChanged();
             if(currentRenderMode == RenderMode.EVERY_TRANSFORM_FRAME ||
                     currentRenderMode == RenderMode.EVERY_CAMERA_MOTION_TRANSFORM_FRAME){
                 renderFrame();
@@ -637,6 +748,7 @@ public class GuiController {
     private void onPositionZChanged() {
         if(SceneManager.activeModel != null) {
             SceneManager.activeModel.currentTransform.positionZ = parseFloat(positionZTextField);
+            SceneManager.markChanged();
             if(currentRenderMode == RenderMode.EVERY_TRANSFORM_FRAME ||
                     currentRenderMode == RenderMode.EVERY_CAMERA_MOTION_TRANSFORM_FRAME){
                 renderFrame();
@@ -648,6 +760,7 @@ public class GuiController {
     private void onRotationXChanged() {
         if(SceneManager.activeModel != null) {
             SceneManager.activeModel.currentTransform.rotationX = parseFloat(rotationXTextField);
+            SceneManager.markChanged();
             if(currentRenderMode == RenderMode.EVERY_TRANSFORM_FRAME ||
                     currentRenderMode == RenderMode.EVERY_CAMERA_MOTION_TRANSFORM_FRAME){
                 renderFrame();
@@ -659,6 +772,7 @@ public class GuiController {
     private void onRotationYChanged() {
         if(SceneManager.activeModel != null) {
             SceneManager.activeModel.currentTransform.rotationY = parseFloat(rotationYTextField);
+            SceneManager.markChanged();
             if(currentRenderMode == RenderMode.EVERY_TRANSFORM_FRAME ||
                     currentRenderMode == RenderMode.EVERY_CAMERA_MOTION_TRANSFORM_FRAME){
                 renderFrame();
@@ -670,6 +784,7 @@ public class GuiController {
     private void onRotationZChanged() {
         if(SceneManager.activeModel != null) {
             SceneManager.activeModel.currentTransform.rotationZ = parseFloat(rotationZTextField);
+            SceneManager.markChanged();
             if(currentRenderMode == RenderMode.EVERY_TRANSFORM_FRAME ||
                     currentRenderMode == RenderMode.EVERY_CAMERA_MOTION_TRANSFORM_FRAME){
                 renderFrame();
@@ -681,6 +796,7 @@ public class GuiController {
     private void onScaleXChanged() {
         if(SceneManager.activeModel != null) {
             SceneManager.activeModel.currentTransform.scaleX = parseFloat(scaleXTextField);
+            SceneManager.markChanged();
             if(currentRenderMode == RenderMode.EVERY_TRANSFORM_FRAME ||
                     currentRenderMode == RenderMode.EVERY_CAMERA_MOTION_TRANSFORM_FRAME){
                 renderFrame();
@@ -692,6 +808,7 @@ public class GuiController {
     private void onScaleYChanged() {
         if(SceneManager.activeModel != null) {
             SceneManager.activeModel.currentTransform.scaleY = parseFloat(scaleYTextField);
+            SceneManager.markChanged();
             if(currentRenderMode == RenderMode.EVERY_TRANSFORM_FRAME ||
                     currentRenderMode == RenderMode.EVERY_CAMERA_MOTION_TRANSFORM_FRAME){
                 renderFrame();
@@ -703,6 +820,7 @@ public class GuiController {
     private void onScaleZChanged() {
         if(SceneManager.activeModel != null) {
             SceneManager.activeModel.currentTransform.scaleZ = parseFloat(scaleZTextField);
+            SceneManager.markChanged();
             if(currentRenderMode == RenderMode.EVERY_TRANSFORM_FRAME ||
                     currentRenderMode == RenderMode.EVERY_CAMERA_MOTION_TRANSFORM_FRAME){
                 renderFrame();
@@ -910,6 +1028,7 @@ public class GuiController {
                     SceneManager.activeModel.texture = tex;
                     SceneManager.activeModel.hasTexture = true;
                     SceneManager.activeModel.textureName = texFile.getName();
+                    SceneManager.markChanged();
                     currentTextureLabel.setText(String.format("Текущая текстура: %s", SceneManager.activeModel.textureName));
                     deleteTextureButton.setVisible(true);
                     logInfo(String.format("Текстура %s была успешно загружена", SceneManager.activeModel.textureName));
@@ -1066,6 +1185,7 @@ public class GuiController {
             SceneManager.activeModel.hasTexture = false;
             SceneManager.activeModel.texture = Model.defaultTexture;
             SceneManager.activeModel.textureName = "По умолчанию";
+            SceneManager.markChanged();
             currentTextureLabel.setText("Текущая текстура: По умолчанию");
             deleteTextureButton.setVisible(false);
             logInfo(String.format("Текстура %s была успешно удалена", copyName));
@@ -1156,6 +1276,10 @@ public class GuiController {
 
         currentTextureLabel.setText(String.format("Текущая текстура: %s", currentTextureName));
 
+        //Неопределённое состояние - как в общей настройке
+        modelBackFaceCullingCheckBox.setIndeterminate(model.backFaceCulling == null);
+        modelBackFaceCullingCheckBox.setSelected(model.backFaceCulling != null && model.backFaceCulling);
+
         setTextFieldModelTransform(model);
 
         deleteActiveEntityButton.setVisible(true);
@@ -1192,7 +1316,7 @@ public class GuiController {
         }
     }
 
-    private void generateVertexButtonsFromModel(ArrayList<Vertex> vertices){
+    private void generateVertexButtonsFromModel(List<Vertex> vertices){
         for(int i = 0; i < vertices.size(); i++){
             String btnName = String.format("Вершина %d", i);
             Button btn = new Button(btnName);
@@ -1207,7 +1331,7 @@ public class GuiController {
 
     }
 
-    private void generatePolygonButtonsFromModel(ArrayList<Integer> polygons){
+    private void generatePolygonButtonsFromModel(List<Integer> polygons){
         for(int i = 0; i < polygons.size(); i++){
             String btnName = String.format("Полигон %d", i);
             Button btn = new Button(btnName);
@@ -1295,6 +1419,7 @@ public class GuiController {
                 showError("Ошибка при удалении вершины: " + index);
                 return;
             }
+            SceneManager.markChanged();
 
             deleteVertex.setVisible(false);
             if (activeVertexButton != null) {
@@ -1343,6 +1468,7 @@ public class GuiController {
                 showError("Ошибка при удалении полигона: " + index);
                 return;
             }
+            SceneManager.markChanged();
 
             deletePolygon.setVisible(false);
             deleteFreeVertexCheckbox.setVisible(false);
@@ -1424,6 +1550,7 @@ public class GuiController {
 
         SceneManager.activeCamera.moveCamera(deltaX, deltaY,
                 (int) sceneCanvas.getWidth(), (int) sceneCanvas.getHeight());
+        lastCameraMotion = System.nanoTime();
         if(currentRenderMode == RenderMode.EVERY_CAMERA_MOTION_FRAME ||
                 currentRenderMode == RenderMode.EVERY_CAMERA_MOTION_TRANSFORM_FRAME){
             renderFrame();
@@ -1437,6 +1564,7 @@ public class GuiController {
         pastRotateY = (float) mouseEvent.getY();
 
         SceneManager.activeCamera.rotateCamera(deltaX * ROT, -deltaY * ROT);
+        lastCameraMotion = System.nanoTime();
         if(currentRenderMode == RenderMode.EVERY_CAMERA_MOTION_FRAME ||
                 currentRenderMode == RenderMode.EVERY_CAMERA_MOTION_TRANSFORM_FRAME){
             renderFrame();
@@ -1463,6 +1591,7 @@ public class GuiController {
 
     public void setZoom(ScrollEvent scrollEvent) {
         SceneManager.activeCamera.zoomCamera((float) scrollEvent.getDeltaY() / 10);
+        lastCameraMotion = System.nanoTime();
         if(currentRenderMode == RenderMode.EVERY_CAMERA_MOTION_FRAME ||
                 currentRenderMode == RenderMode.EVERY_CAMERA_MOTION_TRANSFORM_FRAME){
             renderFrame();
@@ -27,11 +27,38 @@ public class SceneManager {
     public static boolean drawMesh;
     public static boolean useTexture;
     public static boolean useLight;
+    public static boolean useTileRendering; //Многопоточный тайловый рендер
+    public static boolean clipFarPlane; //Отсекать геометрию дальше far-плоскости камеры
+    public static boolean backFaceCulling = false; //Отбрасывать задние грани замкнутых сеток (можно переопределить в Model)
+    public static boolean trilinearFiltering; //Трилинейная фильтрация текстур (иначе ближайший мип-уровень)
+    public static boolean useSimdShading; //Заливка на Vector API (нужен --add-modules jdk.incubator.vector)
+    public static boolean hierarchicalZ; //Отбрасывать закрытые тайлы и треугольники по иерархическому Z-буферу
+    public static boolean occlusionCulling; //Не рендерить модели, целиком закрытые ближними моделями
+    public static boolean frontToBack; //Рисовать модели и кластеры полигонов спереди назад
+    public static boolean depthPrePass; //Сначала проход только глубины, потом закраска только видимых пикселей
+    public static boolean deferredShading; //Отложенный рендер через G-буфер (вместо прохода глубины и тайлов)
+    public static boolean progressiveRendering; //Пониженное разрешение, пока камера движется
+    public static float frameBudgetMillis = 33f; //Бюджет времени кадра при движении камеры
+    public static int refineDelayMillis = 250; //Через сколько после остановки камеры рендерить полное разрешение
 
     public static boolean isSceneEntitySelect; //По сути отвечает только за модель
 
     public static float lightIntensity;
 
+    private static Runnable changeListener; //Планировщик кадров, см. FrameScheduler.sceneChanged
+
+    static void setChangeListener(Runnable listener){
+        changeListener = listener;
+    }
+
+    /**
+     * Отмечает, что сцена изменилась и кадр устарел. Вызывается после изменения камеры, моделей и настроек рендера
+     */
+    public static void markChanged(){
+        if (changeListener != null) {
+            changeListener.run();
+        }
+    }
 
     public static void initialize(){
         activeCamera = new Camera(
@@ -65,6 +92,7 @@ public class SceneManager {
     public static void loadModelToScene(Model model){
         models.add(model);
         cacheNameSceneModels.put(model.modelName, model);
+        markChanged();
     }
 
     public static void loadOriginalModelToScene(Model model){
@@ -102,6 +130,7 @@ public class SceneManager {
             }
         }
         originalCacheNameSceneModels.remove(modelName);
+        markChanged();
 
         return true;
     }
@@ -3,6 +3,7 @@ module com.cgvsu {
     requires javafx.fxml;
     //requires vecmath;
     requires java.desktop;
+    requires static jdk.incubator.vector;
     //requires org.slf4j;
 
 
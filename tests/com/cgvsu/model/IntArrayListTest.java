@@ -0,0 +1,99 @@
+package com.cgvsu.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntArrayListTest {
+
+    @Test
+    void testBehavesLikeArrayList() {
+        Random random = new Random(42);
+        IntArrayList list = new IntArrayList();
+        ArrayList<Integer> expected = new ArrayList<>();
+
+        for (int step = 0; step < 2000; step++) {
+            int value = random.nextInt(1000);
+            switch (random.nextInt(5)) {
+                case 0, 1 -> {
+                    list.add(value);
+                    expected.add(value);
+                }
+                case 2 -> {
+                    int index = random.nextInt(expected.size() + 1);
+                    list.add(index, value);
+                    expected.add(index, value);
+                }
+                case 3 -> {
+                    if (expected.isEmpty()) continue;
+                    int index = random.nextInt(expected.size());
+                    assertEquals(expected.remove(index), list.remove(index));
+                }
+                default -> {
+                    if (expected.isEmpty()) continue;
+                    int index = random.nextInt(expected.size());
+                    assertEquals(expected.set(index, value), list.set(index, value));
+                }
+            }
+        }
+
+        assertEquals(expected, list, "После случайных правок список должен совпадать с ArrayList.");
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals((int) expected.get(i), list.getInt(i));
+        }
+    }
+
+    @Test
+    void testIndexOutOfBounds() {
+        IntArrayList list = new IntArrayList(List.of(1, 2, 3));
+
+        assertThrows(IndexOutOfBoundsException.class, () -> list.getInt(3));
+        assertThrows(IndexOutOfBoundsException.class, () -> list.setInt(-1, 0));
+        assertThrows(IndexOutOfBoundsException.class, () -> list.add(4, 0));
+    }
+
+    @Test
+    void testOfReturnsSameListOrCopy() {
+        IntArrayList list = new IntArrayList(List.of(1, 2));
+        assertSame(list, IntArrayList.of(list), "IntArrayList не должен копироваться.");
+
+        ArrayList<Integer> boxed = new ArrayList<>(List.of(1, 2));
+        IntArrayList converted = IntArrayList.of(boxed);
+        assertEquals(boxed, converted);
+        boxed.set(0, 5);
+        assertEquals(1, converted.getInt(0), "Копия не должна зависеть от исходного списка.");
+    }
+
+    @Test
+    void testSnapshotIsIndependentOfSource() {
+        IntArrayList source = new IntArrayList(List.of(1, 2, 3));
+        IntArrayList snapshot = IntArrayList.snapshotOf(source);
+
+        source.setInt(0, 10);
+        source.addInt(4);
+        assertEquals(List.of(1, 2, 3), snapshot, "Правки исходного списка не должны попадать в снимок.");
+
+        snapshot.setInt(1, 20);
+        assertEquals(List.of(10, 2, 3, 4), source, "Правки снимка не должны попадать в исходный список.");
+
+        IntArrayList second = IntArrayList.snapshotOf(source);
+        source.clear();
+        assertEquals(List.of(10, 2, 3, 4), second, "Очистка исходного списка не должна очищать снимок.");
+    }
+
+    @Test
+    void testCopyIsIndependent() {
+        IntArrayList list = new IntArrayList(List.of(1, 2, 3));
+        IntArrayList copy = list.copy();
+
+        copy.setInt(0, 7);
+        list.remove(2);
+
+        assertEquals(List.of(1, 2), list);
+        assertEquals(List.of(7, 2, 3), copy);
+    }
+}
@@ -0,0 +1,201 @@
+package com.cgvsu.model;
+
+import com.cgvsu.math.vectors.Vector2f;
+import com.cgvsu.math.vectors.Vector3f;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VertexListTest {
+
+    private static final float EPS = 1e-6f;
+
+    private static VertexList threeVertices() {
+        VertexList list = new VertexList();
+        list.addVertex(0, 0, 0);
+        list.addVertex(1, 2, 3);
+        list.addVertex(4, 5, 6);
+        return list;
+    }
+
+    @Test
+    void testAddVertexStoresPositionWithoutNormal() {
+        VertexList list = threeVertices();
+
+        assertEquals(3, list.size());
+        assertTrue(list.hasPosition(1));
+        assertEquals(1, list.getX(1), EPS);
+        assertEquals(2, list.getY(1), EPS);
+        assertEquals(3, list.getZ(1), EPS);
+        assertFalse(list.hasNormal(1), "У вершины из addVertex нормали нет.");
+        assertEquals(0, list.getTextureCoordinateCount(1));
+    }
+
+    @Test
+    void testViewIsAuthoritativeForItsVertex() {
+        VertexList list = threeVertices();
+
+        Vertex view = list.get(1);
+        assertSame(view, list.get(1), "Повторный get должен вернуть тот же объект.");
+        assertEquals(2, view.position.getY(), EPS);
+
+        // Правки объекта видны через список, как в ArrayList
+        view.position = new Vector3f(7, 8, 9);
+        view.normal = new Vector3f(0, 0, 1);
+        assertEquals(7, list.getX(1), EPS);
+        assertTrue(list.hasNormal(1));
+        assertEquals(1, list.getNormalZ(1), EPS);
+
+        // И наоборот: запись через список меняет объект
+        list.setPosition(1, -1, -2, -3);
+        assertEquals(-1, view.position.getX(), EPS);
+
+        view.position = null;
+        assertFalse(list.hasPosition(1), "Вершина без позиции должна так и читаться.");
+    }
+
+    @Test
+    void testAddedVertexObjectIsReadThrough() {
+        VertexList list = threeVertices();
+        Vertex vertex = new Vertex(10, 11, 12);
+        vertex.getOrAddTextureCoordinate(new Vector2f(0.5f, 0.25f));
+
+        list.add(1, vertex);
+
+        assertEquals(4, list.size());
+        assertSame(vertex, list.get(1));
+        assertEquals(10, list.getX(1), EPS);
+        assertEquals(1, list.getX(2), EPS, "Следующие вершины должны сдвинуться.");
+        assertEquals(new Vector2f(0.5f, 0.25f), list.getTextureCoordinate(1, 0));
+    }
+
+    @Test
+    void testTextureCoordinatesAreDeduplicatedPerVertex() {
+        VertexList list = threeVertices();
+
+        assertEquals(0, list.getOrAddTextureCoordinate(0, 0.1f, 0.2f));
+        assertEquals(1, list.getOrAddTextureCoordinate(0, 0.3f, 0.4f));
+        assertEquals(0, list.getOrAddTextureCoordinate(0, 0.1f, 0.2f), "Тот же UV не должен дублироваться.");
+        assertEquals(0, list.getOrAddTextureCoordinate(2, 0.1f, 0.2f), "У другой вершины своя цепочка UV.");
+
+        assertEquals(2, list.getTextureCoordinateCount(0));
+        assertEquals(new Vector2f(0.3f, 0.4f), list.getTextureCoordinate(0, 1));
+        assertNull(list.getTextureCoordinate(0, 2));
+        assertEquals(2, list.get(0).textureCoordinates.size(), "Объект вершины получает обе UV.");
+    }
+
+    @Test
+    void testRemoveKeepsOtherVertices() {
+        VertexList list = threeVertices();
+        list.getOrAddTextureCoordinate(2, 0.7f, 0.8f);
+        Vertex view = list.get(0);
+
+        list.remove(1);
+
+        assertEquals(2, list.size());
+        assertSame(view, list.get(0));
+        assertEquals(4, list.getX(1), EPS);
+        assertEquals(new Vector2f(0.7f, 0.8f), list.getTextureCoordinate(1, 0), "UV должны переехать с вершиной.");
+    }
+
+    @Test
+    void testRetainKeepsOrder() {
+        VertexList list = threeVertices();
+        list.addVertex(7, 8, 9);
+
+        list.retain(new boolean[]{false, true, false, true});
+
+        assertEquals(2, list.size());
+        assertEquals(1, list.getX(0), EPS);
+        assertEquals(7, list.getX(1), EPS);
+    }
+
+    @Test
+    void testSnapshotIsIndependentOfSource() {
+        VertexList source = threeVertices();
+        Vertex view = source.get(2);
+        VertexList snapshot = VertexList.snapshotOf(source);
+
+        source.setPosition(0, 100, 0, 0);
+        source.addVertex(9, 9, 9);
+        view.position = new Vector3f(-4, -5, -6);
+
+        assertEquals(3, snapshot.size());
+        assertEquals(0, snapshot.getX(0), EPS, "Правки массивов исходного списка не должны попадать в снимок.");
+        assertEquals(4, snapshot.getX(2), EPS, "Правки объекта вершины не должны попадать в снимок.");
+
+        snapshot.setPosition(1, 50, 0, 0);
+        assertEquals(1, source.getX(1), EPS, "Правки снимка не должны попадать в исходный список.");
+    }
+
+    @Test
+    void testSnapshotReleasesVertexObjects() {
+        VertexList source = threeVertices();
+        Vertex view = source.get(1);
+        view.position = new Vector3f(7, 8, 9);
+        view.getOrAddTextureCoordinate(new Vector2f(0.1f, 0.2f));
+        view.getOrAddTextureCoordinate(new Vector2f(0.3f, 0.4f));
+
+        VertexList snapshot = VertexList.snapshotOf(source);
+
+        assertEquals(7, snapshot.getX(1), EPS, "Снимок должен получить правки объекта вершины.");
+        assertEquals(new Vector2f(0.3f, 0.4f), snapshot.getTextureCoordinate(1, 1));
+        assertEquals(7, source.getX(1), EPS, "Данные объекта должны остаться в исходном списке.");
+        assertEquals(2, source.getTextureCoordinateCount(1));
+
+        // После снимка объект отвязан, следующий get даёт новый
+        view.position = new Vector3f(-1, -1, -1);
+        assertEquals(7, source.getX(1), EPS, "Отвязанный объект не должен менять список.");
+        Vertex next = source.get(1);
+        assertNotSame(view, next);
+        assertEquals(8, next.position.getY(), EPS);
+
+        // Укороченный список UV переписывает цепочку вершины
+        next.textureCoordinates.remove(0);
+        VertexList second = VertexList.snapshotOf(source);
+        assertEquals(1, second.getTextureCoordinateCount(1));
+        assertEquals(new Vector2f(0.3f, 0.4f), second.getTextureCoordinate(1, 0));
+        assertEquals(2, snapshot.getTextureCoordinateCount(1), "Прошлый снимок не должен меняться.");
+    }
+
+    @Test
+    void testCopyTakesVertexObjectData() {
+        VertexList list = threeVertices();
+        Vertex view = list.get(0);
+        view.normal = new Vector3f(1, 0, 0);
+
+        VertexList copy = list.copy();
+        view.normal = new Vector3f(0, 1, 0);
+
+        assertEquals(1, copy.getNormalX(0), EPS, "Копия должна получить данные объекта на момент копирования.");
+        assertNotSame(view, copy.get(0));
+        assertSame(view, list.get(0), "Копирование не отвязывает объекты исходного списка.");
+    }
+
+    @Test
+    void testCopyOfPlainList() {
+        ArrayList<Vertex> vertices = new ArrayList<>();
+        Vertex withNormal = new Vertex(1, 2, 3);
+        withNormal.normal = new Vector3f(0, 1, 0);
+        Vertex withoutPosition = new Vertex();
+        withoutPosition.position = null;
+        vertices.add(withNormal);
+        vertices.add(withoutPosition);
+
+        VertexList copy = VertexList.copyOf(vertices);
+
+        assertEquals(2, copy.size());
+        assertEquals(3, copy.getZ(0), EPS);
+        assertEquals(1, copy.getNormalY(0), EPS);
+        assertFalse(copy.hasPosition(1), "Вершина без позиции должна остаться без позиции.");
+
+        withNormal.position = new Vector3f(0, 0, 0);
+        assertEquals(1, copy.getX(0), EPS, "Копия не должна зависеть от исходных объектов.");
+        assertNotSame(copy, VertexList.copyOf(copy));
+        assertSame(copy, VertexList.of(copy));
+        assertEquals(List.of(), VertexList.of(new ArrayList<>()));
+    }
+}
@@ -0,0 +1,127 @@
+package com.cgvsu.modelOperations;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты консервативности иерархического Z-буфера: закрытым считается только то, что Z-тест и так бы отбросил.
+ */
+class DepthHierarchyTest {
+
+    // Некратный тайлам размер, чтобы у правого и нижнего края были неполные тайлы и блоки
+    private static final int WIDTH = 75;
+    private static final int HEIGHT = 45;
+
+    private static void fill(ZBuffer zBuffer, int minX, int minY, int maxX, int maxY, float z) {
+        for (int y = minY; y <= maxY; y++) {
+            for (int x = minX; x <= maxX; x++) {
+                zBuffer.testAndSet(x, y, z);
+            }
+        }
+    }
+
+    // Отбросил бы Z-тест фрагмент глубины z в каждом пикселе прямоугольника
+    private static boolean rejectsEverywhere(ZBuffer zBuffer, int minX, int minY, int maxX, int maxY, float z) {
+        for (int y = minY; y <= maxY; y++) {
+            for (int x = minX; x <= maxX; x++) {
+                if (z < zBuffer.getDepth(x, y)) return false;
+            }
+        }
+        return true;
+    }
+
+    @Test
+    void testPartiallyWrittenTileIsNotOccluded() {
+        ZBuffer zBuffer = new ZBuffer(WIDTH, HEIGHT);
+        zBuffer.clear();
+        fill(zBuffer, 0, 0, DepthHierarchy.TILE_SIZE - 1, DepthHierarchy.TILE_SIZE - 2, 0.1f);
+
+        assertFalse(zBuffer.getHierarchy().isTileOccluded(0, 0, 0.9f),
+                "Тайл с незаписанными пикселями не должен ничего закрывать.");
+    }
+
+    @Test
+    void testFullyWrittenTileOccludesOnlyFartherSurfaces() {
+        ZBuffer zBuffer = new ZBuffer(WIDTH, HEIGHT);
+        zBuffer.clear();
+        fill(zBuffer, 0, 0, DepthHierarchy.TILE_SIZE - 1, DepthHierarchy.TILE_SIZE - 1, 0.5f);
+        DepthHierarchy hierarchy = zBuffer.getHierarchy();
+
+        assertTrue(hierarchy.isTileOccluded(0, 0, 0.6f), "Поверхность дальше тайла должна отбрасываться.");
+        assertFalse(hierarchy.isTileOccluded(0, 0, 0.4f), "Поверхность ближе тайла не должна отбрасываться.");
+        assertFalse(hierarchy.isTileOccluded(1, 0, 0.6f), "Соседний пустой тайл не должен ничего закрывать.");
+    }
+
+    @Test
+    void testEdgeTilesAreCoveredByTheirRealArea() {
+        ZBuffer zBuffer = new ZBuffer(WIDTH, HEIGHT);
+        zBuffer.clear();
+        fill(zBuffer, 0, 0, WIDTH - 1, HEIGHT - 1, 0.5f);
+
+        assertTrue(zBuffer.getHierarchy().isOccluded(0, 0, WIDTH - 1, HEIGHT - 1, 0.6f),
+                "Целиком записанный кадр с неполными краевыми тайлами должен закрывать дальнюю поверхность.");
+    }
+
+    @Test
+    void testSetDepthInvalidatesEstimate() {
+        ZBuffer zBuffer = new ZBuffer(WIDTH, HEIGHT);
+        zBuffer.clear();
+        fill(zBuffer, 0, 0, DepthHierarchy.TILE_SIZE - 1, DepthHierarchy.TILE_SIZE - 1, 0.2f);
+        zBuffer.setDepth(3, 3, 0.9f);
+
+        assertFalse(zBuffer.getHierarchy().isTileOccluded(0, 0, 0.5f),
+                "После записи большей глубины без проверки тайл не должен закрывать поверхность на 0.5.");
+    }
+
+    @Test
+    void testClearResetsHierarchy() {
+        ZBuffer zBuffer = new ZBuffer(WIDTH, HEIGHT);
+        zBuffer.clear();
+        fill(zBuffer, 0, 0, WIDTH - 1, HEIGHT - 1, 0.1f);
+        zBuffer.clear();
+
+        assertFalse(zBuffer.getHierarchy().isOccluded(0, 0, WIDTH - 1, HEIGHT - 1, 0.9f),
+                "После очистки кадра иерархия не должна ничего закрывать.");
+    }
+
+    @Test
+    void testRandomWritesStayConservative() {
+        Random random = new Random(12345);
+        ZBuffer zBuffer = new ZBuffer(WIDTH, HEIGHT);
+
+        for (int frame = 0; frame < 20; frame++) {
+            zBuffer.clear();
+            boolean enabled = true;
+            for (int step = 0; step < 400; step++) {
+                // Иерархию выключают и включают посреди кадра, как при переключении настройки
+                if (step % 97 == 0) {
+                    enabled = random.nextInt(4) != 0;
+                    zBuffer.setHierarchyEnabled(enabled);
+                }
+
+                int minX = random.nextInt(WIDTH);
+                int minY = random.nextInt(HEIGHT);
+                int maxX = Math.min(WIDTH - 1, minX + random.nextInt(24));
+                int maxY = Math.min(HEIGHT - 1, minY + random.nextInt(24));
+                float z = random.nextFloat();
+                if (random.nextInt(50) == 0) {
+                    zBuffer.setDepth(minX, minY, z);
+                } else {
+                    fill(zBuffer, minX, minY, maxX, maxY, z);
+                }
+
+                float nearest = random.nextFloat();
+                if (enabled
+                        && zBuffer.getHierarchy().isOccluded(minX, minY, maxX, maxY, nearest)) {
+                    assertTrue(rejectsEverywhere(zBuffer, minX, minY, maxX, maxY, nearest),
+                            "Иерархия закрыла прямоугольник, в котором фрагмент прошёл бы Z-тест (кадр "
+                                    + frame + ", шаг " + step + ").");
+                }
+            }
+            zBuffer.setHierarchyEnabled(true);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.cgvsu.modelOperations;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты цепочки мип-уровней Texture, в том числе для нечётных размеров.
+ */
+class TextureMipmapTest {
+
+    private static Texture texture(int width, int height, int... texels) {
+        return new Texture(texels, width, height);
+    }
+
+    // Тексель (x, y) уровня level размером width x height: выборка ближайшего уровня в центре текселя
+    private static int levelTexel(Texture texture, int level, int width, int height, int x, int y) {
+        float u = (x + 0.5f) / width;
+        float v = 1.0f - (y + 0.5f) / height;
+        return texture.sample(u, v, level, false);
+    }
+
+    private static int gray(int value) {
+        return 0xFF000000 | (value << 16) | (value << 8) | value;
+    }
+
+    @Test
+    void testMipChainEndsAtOneTexel() {
+        assertEquals(4, texture(8, 8, new int[64]).getMipLevelCount(), "8x8 -> 4x4 -> 2x2 -> 1x1");
+        assertEquals(5, texture(16, 1, new int[16]).getMipLevelCount(), "16x1 -> 8x1 -> 4x1 -> 2x1 -> 1x1");
+        assertEquals(3, texture(5, 3, new int[15]).getMipLevelCount(), "5x3 -> 2x1 -> 1x1");
+        assertEquals(1, texture(1, 1, 0).getMipLevelCount(), "У текстуры 1x1 нет уменьшенных уровней");
+    }
+
+    @Test
+    void testEvenLevelAveragesQuads() {
+        Texture texture = texture(2, 2, gray(0), gray(40), gray(80), gray(120));
+
+        assertEquals(gray(60), levelTexel(texture, 1, 1, 1, 0, 0), "Уровень 1x1 - среднее четырёх текселей.");
+    }
+
+    @Test
+    void testOddLevelIncludesLastColumn() {
+        // Тексели 0, 0, 255: последний столбец тоже должен попасть в среднее
+        Texture texture = texture(3, 1, gray(0), gray(0), gray(255));
+
+        assertEquals(gray(85), levelTexel(texture, 1, 1, 1, 0, 0), "Нечётная сторона 3 -> 1 усредняет все три текселя.");
+    }
+
+    @Test
+    void testOddLevelIncludesLastRow() {
+        Texture texture = texture(1, 3, gray(0), gray(0), gray(255));
+
+        assertEquals(gray(85), levelTexel(texture, 1, 1, 1, 0, 0), "Нечётная сторона 3 -> 1 усредняет все три строки.");
+    }
+
+    @Test
+    void testConstantTextureStaysConstantOnAllLevels() {
+        int color = 0xFF336699;
+        int[] texels = new int[7 * 5];
+        Arrays.fill(texels, color);
+        Texture texture = texture(7, 5, texels);
+
+        int width = 7, height = 5;
+        for (int level = 1; level < texture.getMipLevelCount(); level++) {
+            width = Math.max(1, width / 2);
+            height = Math.max(1, height / 2);
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    assertEquals(color, levelTexel(texture, level, width, height, x, y),
+                            "Веса нечётной стороны должны давать в сумме 1 (уровень " + level + ").");
+                }
+            }
+        }
+    }
+
+    @Test
+    void testOddLevelPreservesMean() {
+        Random random = new Random(7);
+        int[] texels = new int[7];
+        long sum = 0;
+        for (int i = 0; i < texels.length; i++) {
+            int value = random.nextInt(256);
+            texels[i] = gray(value);
+            sum += value;
+        }
+        Texture texture = texture(7, 1, texels);
+
+        long levelSum = 0;
+        for (int x = 0; x < 3; x++) {
+            levelSum += levelTexel(texture, 1, 3, 1, x, 0) & 0xFF;
+        }
+        assertEquals(sum / 7.0, levelSum / 3.0, 0.5,
+                "Каждый исходный тексель должен входить в уровень с одинаковым весом.");
+    }
+}
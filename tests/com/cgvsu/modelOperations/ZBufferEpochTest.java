@@ -0,0 +1,71 @@
+package com.cgvsu.modelOperations;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты очистки Z-буфера сменой поколения (epoch) вместо заполнения массива.
+ */
+class ZBufferEpochTest {
+
+    @Test
+    void testClearEmptiesWrittenPixels() {
+        ZBuffer zBuffer = new ZBuffer(10, 10);
+        assertTrue(zBuffer.testAndSet(3, 4, 0.5f));
+
+        zBuffer.clear();
+
+        assertEquals(Float.MAX_VALUE, zBuffer.getDepth(3, 4), "После очистки пиксель должен быть пустым.");
+        assertFalse(zBuffer.testEqual(3, 4, 0.5f), "Глубина прошлого кадра не должна совпадать.");
+        assertTrue(zBuffer.testAndSet(3, 4, 0.9f), "После очистки должна проходить даже дальняя глубина.");
+        assertEquals(0.9f, zBuffer.getDepth(3, 4));
+    }
+
+    @Test
+    void testDepthTestWithinOneEpoch() {
+        ZBuffer zBuffer = new ZBuffer(10, 10);
+        zBuffer.clear();
+
+        assertTrue(zBuffer.testAndSet(1, 1, 0.5f));
+        assertFalse(zBuffer.testAndSet(1, 1, 0.7f), "Дальний фрагмент должен отбрасываться.");
+        assertTrue(zBuffer.testAndSet(1, 1, 0.2f), "Ближний фрагмент должен проходить.");
+        assertEquals(0.2f, zBuffer.getDepth(1, 1));
+        assertEquals(Float.MAX_VALUE, zBuffer.getDepth(2, 1), "Незаписанный пиксель должен быть пустым.");
+    }
+
+    @Test
+    void testEpochOverflowDoesNotResurrectOldPixels() throws Exception {
+        ZBuffer zBuffer = new ZBuffer(10, 10);
+        // Записан в поколении 1, в которое счётчик вернётся после переполнения
+        assertTrue(zBuffer.testAndSet(5, 5, 0.1f));
+
+        Field epoch = ZBuffer.class.getDeclaredField("epoch");
+        epoch.setAccessible(true);
+        epoch.setInt(zBuffer, Integer.MAX_VALUE - 1);
+        assertTrue(zBuffer.testAndSet(6, 6, 0.3f));
+
+        zBuffer.clear();
+
+        assertEquals(1, zBuffer.getEpoch(), "После переполнения поколение должно начаться заново.");
+        assertEquals(Float.MAX_VALUE, zBuffer.getDepth(5, 5), "Пиксель старого поколения 1 не должен вернуться.");
+        assertEquals(Float.MAX_VALUE, zBuffer.getDepth(6, 6), "Пиксель последнего поколения должен очиститься.");
+    }
+
+    @Test
+    void testResizeKeepsBufferOnlyForSameSize() {
+        ZBuffer zBuffer = new ZBuffer(10, 10);
+        zBuffer.clear();
+        assertTrue(zBuffer.testAndSet(2, 2, 0.5f));
+
+        zBuffer.resize(10, 10);
+        assertEquals(0.5f, zBuffer.getDepth(2, 2), "Тот же размер не должен сбрасывать буфер.");
+
+        zBuffer.resize(20, 5);
+        assertEquals(20, zBuffer.getWidth());
+        assertEquals(5, zBuffer.getHeight());
+        assertEquals(Float.MAX_VALUE, zBuffer.getDepth(2, 2), "Новый размер должен давать пустой буфер.");
+    }
+}
@@ -0,0 +1,122 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.math.vectors.Vector3f;
+import com.cgvsu.model.Model;
+import com.cgvsu.model.Transform;
+import com.cgvsu.model.Vertex;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClipperTest {
+
+    private static final int WIDTH = 100;
+    private static final int HEIGHT = 100;
+    private static final float EPS = 1e-3f;
+
+    // Камера на оси Z смотрит в начало координат
+    private static Camera camera() {
+        return new Camera(new Vector3f(0, 0, 5), new Vector3f(0, 0, 0), 1.0f, 1, 0.1f, 100);
+    }
+
+    private static VertexStage process(Vertex... vertices) {
+        Model model = new Model();
+        model.currentTransform = new Transform(0, 0, 0, 0, 0, 0, 1, 1, 1);
+        for (Vertex vertex : vertices) {
+            model.vertices.add(vertex);
+        }
+        VertexStage stage = new VertexStage();
+        stage.process(camera(), model, WIDTH, HEIGHT);
+        return stage;
+    }
+
+    private static List<int[]> clip(Clipper clipper, int... indices) {
+        List<int[]> triangles = new ArrayList<>();
+        clipper.beginPolygon();
+        for (int index : indices) {
+            clipper.addVertex(index, null);
+        }
+        clipper.clipPolygon((i1, i2, i3, t1, t2, t3, edgeMask) -> triangles.add(new int[]{i1, i2, i3}));
+        return triangles;
+    }
+
+    @Test
+    void testPolygonBehindNearPlaneIsDropped() {
+        VertexStage stage = process(new Vertex(0, 0, 6), new Vertex(1, 0, 7), new Vertex(0, 1, 8));
+        Clipper clipper = new Clipper(stage, WIDTH, HEIGHT, false, false);
+
+        assertTrue(clip(clipper, 0, 1, 2).isEmpty(),
+                "Полигон целиком за камерой не должен давать треугольников.");
+    }
+
+    @Test
+    void testNearPlaneCutsCrossingPolygon() {
+        // Одна вершина за камерой, две перед ней
+        VertexStage stage = process(new Vertex(-1, 0, 0), new Vertex(1, 0, 0), new Vertex(0, 0.5f, 10));
+        Clipper clipper = new Clipper(stage, WIDTH, HEIGHT, false, false);
+
+        List<int[]> triangles = clip(clipper, 0, 1, 2);
+
+        assertEquals(2, triangles.size(), "Отсечённый по near треугольник становится четырёхугольником из двух треугольников.");
+        assertTrue(stage.size > stage.vertexCount, "Точки пересечения с near должны добавиться в VertexStage.");
+        for (int[] triangle : triangles) {
+            for (int index : triangle) {
+                assertTrue(stage.clipZ[index] + stage.clipW[index] >= -EPS,
+                        "Все вершины после отсечения должны лежать перед near-плоскостью.");
+            }
+        }
+    }
+
+    @Test
+    void testTriangleInsideGuardBandIsNotClipped() {
+        // Треугольник немного выходит за экран, но лежит внутри защитной полосы
+        VertexStage stage = process(new Vertex(-3, -1, 0), new Vertex(3, -1, 0), new Vertex(0, 1, 0));
+        Clipper clipper = new Clipper(stage, WIDTH, HEIGHT, false, false);
+
+        List<int[]> triangles = clip(clipper, 0, 1, 2);
+
+        assertEquals(1, triangles.size());
+        assertArrayEquals(new int[]{0, 1, 2}, triangles.get(0), "Треугольник должен пройти без изменений.");
+        assertEquals(stage.vertexCount, stage.size, "Новых вершин появиться не должно.");
+    }
+
+    @Test
+    void testTriangleExceedingGuardBandIsClipped() {
+        // Вершины у самой near-плоскости уходят на экране далеко за защитную полосу
+        VertexStage stage = process(new Vertex(-500, -1, 4.8f), new Vertex(500, -1, 4.8f), new Vertex(0, 1, 0));
+        Clipper clipper = new Clipper(stage, WIDTH, HEIGHT, false, false);
+        assertTrue(Clipper.exceedsGuardBand(stage, 0, 1, 2, WIDTH, HEIGHT));
+
+        List<int[]> triangles = clip(clipper, 0, 1, 2);
+
+        assertFalse(triangles.isEmpty(), "Видимая часть треугольника должна остаться.");
+        for (int[] triangle : triangles) {
+            for (int index : triangle) {
+                assertTrue(stage.screenX[index] >= -Clipper.GUARD_BAND - EPS
+                                && stage.screenX[index] <= WIDTH + Clipper.GUARD_BAND + EPS,
+                        "Вершины после отсечения должны лежать внутри защитной полосы.");
+                assertTrue(stage.screenY[index] >= -Clipper.GUARD_BAND - EPS
+                                && stage.screenY[index] <= HEIGHT + Clipper.GUARD_BAND + EPS,
+                        "Вершины после отсечения должны лежать внутри защитной полосы.");
+            }
+        }
+    }
+
+    @Test
+    void testBackFaceIsCulledOnlyWhenRequested() {
+        // Против часовой стрелки, если смотреть из камеры - лицевая грань
+        VertexStage stage = process(new Vertex(0, 0, 0), new Vertex(1, 0, 0), new Vertex(0, 1, 0));
+
+        Clipper culling = new Clipper(stage, WIDTH, HEIGHT, false, true);
+        assertEquals(1, clip(culling, 0, 1, 2).size(), "Лицевая грань не должна отбрасываться.");
+        assertTrue(clip(culling, 0, 2, 1).isEmpty(), "Задняя грань должна отбрасываться.");
+        assertEquals(1, culling.getCulledBackFaces());
+
+        Clipper keeping = new Clipper(stage, WIDTH, HEIGHT, false, false);
+        assertEquals(1, clip(keeping, 0, 2, 1).size(), "Без отбрасывания задняя грань должна рисоваться.");
+        assertEquals(0, keeping.getCulledBackFaces());
+    }
+}
@@ -0,0 +1,119 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.math.vectors.Vector3f;
+import com.cgvsu.model.Model;
+import com.cgvsu.model.Transform;
+import com.cgvsu.model.Vertex;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DrawOrderTest {
+
+    private static Camera cameraAt(float x, float y, float z) {
+        return new Camera(new Vector3f(x, y, z), new Vector3f(0, 0, 0), 1.0f, 1, 0.1f, 1000);
+    }
+
+    // Один треугольник около начала координат, сдвинутый на z
+    private static Model triangleAt(String name, float z) {
+        Model model = new Model();
+        model.modelName = name;
+        model.currentTransform = new Transform(0, 0, z, 0, 0, 0, 1, 1, 1);
+        model.vertices.add(new Vertex(0, 0, 0));
+        model.vertices.add(new Vertex(1, 0, 0));
+        model.vertices.add(new Vertex(0, 1, 0));
+        model.polygonsBoundaries.add(0);
+        model.polygons.add(0);
+        model.polygons.add(1);
+        model.polygons.add(2);
+        return model;
+    }
+
+    // Лента из count треугольников вдоль оси X, треугольник i лежит у x = i
+    private static Model strip(int count) {
+        Model model = new Model();
+        model.currentTransform = new Transform(0, 0, 0, 0, 0, 0, 1, 1, 1);
+        for (int i = 0; i < count; i++) {
+            model.vertices.add(new Vertex(i, 0, 0));
+            model.vertices.add(new Vertex(i + 1, 0, 0));
+            model.vertices.add(new Vertex(i, 1, 0));
+            model.polygonsBoundaries.add(i * 3);
+            model.polygons.add(i * 3);
+            model.polygons.add(i * 3 + 1);
+            model.polygons.add(i * 3 + 2);
+        }
+        return model;
+    }
+
+    private static int[] sortPolygons(DrawOrder drawOrder, Camera camera, Model model) {
+        return drawOrder.sortPolygons(camera, model, GraphicConveyor.rotateScaleTranslate(model.currentTransform));
+    }
+
+    private static float meanPolygon(int[] order, int from, int to) {
+        float sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += order[i];
+        }
+        return sum / (to - from);
+    }
+
+    @Test
+    void testModelsAreSortedNearToFar() {
+        Model far = triangleAt("far", -10);
+        Model middle = triangleAt("middle", -5);
+        Model near = triangleAt("near", 0);
+
+        List<Model> sorted = new DrawOrder().sortModels(cameraAt(0, 0, 10), List.of(far, middle, near));
+
+        assertEquals(List.of(near, middle, far), sorted);
+    }
+
+    @Test
+    void testModelOrderFollowsCameraAndTransforms() {
+        Model back = triangleAt("back", -10);
+        Model front = triangleAt("front", 0);
+        List<Model> models = List.of(back, front);
+        DrawOrder drawOrder = new DrawOrder();
+
+        assertEquals(List.of(front, back), drawOrder.sortModels(cameraAt(0, 0, 10), models));
+        // Небольшой сдвиг камеры не требует пересортировки, порядок тот же
+        assertEquals(List.of(front, back), drawOrder.sortModels(cameraAt(0, 0, 10.1f), models));
+        // Камера с другой стороны - порядок обратный
+        assertEquals(List.of(back, front), drawOrder.sortModels(cameraAt(0, 0, -20), models));
+
+        // Модель переехала ближе к неподвижной камере
+        front.currentTransform = new Transform(0, 0, -25, 0, 0, 0, 1, 1, 1);
+        assertEquals(List.of(front, back), drawOrder.sortModels(cameraAt(0, 0, -20), models));
+    }
+
+    @Test
+    void testPolygonOrderIsPermutation() {
+        final int count = DrawOrder.CLUSTER_POLYGONS * 3 + 17;
+        int[] order = sortPolygons(new DrawOrder(), cameraAt(-10, 0, 5), strip(count));
+
+        assertEquals(count, order.length);
+        boolean[] seen = new boolean[count];
+        for (int polygon : order) {
+            assertFalse(seen[polygon], "Полигон " + polygon + " встретился дважды.");
+            seen[polygon] = true;
+        }
+    }
+
+    @Test
+    void testPolygonClustersAreSortedNearToFar() {
+        final int count = DrawOrder.CLUSTER_POLYGONS * 4;
+        final int cluster = DrawOrder.CLUSTER_POLYGONS;
+        Model model = strip(count);
+        DrawOrder drawOrder = new DrawOrder();
+
+        int[] order = sortPolygons(drawOrder, cameraAt(-10, 0, 5), model);
+        assertTrue(meanPolygon(order, 0, cluster) < meanPolygon(order, count - cluster, count),
+                "Камера у начала ленты: первыми должны идти ближние к началу полигоны.");
+
+        order = sortPolygons(drawOrder, cameraAt(count + 10, 0, 5), model);
+        assertTrue(meanPolygon(order, 0, cluster) > meanPolygon(order, count - cluster, count),
+                "Камера у конца ленты: первыми должны идти ближние к концу полигоны.");
+    }
+}
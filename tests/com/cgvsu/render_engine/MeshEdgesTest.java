@@ -0,0 +1,96 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.model.Model;
+import com.cgvsu.model.Transform;
+import com.cgvsu.model.Vertex;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MeshEdgesTest {
+
+    private static Model mesh(int vertexCount, int[]... faces) {
+        Model model = new Model();
+        model.currentTransform = new Transform(0, 0, 0, 0, 0, 0, 1, 1, 1);
+        for (int i = 0; i < vertexCount; i++) {
+            model.vertices.add(new Vertex(i, i * i % 7, i % 3));
+        }
+        for (int[] face : faces) {
+            model.polygonsBoundaries.add(model.polygons.size());
+            for (int index : face) {
+                model.polygons.add(index);
+            }
+        }
+        return model;
+    }
+
+    // Куб из шести четырёхугольников, обход против часовой снаружи
+    private static Model cube() {
+        return mesh(8,
+                new int[]{0, 1, 2, 3}, new int[]{4, 7, 6, 5},
+                new int[]{0, 4, 5, 1}, new int[]{1, 5, 6, 2},
+                new int[]{2, 6, 7, 3}, new int[]{3, 7, 4, 0});
+    }
+
+    @Test
+    void testSharedEdgeIsStoredOnce() {
+        // Квадрат из двух треугольников, диагональ 0-2 обходится в разных направлениях
+        MeshEdges edges = new MeshEdges(mesh(4, new int[]{0, 1, 2}, new int[]{0, 2, 3}));
+
+        assertEquals(5, edges.edgeCount, "4 стороны квадрата и одна общая диагональ.");
+        // Угол 2->0 первого треугольника и угол 0->2 второго - одно ребро
+        assertEquals(edges.cornerEdges[2], edges.cornerEdges[3]);
+        assertFalse(edges.closed, "У квадрата есть граничные рёбра.");
+    }
+
+    @Test
+    void testEdgesAreUniqueAndCoverAllCorners() {
+        Model cube = cube();
+        MeshEdges edges = new MeshEdges(cube);
+
+        assertEquals(12, edges.edgeCount, "У куба 12 рёбер.");
+        Set<Long> seen = new HashSet<>();
+        for (int edge = 0; edge < edges.edgeCount; edge++) {
+            long key = ((long) Math.min(edges.edgeA[edge], edges.edgeB[edge]) << 32)
+                    | Math.max(edges.edgeA[edge], edges.edgeB[edge]);
+            assertTrue(seen.add(key), "Ребро " + edges.edgeA[edge] + "-" + edges.edgeB[edge] + " повторяется.");
+        }
+        for (int corner = 0; corner < cube.polygons.size(); corner++) {
+            assertNotEquals(MeshEdges.NO_EDGE, edges.cornerEdges[corner], "У каждого угла куба есть ребро.");
+        }
+    }
+
+    @Test
+    void testClosedMeshes() {
+        assertTrue(new MeshEdges(cube()).closed, "Куб замкнут.");
+
+        MeshEdges tetrahedron = new MeshEdges(mesh(4,
+                new int[]{0, 2, 1}, new int[]{0, 1, 3}, new int[]{1, 2, 3}, new int[]{2, 0, 3}));
+        assertEquals(6, tetrahedron.edgeCount);
+        assertTrue(tetrahedron.closed, "Тетраэдр замкнут.");
+
+        MeshEdges openBox = new MeshEdges(mesh(8,
+                new int[]{0, 1, 2, 3}, new int[]{4, 7, 6, 5},
+                new int[]{0, 4, 5, 1}, new int[]{1, 5, 6, 2}, new int[]{2, 6, 7, 3}));
+        assertFalse(openBox.closed, "Куб без грани не замкнут.");
+    }
+
+    @Test
+    void testInvalidCornersHaveNoEdge() {
+        // Индекс вне модели, повтор вершины подряд и полигон из двух углов
+        Model model = mesh(3, new int[]{0, 1, 5}, new int[]{0, 0, 1, 2}, new int[]{1, 2});
+        MeshEdges edges = new MeshEdges(model);
+
+        assertNotEquals(MeshEdges.NO_EDGE, edges.cornerEdges[0], "Ребро 0-1 корректно.");
+        assertEquals(MeshEdges.NO_EDGE, edges.cornerEdges[1], "Ребро в несуществующую вершину 5 не строится.");
+        assertEquals(MeshEdges.NO_EDGE, edges.cornerEdges[2], "Ребро из несуществующей вершины 5 не строится.");
+        assertEquals(MeshEdges.NO_EDGE, edges.cornerEdges[3], "Вырожденное ребро 0-0 не строится.");
+        assertEquals(edges.cornerEdges[0], edges.cornerEdges[4], "Ребро 0-1 второго полигона то же самое.");
+        assertEquals(MeshEdges.NO_EDGE, edges.cornerEdges[7], "Углы полигона из двух вершин рёбер не имеют.");
+        assertEquals(MeshEdges.NO_EDGE, edges.cornerEdges[8]);
+        assertEquals(3, edges.edgeCount, "Рёбра 0-1, 1-2 и 2-0.");
+    }
+}
@@ -0,0 +1,104 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.math.vectors.Vector3f;
+import com.cgvsu.model.Model;
+import com.cgvsu.objreader.ObjReader;
+import com.cgvsu.sceneview.SceneManager;
+import javafx.scene.image.WritableImage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OcclusionCullerTest {
+
+    private static final int WIDTH = 100;
+    private static final int HEIGHT = 100;
+
+    private boolean occlusionCulling;
+    private boolean drawMesh;
+    private boolean useTexture;
+    private boolean useLight;
+
+    @BeforeEach
+    void setUp() {
+        occlusionCulling = SceneManager.occlusionCulling;
+        drawMesh = SceneManager.drawMesh;
+        useTexture = SceneManager.useTexture;
+        useLight = SceneManager.useLight;
+        // Сетка без света: модели без текстуры только обводятся, модели с текстурой закрашиваются
+        SceneManager.occlusionCulling = true;
+        SceneManager.drawMesh = true;
+        SceneManager.useTexture = true;
+        SceneManager.useLight = false;
+    }
+
+    @AfterEach
+    void tearDown() {
+        SceneManager.occlusionCulling = occlusionCulling;
+        SceneManager.drawMesh = drawMesh;
+        SceneManager.useTexture = useTexture;
+        SceneManager.useLight = useLight;
+    }
+
+    private static Camera camera() {
+        return new Camera(new Vector3f(0, 0, 5), new Vector3f(0, 0, 0), 1.0f, 1, 0.1f, 100);
+    }
+
+    // Квадрат на весь экран перед камерой
+    private static Model wall() {
+        String obj = "v -10 -10 2\nv 10 -10 2\nv 10 10 2\nv -10 10 2\n"
+                + "vt 0 0\nvt 1 0\nvt 1 1\nvt 0 1\n"
+                + "f 1/1 2/2 3/3 4/4\n";
+        Model model = ObjReader.readModelFromFile(obj, "wall", new HashMap<>());
+        model.triangulate();
+        return model;
+    }
+
+    // Небольшой треугольник за квадратом
+    private static Model hidden() {
+        String obj = "v -1 -1 -5\nv 1 -1 -5\nv 0 1 -5\n"
+                + "vt 0 0\nvt 1 0\nvt 0 1\n"
+                + "f 1/1 2/2 3/3\n";
+        Model model = ObjReader.readModelFromFile(obj, "hidden", new HashMap<>());
+        model.texture = new WritableImage(2, 2);
+        return model;
+    }
+
+    private static int filledTriangles(List<ScreenTriangle> triangles) {
+        int count = 0;
+        for (ScreenTriangle triangle : triangles) {
+            if (triangle.program.fill) count++;
+        }
+        return count;
+    }
+
+    @Test
+    void testFilledModelOccludesModelBehind() {
+        Model wall = wall();
+        wall.texture = new WritableImage(2, 2);
+        Model hidden = hidden();
+        ArrayList<ScreenTriangle> triangles = new ArrayList<>();
+
+        RenderEngine.projectScene(camera(), List.of(wall, hidden), WIDTH, HEIGHT, triangles);
+
+        assertEquals(2, triangles.size(), "Модель за закрашенной стеной должна отбрасываться.");
+    }
+
+    @Test
+    void testWireframeModelDoesNotOcclude() {
+        Model wall = wall();
+        Model hidden = hidden();
+        ArrayList<ScreenTriangle> triangles = new ArrayList<>();
+
+        RenderEngine.projectScene(camera(), List.of(wall, hidden), WIDTH, HEIGHT, triangles);
+
+        assertEquals(3, triangles.size(), "Сквозь сетку модель за ней видна и не должна отбрасываться.");
+        assertEquals(1, filledTriangles(triangles), "Стена без текстуры и света должна только обводиться.");
+    }
+}
@@ -0,0 +1,127 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.math.vectors.Vector3f;
+import com.cgvsu.model.Model;
+import com.cgvsu.objreader.ObjReader;
+import com.cgvsu.sceneview.SceneManager;
+import javafx.scene.image.WritableImage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Сверка векторной заливки со скалярной. Запускается только с JVM-флагом --add-modules jdk.incubator.vector,
+ * иначе пропускается.
+ */
+class SimdShadingTest {
+
+    private static final int WIDTH = 160;
+    private static final int HEIGHT = 120;
+    // Векторный путь считает те же формулы в другом порядке, поэтому канал может отличаться на единицу
+    private static final int TOLERANCE = 1;
+
+    private boolean useTexture;
+    private boolean useLight;
+    private float lightIntensity;
+    private boolean drawMesh;
+
+    @BeforeEach
+    void setUp() {
+        assumeTrue(SimdShading.isAvailable(), "Vector API не загружен");
+        useTexture = SceneManager.useTexture;
+        useLight = SceneManager.useLight;
+        lightIntensity = SceneManager.lightIntensity;
+        drawMesh = SceneManager.drawMesh;
+        SceneManager.drawMesh = false;
+        SceneManager.useLight = true;
+        SceneManager.lightIntensity = 1f;
+    }
+
+    @AfterEach
+    void tearDown() {
+        SceneManager.useTexture = useTexture;
+        SceneManager.useLight = useLight;
+        SceneManager.lightIntensity = lightIntensity;
+        SceneManager.drawMesh = drawMesh;
+    }
+
+    // Волнистая сетка с UV: треугольники разного размера и наклона, часть из них узкие
+    private static Model surface() {
+        final int n = 16;
+        StringBuilder obj = new StringBuilder();
+        for (int j = 0; j <= n; j++) {
+            for (int i = 0; i <= n; i++) {
+                float x = (float) i / n * 2 - 1;
+                float y = (float) j / n * 2 - 1;
+                float z = (float) (0.3 * Math.sin(3 * x) * Math.cos(2 * y));
+                obj.append("v ").append(x).append(' ').append(y).append(' ').append(z).append('\n');
+                obj.append("vt ").append((float) i / n).append(' ').append((float) j / n).append('\n');
+            }
+        }
+        for (int j = 0; j < n; j++) {
+            for (int i = 0; i < n; i++) {
+                int a = j * (n + 1) + i + 1;
+                int b = a + 1;
+                int c = a + n + 1;
+                int d = c + 1;
+                obj.append("f ").append(a).append('/').append(a).append(' ')
+                        .append(b).append('/').append(b).append(' ')
+                        .append(d).append('/').append(d).append(' ')
+                        .append(c).append('/').append(c).append('\n');
+            }
+        }
+        Model model = ObjReader.readModelFromFile(obj.toString(), "surface", new HashMap<>());
+        model.triangulate();
+        return model;
+    }
+
+    private static Camera camera() {
+        return new Camera(new Vector3f(0.8f, 0.5f, 2.5f), new Vector3f(0, 0, 0), 1.0f,
+                (float) WIDTH / HEIGHT, 0.1f, 100);
+    }
+
+    private static WritableImage checkerboard() {
+        WritableImage image = new WritableImage(16, 16);
+        for (int y = 0; y < 16; y++) {
+            for (int x = 0; x < 16; x++) {
+                image.getPixelWriter().setArgb(x, y, ((x ^ y) & 1) == 0 ? 0xFFE0C040 : 0xFF2040A0);
+            }
+        }
+        return image;
+    }
+
+    @Test
+    void testLitFillMatchesScalar() {
+        SceneManager.useTexture = false;
+
+        int mismatches = SimdShading.validate(camera(), List.of(surface()), WIDTH, HEIGHT, TOLERANCE);
+
+        assertEquals(0, mismatches, "Освещённая заливка на Vector API должна совпадать со скалярной.");
+    }
+
+    @Test
+    void testTexturedFillMatchesScalar() {
+        SceneManager.useTexture = true;
+        Model model = surface();
+        model.texture = checkerboard();
+
+        int mismatches = SimdShading.validate(camera(), List.of(model), WIDTH, HEIGHT, TOLERANCE);
+
+        assertEquals(0, mismatches, "Текстурированная заливка на Vector API должна совпадать со скалярной.");
+    }
+
+    @Test
+    void testValidateLeavesSettingUntouched() {
+        boolean before = SceneManager.useSimdShading;
+
+        SimdShading.validate(camera(), List.of(surface()), WIDTH, HEIGHT, TOLERANCE);
+
+        assertEquals(before, SceneManager.useSimdShading, "Сверка не должна менять настройку SceneManager.");
+    }
+}